@@ -0,0 +1,56 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.iesalixar.daw2.javiermorenosalas.entity.Region;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la comprobación de códigos repetidos con el {@link CodeIndex} cargado, para distintos
+ * tamaños de tabla. El tiempo no debe crecer con el número de filas.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodeIndexBenchmark {
+
+    @Param({"100", "10000", "100000"})
+    private int size;
+
+    private CodeIndex<Region> index;
+    private String existingCode;
+    private String missingCode;
+
+    @Setup
+    public void setUp() throws SQLException {
+        List<Region> regions = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            regions.add(new Region(i, "r" + i, "Región " + i));
+        }
+        index = CodeIndex.create("benchmark", TimeUnit.HOURS.toMillis(1), Region::getId, Region::getCode);
+        index.reload(() -> regions);
+        existingCode = "r" + (size / 2);
+        missingCode = "x" + size;
+    }
+
+    @Benchmark
+    public Boolean existingCode() {
+        return index.containsCode(existingCode, 0);
+    }
+
+    @Benchmark
+    public Boolean existingCodeSameRow() {
+        return index.containsCode(existingCode, size / 2);
+    }
+
+    @Benchmark
+    public Boolean missingCode() {
+        return index.containsCode(missingCode, 0);
+    }
+}
@@ -0,0 +1,105 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.iesalixar.daw2.javiermorenosalas.entity.Location;
+import org.iesalixar.daw2.javiermorenosalas.entity.Province;
+import org.openjdk.jmh.annotations.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide el paso de filas a entidades en {@link ProvinceDAOImpl#listAllProvinces()} y
+ * {@link LocationDAOImpl#listAllLocations()} sin base de datos.
+ *
+ * Los DAO se ejecutan dentro de una {@link UnitOfWork} con una conexión simulada cuyas consultas
+ * devuelven un {@link StubResultSet} con {@code rows} filas. Cada llamada abre su propia unidad de
+ * trabajo, como una petición, así que la medida incluye ese coste fijo además del mapeo.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class RowMappingBenchmark {
+
+    // Columnas de SELECT * sobre provincias y regiones, con el alias de cada tabla
+    private static final String[] PROVINCE_COLUMNS = {
+            "p.id", "p.code", "p.name", "p.id_region", "p.code_normalized",
+            "r.id", "r.code", "r.name", "r.code_normalized"};
+
+    // Columnas de la consulta de resumen de ubicaciones
+    private static final String[] LOCATION_COLUMNS = {
+            "l.id", "l.address", "l.city", "supermarket_id", "supermarket_name",
+            "province_id", "province_code", "province_name"};
+
+    @Param({"50", "1000"})
+    private int rows;
+
+    private Connection connection;
+    private ProvinceDAOImpl provinceDAO;
+    private LocationDAOImpl locationDAO;
+
+    @Setup
+    public void setUp() {
+        Object[][] provinceRows = new Object[rows][];
+        Object[][] locationRows = new Object[rows][];
+        for (int i = 0; i < rows; i++) {
+            int id = i + 1;
+            String code = String.format("%02d", id % 100);
+            provinceRows[i] = new Object[]{id, code, "Provincia " + id, id % 17 + 1, code,
+                    id % 17 + 1, "R" + (id % 17 + 1), "Región " + (id % 17 + 1), "R" + (id % 17 + 1)};
+            locationRows[i] = new Object[]{id, "Calle Mayor " + id, "Ciudad " + id % 40, id % 8 + 1,
+                    "Supermercado " + (id % 8 + 1), id % 52 + 1, code, "Provincia " + (id % 52 + 1)};
+        }
+        connection = stubConnection(provinceRows, locationRows);
+        provinceDAO = new ProvinceDAOImpl();
+        locationDAO = new LocationDAOImpl();
+    }
+
+    @Benchmark
+    public List<Province> listAllProvinces() throws SQLException {
+        try (UnitOfWork ignored = UnitOfWork.begin(false, connection)) {
+            return provinceDAO.listAllProvinces();
+        }
+    }
+
+    @Benchmark
+    public List<Location> listAllLocations() throws SQLException {
+        try (UnitOfWork ignored = UnitOfWork.begin(false, connection)) {
+            return locationDAO.listAllLocations();
+        }
+    }
+
+    /**
+     * Conexión simulada: {@code createStatement()} devuelve una sentencia que responde con las
+     * filas de provincias o de ubicaciones según la tabla principal de la consulta.
+     */
+    private static Connection stubConnection(Object[][] provinceRows, Object[][] locationRows) {
+        Statement statement = (Statement) Proxy.newProxyInstance(
+                Statement.class.getClassLoader(),
+                new Class<?>[]{Statement.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "executeQuery" -> ((String) args[0]).contains("FROM provinces")
+                            ? new StubResultSet(PROVINCE_COLUMNS, provinceRows)
+                            : new StubResultSet(LOCATION_COLUMNS, locationRows);
+                    case "close" -> null;
+                    default -> throw new SQLFeatureNotSupportedException(method.getName());
+                });
+
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "createStatement" -> statement;
+                    case "getAutoCommit" -> true;
+                    case "setAutoCommit", "close" -> null;
+                    default -> throw new SQLFeatureNotSupportedException(method.getName());
+                });
+    }
+}
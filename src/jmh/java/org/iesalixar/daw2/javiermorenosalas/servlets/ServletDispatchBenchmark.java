@@ -0,0 +1,117 @@
+package org.iesalixar.daw2.javiermorenosalas.servlets;
+
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.iesalixar.daw2.javiermorenosalas.dao.*;
+import org.iesalixar.daw2.javiermorenosalas.entity.*;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Mide el {@code doGet} de los servlets para cada acción, con la petición, la respuesta y los DAO
+ * simulados con Mockito. El reenvío a la JSP no hace nada, así que se mide el reparto de la acción,
+ * la lectura de parámetros y la preparación de los atributos de la vista.
+ *
+ * Los simulacros son {@code stubOnly} para que no guarden las llamadas recibidas; aun así, parte de
+ * lo que reserva cada llamada es de Mockito. Los resultados sirven para comparar entre versiones,
+ * no como coste absoluto.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ServletDispatchBenchmark {
+
+    @Param({"list", "new", "edit"})
+    private String action;
+
+    private HttpServletRequest request;
+    private HttpServletResponse response;
+    private LocationServlet locationServlet;
+    private RegionServlet regionServlet;
+
+    @Setup
+    public void setUp() throws Exception {
+        List<Region> regions = new ArrayList<>();
+        List<Province> provinces = new ArrayList<>();
+        List<Supermarket> supermarkets = new ArrayList<>();
+        List<Location> locations = new ArrayList<>();
+        for (int i = 1; i <= 17; i++) {
+            regions.add(new Region(i, "R" + i, "Región " + i));
+        }
+        for (int i = 1; i <= 52; i++) {
+            provinces.add(new Province(i, String.format("%02d", i), "Provincia " + i, regions.get(i % 17)));
+        }
+        for (int i = 1; i <= 8; i++) {
+            supermarkets.add(new Supermarket(i, "Supermercado " + i));
+        }
+        for (int i = 1; i <= 21; i++) {
+            locations.add(new Location(i, "Calle Mayor " + i, "Ciudad " + i,
+                    supermarkets.get(i % 8), provinces.get(i % 52)));
+        }
+
+        RequestDispatcher dispatcher = stub(RequestDispatcher.class);
+        request = stub(HttpServletRequest.class);
+        when(request.getParameter("action")).thenReturn(action);
+        when(request.getParameter("id")).thenReturn("1");
+        when(request.getRequestDispatcher(anyString())).thenReturn(dispatcher);
+        response = stub(HttpServletResponse.class);
+
+        LocationDAO locationDAO = stub(LocationDAO.class);
+        when(locationDAO.listLocationsAfter(anyInt(), anyInt())).thenReturn(locations);
+        when(locationDAO.getLocationById(anyInt())).thenReturn(locations.get(0));
+        SupermarketDAO supermarketDAO = stub(SupermarketDAO.class);
+        when(supermarketDAO.listAllSupermarkets()).thenReturn(supermarkets);
+        ProvinceDAO provinceDAO = stub(ProvinceDAO.class);
+        when(provinceDAO.listAllProvinces()).thenReturn(provinces);
+        RegionDAO regionDAO = stub(RegionDAO.class);
+        when(regionDAO.listAllRegions()).thenReturn(regions);
+        when(regionDAO.getRegionById(anyInt())).thenReturn(regions.get(0));
+
+        // Se asignan los DAO directamente en lugar de llamar a init(), que crea los reales
+        locationServlet = new LocationServlet();
+        setField(locationServlet, "locationDAO", locationDAO);
+        setField(locationServlet, "supermarketDAO", supermarketDAO);
+        setField(locationServlet, "provinceDAO", provinceDAO);
+        setField(locationServlet, "asyncLocationDAO", new AsyncDAO<>(locationDAO));
+        setField(locationServlet, "asyncSupermarketDAO", new AsyncDAO<>(supermarketDAO));
+        setField(locationServlet, "asyncProvinceDAO", new AsyncDAO<>(provinceDAO));
+        regionServlet = new RegionServlet();
+        setField(regionServlet, "regionDAO", regionDAO);
+    }
+
+    @Benchmark
+    public void locations() throws ServletException, IOException {
+        locationServlet.doGet(request, response);
+    }
+
+    @Benchmark
+    public void regions() throws ServletException, IOException {
+        regionServlet.doGet(request, response);
+    }
+
+    private static <T> T stub(Class<T> type) {
+        return mock(type, withSettings().stubOnly());
+    }
+
+    private static void setField(Object target, String name, Object value) throws ReflectiveOperationException {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+}
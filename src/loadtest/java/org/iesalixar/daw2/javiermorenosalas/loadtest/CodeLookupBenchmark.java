@@ -0,0 +1,198 @@
+package org.iesalixar.daw2.javiermorenosalas.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.iesalixar.daw2.javiermorenosalas.dao.DataInitializer;
+import org.iesalixar.daw2.javiermorenosalas.dao.RegionDAOImpl;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mide la comprobación de códigos de región repetidos a medida que crece la tabla.
+ *
+ * Arranca la MariaDB embebida, crea el esquema con {@code data.sql} y va llenando
+ * {@code regions} hasta cada uno de los tamaños indicados. En cada tamaño mide
+ * {@link RegionDAOImpl#existsRegionByCode} y {@link RegionDAOImpl#existsRegionByCodeAndNotId},
+ * que buscan por la columna indexada {@code code_normalized}, y la consulta anterior con
+ * {@code UPPER(code) = ?}, que recorre la tabla entera. Muestra además el tipo de acceso que elige
+ * MariaDB para cada una ({@code EXPLAIN}): {@code ref} es una búsqueda en el índice y {@code ALL} o
+ * {@code index} un recorrido completo.
+ *
+ * La búsqueda por índice debe mantenerse casi constante (O(log n)) mientras que el recorrido crece
+ * con la tabla. Se lanza con {@code mvn -Ploadtest test-compile exec:exec@code-lookup}; los tamaños
+ * se cambian con {@code -Dlookup.sizes=1000,10000,100000,1000000}.
+ */
+public final class CodeLookupBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(CodeLookupBenchmark.class);
+
+    // Consulta de antes del índice, para comparar
+    private static final String SCAN_SQL = "SELECT COUNT(*) FROM regions WHERE UPPER(code) = ?";
+
+    private static final int INDEXED_ITERATIONS = 2000;
+    private static final int SCAN_MAX_ITERATIONS = 200;
+    private static final long SCAN_MAX_NANOS = TimeUnit.SECONDS.toNanos(3);
+
+    private CodeLookupBenchmark() {}
+
+    public static void main(String[] args) throws Exception {
+        int[] sizes = Arrays.stream(System.getProperty("lookup.sizes", "1000,10000,100000,1000000").split(","))
+                .mapToInt(size -> Integer.parseInt(size.trim()))
+                .sorted()
+                .toArray();
+        Path output = Path.of(System.getProperty("lookup.output", "target/code-lookup-result.json"));
+
+        String url = System.getenv("DB_URL");
+        if (url == null) {
+            throw new IllegalStateException("Falta la variable de entorno DB_URL; lanza la prueba con mvn -Ploadtest test-compile exec:exec@code-lookup.");
+        }
+
+        try (EmbeddedDatabase database = EmbeddedDatabase.start(url, System.getenv("DB_USER"),
+                System.getenv("DB_PASSWORD"), Path.of("target/code-lookup-db"))) {
+            try (InputStream sql = CodeLookupBenchmark.class.getResourceAsStream("/data.sql")) {
+                DataInitializer.loadDataFromSQL(sql);
+            }
+
+            RegionDAOImpl regionDAO = new RegionDAOImpl();
+            Random random = new Random(42);
+            List<Map<String, Object>> results = new ArrayList<>();
+            StringBuilder table = new StringBuilder(String.format(Locale.ROOT, "%n%10s %14s %18s %14s %12s %12s%n",
+                    "filas", "índice µs", "índice sin ID µs", "recorrido µs", "acceso idx", "acceso scan"));
+
+            try (Connection connection = database.getConnection()) {
+                int rows = countRegions(connection);
+                for (int size : sizes) {
+                    rows = growTo(connection, rows, size);
+
+                    String[] codes = lookupCodes(rows, random);
+                    warmUp(regionDAO, codes);
+                    double indexed = measure(codes, INDEXED_ITERATIONS, Long.MAX_VALUE,
+                            code -> regionDAO.existsRegionByCode(code));
+                    double indexedNotId = measure(codes, INDEXED_ITERATIONS, Long.MAX_VALUE,
+                            code -> regionDAO.existsRegionByCodeAndNotId(code, 1));
+                    double scan;
+                    try (PreparedStatement statement = connection.prepareStatement(SCAN_SQL)) {
+                        scan = measure(codes, SCAN_MAX_ITERATIONS, SCAN_MAX_NANOS, code -> {
+                            statement.setString(1, code);
+                            try (ResultSet resultSet = statement.executeQuery()) {
+                                return resultSet.next() && resultSet.getInt(1) > 0;
+                            }
+                        });
+                    }
+                    String indexedAccess = explain(connection, "SELECT 1 FROM regions WHERE code_normalized = 'B1' LIMIT 1");
+                    String scanAccess = explain(connection, "SELECT COUNT(*) FROM regions WHERE UPPER(code) = 'B1'");
+
+                    table.append(String.format(Locale.ROOT, "%10d %14.1f %18.1f %14.1f %12s %12s%n",
+                            rows, indexed, indexedNotId, scan, indexedAccess, scanAccess));
+                    Map<String, Object> result = new LinkedHashMap<>();
+                    result.put("rows", rows);
+                    result.put("existsByCodeMicros", indexed);
+                    result.put("existsByCodeAndNotIdMicros", indexedNotId);
+                    result.put("upperCodeScanMicros", scan);
+                    result.put("indexedAccess", indexedAccess);
+                    result.put("scanAccess", scanAccess);
+                    results.add(result);
+                }
+            }
+
+            System.out.print(table);
+            Files.createDirectories(output.toAbsolutePath().getParent());
+            new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), results);
+            logger.info("Resultados guardados en {}", output);
+        }
+    }
+
+    /**
+     * Consulta a medir con un código.
+     */
+    @FunctionalInterface
+    private interface Lookup {
+        boolean exists(String code) throws SQLException;
+    }
+
+    private static int countRegions(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM regions")) {
+            resultSet.next();
+            return resultSet.getInt(1);
+        }
+    }
+
+    /**
+     * Añade regiones con códigos {@code B1}, {@code B2}... hasta llegar al tamaño indicado, con el
+     * motor de secuencias de MariaDB, y actualiza las estadísticas de la tabla.
+     *
+     * @return El número de filas de la tabla.
+     */
+    private static int growTo(Connection connection, int rows, int size) throws SQLException {
+        if (size > rows) {
+            logger.info("Llenando regions hasta {} filas...", size);
+            int first = rows + 1;
+            try (Statement statement = connection.createStatement()) {
+                statement.executeUpdate("INSERT INTO regions (code, name) SELECT CONCAT('B', seq), CONCAT('Región ', seq)"
+                        + " FROM seq_" + first + "_to_" + size);
+                statement.execute("ANALYZE TABLE regions");
+            }
+        }
+        return countRegions(connection);
+    }
+
+    /**
+     * Mitad de códigos existentes y mitad inexistentes, en minúsculas para que la comparación sin
+     * distinguir mayúsculas tenga efecto.
+     */
+    private static String[] lookupCodes(int rows, Random random) {
+        String[] codes = new String[256];
+        for (int i = 0; i < codes.length; i++) {
+            codes[i] = i % 2 == 0 ? "b" + (1 + random.nextInt(rows)) : "x" + random.nextInt(rows);
+        }
+        return codes;
+    }
+
+    private static void warmUp(RegionDAOImpl regionDAO, String[] codes) throws SQLException {
+        for (int i = 0; i < INDEXED_ITERATIONS / 4; i++) {
+            regionDAO.existsRegionByCode(codes[i % codes.length]);
+        }
+    }
+
+    /**
+     * @return Tiempo medio por consulta en microsegundos.
+     */
+    private static double measure(String[] codes, int maxIterations, long maxNanos, Lookup lookup) throws SQLException {
+        long start = System.nanoTime();
+        int iterations = 0;
+        while (iterations < maxIterations && System.nanoTime() - start < maxNanos) {
+            lookup.exists(codes[iterations % codes.length]);
+            iterations++;
+        }
+        return (System.nanoTime() - start) / 1000.0 / iterations;
+    }
+
+    /**
+     * @return El tipo de acceso que MariaDB elige para la consulta.
+     */
+    private static String explain(Connection connection, String query) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("EXPLAIN " + query)) {
+            resultSet.next();
+            return resultSet.getString("type");
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package org.iesalixar.daw2.javiermorenosalas.loadtest;
+
+import ch.vorburger.exec.ManagedProcessException;
+import ch.vorburger.mariadb4j.DB;
+import ch.vorburger.mariadb4j.DBConfigurationBuilder;
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * MariaDB embebida para la prueba de carga, con los binarios de MariaDB4j.
+ *
+ * Escucha en el puerto de la URL de conexión que usa la aplicación y crea la base de datos vacía;
+ * las tablas y los datos los crea la propia aplicación al arrancar a partir de {@code data.sql}.
+ * El directorio de datos se borra en cada arranque para que todas las ejecuciones partan del
+ * mismo estado.
+ */
+final class EmbeddedDatabase implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedDatabase.class);
+
+    private final DB db;
+    private final String url;
+    private final String user;
+    private final String password;
+
+    private EmbeddedDatabase(DB db, String url, String user, String password) {
+        this.db = db;
+        this.url = url;
+        this.user = user;
+        this.password = password;
+    }
+
+    /**
+     * Arranca la base de datos y crea el esquema indicado en la URL.
+     *
+     * @param url      URL JDBC de la aplicación, por ejemplo {@code jdbc:mariadb://127.0.0.1:3307/ticketlogger}.
+     * @param user     Usuario de la aplicación (se aceptan todos: no se comprueban permisos).
+     * @param password Contraseña de la aplicación.
+     * @param dataDir  Directorio de datos; se vacía antes de arrancar.
+     * @return La base de datos en marcha; debe cerrarse al terminar.
+     */
+    static EmbeddedDatabase start(String url, String user, String password, Path dataDir)
+            throws ManagedProcessException, IOException, SQLException {
+        URI uri = URI.create(url.substring("jdbc:".length()));
+        String schema = uri.getPath().substring(1);
+
+        FileUtils.deleteDirectory(dataDir.toFile());
+        DBConfigurationBuilder config = DBConfigurationBuilder.newBuilder();
+        config.setPort(uri.getPort());
+        config.setDataDir(dataDir.toAbsolutePath().toString());
+        config.addArg("--bind-address=127.0.0.1");
+        if ("root".equals(System.getProperty("user.name"))) {
+            // mariadbd se niega a arrancar como root si no se indica expresamente
+            config.addArg("--user=root");
+        }
+
+        logger.info("Arrancando MariaDB embebida en el puerto {}...", uri.getPort());
+        DB db = DB.newEmbeddedDB(config.build());
+        db.start();
+        EmbeddedDatabase database = new EmbeddedDatabase(db, url, user, password);
+
+        // El cliente de línea de comandos de MariaDB4j necesita bibliotecas del sistema; se usa JDBC
+        try (Connection connection = DriverManager.getConnection(config.getURL(""), user, password);
+             Statement statement = connection.createStatement()) {
+            statement.execute("CREATE DATABASE IF NOT EXISTS `" + schema + "` CHARACTER SET utf8mb4");
+        } catch (SQLException e) {
+            database.close();
+            throw e;
+        }
+        return database;
+    }
+
+    /**
+     * @return Una conexión nueva al esquema de la aplicación; debe cerrarse al terminar.
+     */
+    Connection getConnection() throws SQLException {
+        return DriverManager.getConnection(url, user, password);
+    }
+
+    @Override
+    public void close() {
+        try {
+            db.stop();
+        } catch (ManagedProcessException e) {
+            logger.warn("Error al parar MariaDB embebida: {}", e.getMessage());
+        }
+    }
+}
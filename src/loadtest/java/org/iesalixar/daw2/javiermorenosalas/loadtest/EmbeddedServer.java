@@ -0,0 +1,87 @@
+package org.iesalixar.daw2.javiermorenosalas.loadtest;
+
+import org.eclipse.jetty.annotations.AnnotationConfiguration;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.webapp.WebAppContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Jetty embebido que despliega el WAR de la aplicación en un puerto libre de la interfaz local.
+ *
+ * Las anotaciones {@code @WebServlet}, {@code @WebFilter} y {@code @WebListener} se procesan igual
+ * que en {@code mvn jetty:run}, y las JSP se compilan con Jasper y JSTL desde el classpath de la
+ * prueba, de modo que cada petición recorre filtros, servlet y vista.
+ */
+final class EmbeddedServer implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(EmbeddedServer.class);
+
+    // Jars del classpath del contenedor en los que se buscan TLD (las etiquetas de JSTL)
+    private static final String CONTAINER_JAR_PATTERN = ".*/jakarta\\.servlet\\.jsp\\.jstl-[^/]*\\.jar$";
+
+    private final Server server;
+    private final URI baseUri;
+
+    private EmbeddedServer(Server server, URI baseUri) {
+        this.server = server;
+        this.baseUri = baseUri;
+    }
+
+    /**
+     * Despliega el WAR y espera a que la aplicación haya arrancado.
+     *
+     * @param war     WAR de la aplicación.
+     * @param workDir Directorio donde se descomprime el WAR y se compilan las JSP.
+     * @return El servidor en marcha; debe cerrarse al terminar.
+     * @throws IllegalStateException Si la aplicación no llega a arrancar.
+     */
+    static EmbeddedServer start(Path war, Path workDir) throws Exception {
+        if (!Files.isRegularFile(war)) {
+            throw new IllegalStateException("No se encuentra el WAR " + war + "; ejecuta antes mvn package.");
+        }
+        Files.createDirectories(workDir);
+
+        Server server = new Server();
+        ServerConnector connector = new ServerConnector(server);
+        connector.setHost("127.0.0.1");
+        connector.setPort(0);
+        server.addConnector(connector);
+
+        WebAppContext context = new WebAppContext();
+        context.setContextPath("/");
+        context.setWar(war.toAbsolutePath().toString());
+        context.setTempDirectory(workDir.toAbsolutePath().toFile());
+        context.setAttribute("org.eclipse.jetty.server.webapp.ContainerIncludeJarPattern", CONTAINER_JAR_PATTERN);
+        // El driver de MariaDB también está en el classpath de la prueba (lo usa la base de datos
+        // embebida) y DriverManager solo entrega los drivers visibles desde el cargador de quien
+        // pide la conexión: la aplicación debe usar la copia del contenedor, no la de su WAR
+        context.getSystemClassMatcher().add("org.mariadb.jdbc.");
+        context.addConfiguration(new AnnotationConfiguration());
+        context.setThrowUnavailableOnStartupException(true);
+        server.setHandler(context);
+
+        logger.info("Desplegando {} en Jetty embebido...", war);
+        server.start();
+        URI baseUri = URI.create("http://127.0.0.1:" + connector.getLocalPort() + "/");
+        logger.info("Aplicación disponible en {}", baseUri);
+        return new EmbeddedServer(server, baseUri);
+    }
+
+    /**
+     * @return La URL base de la aplicación, terminada en {@code /}.
+     */
+    URI getBaseUri() {
+        return baseUri;
+    }
+
+    @Override
+    public void close() throws Exception {
+        server.stop();
+    }
+}
@@ -0,0 +1,119 @@
+package org.iesalixar.daw2.javiermorenosalas.loadtest;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latencias y errores de la prueba de carga, agrupados por operación.
+ *
+ * Se guardan todas las muestras, no un histograma, para que los percentiles sean exactos y se
+ * puedan comparar ejecuciones aunque la diferencia sea pequeña. A ritmos de prueba habituales son
+ * pocas decenas de miles de valores.
+ */
+final class LatencyRecorder {
+
+    private final Map<String, Samples> samplesByName = new ConcurrentHashMap<>();
+
+    /**
+     * Anota una petición terminada.
+     *
+     * @param name          Operación, por ejemplo {@code "regions edit"}.
+     * @param durationNanos Latencia desde el momento en que debía enviarse la petición.
+     * @param failed        Si la respuesta no es la esperada o no llegó.
+     */
+    void record(String name, long durationNanos, boolean failed) {
+        samplesByName.computeIfAbsent(name, key -> new Samples()).add(durationNanos, failed);
+    }
+
+    /**
+     * @return Las estadísticas de cada operación, ordenadas por nombre.
+     */
+    Map<String, Summary> summarize() {
+        Map<String, Summary> summaries = new TreeMap<>();
+        samplesByName.forEach((name, samples) -> summaries.put(name, samples.summarize()));
+        return summaries;
+    }
+
+    /**
+     * @return Las estadísticas de todas las peticiones juntas.
+     */
+    Summary summarizeAll() {
+        Samples all = new Samples();
+        for (Samples samples : samplesByName.values()) {
+            all.addAll(samples);
+        }
+        return all.summarize();
+    }
+
+
+    /**
+     * Estadísticas de un grupo de peticiones; las latencias en milisegundos.
+     */
+    static final class Summary {
+
+        final long count;
+        final long errors;
+        final double p50;
+        final double p99;
+        final double p999;
+        final double max;
+
+        private Summary(long[] sortedNanos, long errors) {
+            this.count = sortedNanos.length;
+            this.errors = errors;
+            this.p50 = percentile(sortedNanos, 0.50);
+            this.p99 = percentile(sortedNanos, 0.99);
+            this.p999 = percentile(sortedNanos, 0.999);
+            this.max = sortedNanos.length == 0 ? 0.0 : toMillis(sortedNanos[sortedNanos.length - 1]);
+        }
+
+        // Percentil por el método del rango más cercano
+        private static double percentile(long[] sortedNanos, double quantile) {
+            if (sortedNanos.length == 0) {
+                return 0.0;
+            }
+            int rank = (int) Math.ceil(quantile * sortedNanos.length);
+            return toMillis(sortedNanos[Math.max(rank, 1) - 1]);
+        }
+
+        private static double toMillis(long nanos) {
+            return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+        }
+    }
+
+
+    private static final class Samples {
+
+        private long[] nanos = new long[1024];
+        private int size;
+        private long errors;
+
+        synchronized void add(long durationNanos, boolean failed) {
+            if (size == nanos.length) {
+                nanos = Arrays.copyOf(nanos, size * 2);
+            }
+            nanos[size++] = durationNanos;
+            if (failed) {
+                errors++;
+            }
+        }
+
+        synchronized void addAll(Samples other) {
+            synchronized (other) {
+                for (int i = 0; i < other.size; i++) {
+                    add(other.nanos[i], false);
+                }
+                errors += other.errors;
+            }
+        }
+
+        synchronized Summary summarize() {
+            long[] sorted = Arrays.copyOf(nanos, size);
+            Arrays.sort(sorted);
+            return new Summary(sorted, errors);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package org.iesalixar.daw2.javiermorenosalas.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Envía peticiones a ritmo fijo (modelo abierto): la petición {@code i} se programa para el
+ * instante {@code inicio + i / ritmo} y se lanza en su propio hilo virtual, sin esperar a que
+ * terminen las anteriores.
+ *
+ * La latencia se mide desde el instante programado y no desde el envío real. Si la aplicación se
+ * atasca, las peticiones que debían salir durante el atasco cuentan también la espera, como le
+ * ocurriría a un usuario; medir desde el envío ocultaría esos retrasos en los percentiles altos.
+ */
+final class LoadGenerator {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadGenerator.class);
+
+    private final HttpClient client;
+    private final Workload workload;
+    private final int requestsPerSecond;
+
+    LoadGenerator(HttpClient client, Workload workload, int requestsPerSecond) {
+        this.client = client;
+        this.workload = workload;
+        this.requestsPerSecond = requestsPerSecond;
+    }
+
+    /**
+     * Genera tráfico durante el tiempo indicado y espera a que terminen todas las peticiones.
+     *
+     * @param seconds  Duración de la fase.
+     * @param recorder Dónde se anotan las latencias.
+     * @return Segundos transcurridos hasta que terminó la última petición.
+     */
+    double run(int seconds, LatencyRecorder recorder) throws InterruptedException {
+        long intervalNanos = TimeUnit.SECONDS.toNanos(1) / requestsPerSecond;
+        long total = (long) seconds * requestsPerSecond;
+        long start = System.nanoTime();
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (long i = 0; i < total; i++) {
+                long scheduled = start + i * intervalNanos;
+                long delay = scheduled - System.nanoTime();
+                if (delay > 0) {
+                    LockSupport.parkNanos(delay);
+                }
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                Workload.Request request = workload.next();
+                executor.execute(() -> send(request, scheduled, recorder));
+            }
+            // Al cerrar el ejecutor se espera a las peticiones en curso
+        }
+        return (System.nanoTime() - start) / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private void send(Workload.Request request, long scheduled, LatencyRecorder recorder) {
+        boolean failed;
+        try {
+            HttpResponse<Void> response = client.send(request.getHttpRequest(), HttpResponse.BodyHandlers.discarding());
+            failed = response.statusCode() != request.getExpectedStatus();
+            if (failed) {
+                logger.debug("{} respondió {}", request.getName(), response.statusCode());
+            }
+        } catch (Exception e) {
+            failed = true;
+            logger.debug("{} falló: {}", request.getName(), e.toString());
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        recorder.record(request.getName(), System.nanoTime() - scheduled, failed);
+    }
+}
@@ -0,0 +1,144 @@
+package org.iesalixar.daw2.javiermorenosalas.loadtest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.http.HttpClient;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Prueba de carga de extremo a extremo.
+ *
+ * Arranca una MariaDB embebida, despliega el WAR en un Jetty embebido (que crea y carga las tablas
+ * desde {@code data.sql} al arrancar), crea las filas de trabajo y envía la mezcla de
+ * {@link Workload} a ritmo fijo: primero un calentamiento que no se mide y después la fase de
+ * medida. Muestra p50, p99 y p999 y el rendimiento por operación y en total, y los guarda en
+ * {@code target/loadtest-result.json} para comparar ejecuciones.
+ *
+ * Todo se ejecuta en la máquina local y no necesita red. Se lanza con el perfil {@code loadtest}:
+ * {@code mvn -Ploadtest package exec:exec}. La conexión a la base de datos se lee de las mismas
+ * variables de entorno que usa la aplicación (DB_URL, DB_USER y DB_PASSWORD); el resto de opciones
+ * son propiedades del sistema {@code loadtest.*}.
+ */
+public final class LoadTestHarness {
+
+    private static final Logger logger = LoggerFactory.getLogger(LoadTestHarness.class);
+
+    // Margen sobre los borrados esperados, para que no se agoten las filas por azar
+    private static final double DELETE_MARGIN = 1.5;
+
+    private LoadTestHarness() {}
+
+    public static void main(String[] args) throws Exception {
+        int rate = Integer.getInteger("loadtest.rate", 100);
+        int warmup = Integer.getInteger("loadtest.warmup", 15);
+        int duration = Integer.getInteger("loadtest.duration", 60);
+        long seed = Long.getLong("loadtest.seed", 42);
+        Path war = Path.of(System.getProperty("loadtest.war", "target/dwese-ticket-logger-servlet.war"));
+        Path output = Path.of(System.getProperty("loadtest.output", "target/loadtest-result.json"));
+
+        String url = System.getenv("DB_URL");
+        if (url == null) {
+            throw new IllegalStateException("Falta la variable de entorno DB_URL; lanza la prueba con mvn -Ploadtest package exec:exec.");
+        }
+
+        try (EmbeddedDatabase database = EmbeddedDatabase.start(url, System.getenv("DB_USER"),
+                System.getenv("DB_PASSWORD"), Path.of("target/loadtest-db"));
+             EmbeddedServer server = EmbeddedServer.start(war, Path.of("target/loadtest-work"))) {
+
+            HttpClient client = HttpClient.newBuilder()
+                    .version(HttpClient.Version.HTTP_1_1)
+                    .followRedirects(HttpClient.Redirect.NEVER)
+                    .connectTimeout(Duration.ofSeconds(5))
+                    .build();
+
+            Workload workload = new Workload(server.getBaseUri(), seed);
+            double expectedDeletes = (double) rate * (warmup + duration)
+                    * Workload.Operation.DELETE.getWeight() / totalWeight() / Workload.Entity.values().length;
+            workload.prepare(database, client, (int) Math.ceil(expectedDeletes * DELETE_MARGIN) + 10);
+
+            LoadGenerator generator = new LoadGenerator(client, workload, rate);
+            logger.info("Calentamiento: {} s a {} peticiones/s...", warmup, rate);
+            generator.run(warmup, new LatencyRecorder());
+
+            logger.info("Medida: {} s a {} peticiones/s...", duration, rate);
+            LatencyRecorder recorder = new LatencyRecorder();
+            double elapsed = generator.run(duration, recorder);
+
+            Map<String, LatencyRecorder.Summary> summaries = recorder.summarize();
+            LatencyRecorder.Summary total = recorder.summarizeAll();
+            double throughput = total.count / elapsed;
+            print(summaries, total, rate, throughput);
+            write(output, summaries, total, rate, warmup, duration, seed, throughput);
+            logger.info("Resultados guardados en {}", output);
+        }
+    }
+
+    private static int totalWeight() {
+        int weight = 0;
+        for (Workload.Operation operation : Workload.Operation.values()) {
+            weight += operation.getWeight();
+        }
+        return weight;
+    }
+
+    private static void print(Map<String, LatencyRecorder.Summary> summaries, LatencyRecorder.Summary total,
+                              int rate, double throughput) {
+        StringBuilder table = new StringBuilder();
+        String header = String.format(Locale.ROOT, "%-20s %10s %8s %10s %10s %10s %10s%n",
+                "operación", "peticiones", "errores", "p50 ms", "p99 ms", "p999 ms", "máx ms");
+        table.append('\n').append(header);
+        summaries.forEach((name, summary) -> table.append(row(name, summary)));
+        table.append(row("total", total));
+        table.append(String.format(Locale.ROOT, "%nRendimiento: %.1f peticiones/s (objetivo %d peticiones/s)%n",
+                throughput, rate));
+        System.out.print(table);
+    }
+
+    private static String row(String name, LatencyRecorder.Summary summary) {
+        return String.format(Locale.ROOT, "%-20s %10d %8d %10.2f %10.2f %10.2f %10.2f%n",
+                name, summary.count, summary.errors, summary.p50, summary.p99, summary.p999, summary.max);
+    }
+
+    private static void write(Path output, Map<String, LatencyRecorder.Summary> summaries,
+                              LatencyRecorder.Summary total, int rate, int warmup, int duration, long seed,
+                              double throughput) throws Exception {
+        Map<String, Object> config = new LinkedHashMap<>();
+        config.put("rate", rate);
+        config.put("warmupSeconds", warmup);
+        config.put("durationSeconds", duration);
+        config.put("seed", seed);
+        config.put("javaVersion", System.getProperty("java.version"));
+        config.put("availableProcessors", Runtime.getRuntime().availableProcessors());
+
+        Map<String, Object> operations = new LinkedHashMap<>();
+        summaries.forEach((name, summary) -> operations.put(name, toMap(summary)));
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("config", config);
+        result.put("throughput", throughput);
+        result.put("total", toMap(total));
+        result.put("operations", operations);
+
+        Files.createDirectories(output.toAbsolutePath().getParent());
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(output.toFile(), result);
+    }
+
+    private static Map<String, Object> toMap(LatencyRecorder.Summary summary) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.put("count", summary.count);
+        values.put("errors", summary.errors);
+        values.put("p50Millis", summary.p50);
+        values.put("p99Millis", summary.p99);
+        values.put("p999Millis", summary.p999);
+        values.put("maxMillis", summary.max);
+        return values;
+    }
+}
@@ -0,0 +1,354 @@
+package org.iesalixar.daw2.javiermorenosalas.loadtest;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Mezcla de peticiones de la prueba de carga sobre los cuatro servlets CRUD.
+ *
+ * Cada petición elige entidad (regiones, provincias, supermercados o ubicaciones) con la misma
+ * probabilidad y operación según el peso de cada {@link Operation}. Las ediciones y
+ * actualizaciones usan filas de trabajo que nunca se borran y los borrados consumen otras filas de
+ * trabajo sin referencias, de modo que ninguna petición falla por claves foráneas. Las filas de
+ * trabajo se crean a través de la propia aplicación en {@link #prepare} antes de medir.
+ *
+ * La secuencia de peticiones solo depende de la semilla: con la misma semilla y la misma base de
+ * datos de partida, dos ejecuciones envían exactamente las mismas peticiones.
+ */
+final class Workload {
+
+    private static final Logger logger = LoggerFactory.getLogger(Workload.class);
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(10);
+
+    // Filas de trabajo por entidad para ediciones y actualizaciones
+    private static final int UPDATABLE_ROWS = 50;
+
+    /**
+     * Operaciones de la mezcla y su peso relativo.
+     */
+    enum Operation {
+        LIST(40), EDIT(25), INSERT(15), UPDATE(15), DELETE(5);
+
+        private final int weight;
+
+        Operation(int weight) {
+            this.weight = weight;
+        }
+
+        int getWeight() {
+            return weight;
+        }
+    }
+
+    /**
+     * Servlets CRUD, con la tabla y la columna que identifica sus filas de trabajo.
+     */
+    enum Entity {
+        REGIONS("regions", "code"),
+        PROVINCES("provinces", "code"),
+        SUPERMARKETS("supermarkets", "name"),
+        LOCATIONS("locations", "address");
+
+        private final String path;
+        private final String keyColumn;
+
+        Entity(String path, String keyColumn) {
+            this.path = path;
+            this.keyColumn = keyColumn;
+        }
+
+        String getPath() {
+            return path;
+        }
+
+        /**
+         * Valor único de la columna clave; los códigos admiten como mucho 10 caracteres.
+         */
+        String key(char kind, int sequence) {
+            return keyPrefix(kind) + Integer.toString(sequence, Character.MAX_RADIX).toUpperCase(Locale.ROOT);
+        }
+
+        /**
+         * Comienzo común de las claves de un tipo de fila ('U' actualizables, 'D' para borrar y
+         * 'N' insertadas durante la prueba).
+         */
+        String keyPrefix(char kind) {
+            return keyColumn.equals("code") ? String.valueOf(kind) : "Carga " + kind;
+        }
+    }
+
+    /**
+     * Petición generada por la mezcla.
+     */
+    static final class Request {
+
+        private final Entity entity;
+        private final Operation operation;
+        private final HttpRequest httpRequest;
+
+        private Request(Entity entity, Operation operation, HttpRequest httpRequest) {
+            this.entity = entity;
+            this.operation = operation;
+            this.httpRequest = httpRequest;
+        }
+
+        /**
+         * @return Nombre con el que se agrupan los resultados, por ejemplo {@code "regions edit"}.
+         */
+        String getName() {
+            return entity.getPath() + " " + operation.name().toLowerCase(Locale.ROOT);
+        }
+
+        HttpRequest getHttpRequest() {
+            return httpRequest;
+        }
+
+        /**
+         * @return El código de estado de una respuesta correcta: 200 al mostrar y 302 al escribir.
+         */
+        int getExpectedStatus() {
+            return httpRequest.method().equals("GET") ? 200 : 302;
+        }
+    }
+
+    /**
+     * Fila de trabajo: su ID y el valor de la columna clave, que las actualizaciones conservan.
+     */
+    private static final class Row {
+
+        private final int id;
+        private final String key;
+
+        private Row(int id, String key) {
+            this.id = id;
+            this.key = key;
+        }
+    }
+
+    private final URI baseUri;
+    private final Random random;
+    private final int totalWeight;
+
+    private final Map<Entity, List<Row>> updatable = new EnumMap<>(Entity.class);
+    private final Map<Entity, ArrayDeque<Integer>> deletable = new EnumMap<>(Entity.class);
+    private List<Integer> regionIds;
+    private List<Integer> provinceIds;
+    private List<Integer> supermarketIds;
+    private int sequence;
+    private boolean deletesExhausted;
+
+    Workload(URI baseUri, long seed) {
+        this.baseUri = baseUri;
+        this.random = new Random(seed);
+        int weight = 0;
+        for (Operation operation : Operation.values()) {
+            weight += operation.getWeight();
+        }
+        this.totalWeight = weight;
+    }
+
+    /**
+     * Lee los datos de referencia de {@code data.sql} y crea las filas de trabajo a través de la
+     * aplicación.
+     *
+     * @param database        Base de datos, para leer los ID de las filas creadas.
+     * @param client          Cliente HTTP con el que se crean las filas.
+     * @param expectedDeletes Borrados que se esperan por entidad durante toda la prueba.
+     */
+    void prepare(EmbeddedDatabase database, HttpClient client, int expectedDeletes)
+            throws SQLException, IOException, InterruptedException {
+        try (Connection connection = database.getConnection()) {
+            regionIds = loadIds(connection, "SELECT id FROM regions ORDER BY id");
+            provinceIds = loadIds(connection, "SELECT id FROM provinces ORDER BY id");
+            supermarketIds = loadIds(connection, "SELECT id FROM supermarkets ORDER BY id");
+        }
+        if (regionIds.isEmpty() || provinceIds.isEmpty() || supermarketIds.isEmpty()) {
+            throw new IllegalStateException("La base de datos no tiene los datos de data.sql; revisa el arranque de la aplicación.");
+        }
+
+        logger.info("Creando {} filas de trabajo por entidad...", UPDATABLE_ROWS + expectedDeletes);
+        for (Entity entity : Entity.values()) {
+            for (int i = 0; i < UPDATABLE_ROWS; i++) {
+                send(client, insert(entity, entity.key('U', i)));
+            }
+            for (int i = 0; i < expectedDeletes; i++) {
+                send(client, insert(entity, entity.key('D', i)));
+            }
+        }
+
+        try (Connection connection = database.getConnection()) {
+            for (Entity entity : Entity.values()) {
+                updatable.put(entity, loadRows(connection, entity, entity.keyPrefix('U')));
+                ArrayDeque<Integer> ids = new ArrayDeque<>();
+                for (Row row : loadRows(connection, entity, entity.keyPrefix('D'))) {
+                    ids.add(row.id);
+                }
+                deletable.put(entity, ids);
+            }
+        }
+    }
+
+    /**
+     * Genera la siguiente petición. No es seguro llamarlo desde varios hilos a la vez.
+     */
+    Request next() {
+        Entity entity = Entity.values()[random.nextInt(Entity.values().length)];
+        Operation operation = pickOperation();
+        switch (operation) {
+            case EDIT:
+                return new Request(entity, operation, get(entity, "?action=edit&id=" + pick(updatable.get(entity)).id));
+            case INSERT:
+                return new Request(entity, operation, insert(entity, entity.key('N', sequence++)));
+            case UPDATE:
+                return new Request(entity, operation, update(entity, pick(updatable.get(entity))));
+            case DELETE:
+                Integer id = deletable.get(entity).poll();
+                if (id != null) {
+                    return new Request(entity, operation, post(entity, form("action", "delete", "id", id)));
+                }
+                if (!deletesExhausted) {
+                    deletesExhausted = true;
+                    logger.warn("Se han agotado las filas para borrar; los borrados restantes se envían como listados.");
+                }
+                return new Request(entity, Operation.LIST, get(entity, ""));
+            default:
+                return new Request(entity, operation, get(entity, ""));
+        }
+    }
+
+    private Operation pickOperation() {
+        int value = random.nextInt(totalWeight);
+        for (Operation operation : Operation.values()) {
+            value -= operation.getWeight();
+            if (value < 0) {
+                return operation;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private <T> T pick(List<T> values) {
+        return values.get(random.nextInt(values.size()));
+    }
+
+    private HttpRequest insert(Entity entity, String key) {
+        switch (entity) {
+            case REGIONS:
+                return post(entity, form("action", "insert", "code", key, "name", "Región " + key));
+            case PROVINCES:
+                return post(entity, form("action", "insert", "code", key, "name", "Provincia " + key,
+                        "id_region", pick(regionIds)));
+            case SUPERMARKETS:
+                return post(entity, form("action", "insert", "name", key));
+            default:
+                return post(entity, form("action", "insert", "address", key, "city", "Ciudad " + random.nextInt(50),
+                        "supermarket_id", pick(supermarketIds), "province_id", pick(provinceIds)));
+        }
+    }
+
+    private HttpRequest update(Entity entity, Row row) {
+        switch (entity) {
+            case REGIONS:
+                return post(entity, form("action", "update", "id", row.id, "code", row.key,
+                        "name", "Región " + row.key + " v" + sequence++));
+            case PROVINCES:
+                return post(entity, form("action", "update", "id", row.id, "code", row.key,
+                        "name", "Provincia " + row.key + " v" + sequence++, "id_region", pick(regionIds)));
+            case SUPERMARKETS:
+                return post(entity, form("action", "update", "id", row.id, "name", row.key));
+            default:
+                return post(entity, form("action", "update", "id", row.id, "address", row.key,
+                        "city", "Ciudad " + random.nextInt(50),
+                        "supermarket_id", pick(supermarketIds), "province_id", pick(provinceIds)));
+        }
+    }
+
+    private HttpRequest get(Entity entity, String query) {
+        return HttpRequest.newBuilder(baseUri.resolve(entity.getPath() + query))
+                .timeout(REQUEST_TIMEOUT)
+                .GET()
+                .build();
+    }
+
+    private HttpRequest post(Entity entity, String form) {
+        return HttpRequest.newBuilder(baseUri.resolve(entity.getPath()))
+                .timeout(REQUEST_TIMEOUT)
+                .header("Content-Type", "application/x-www-form-urlencoded; charset=UTF-8")
+                .POST(HttpRequest.BodyPublishers.ofString(form))
+                .build();
+    }
+
+    private static String form(Object... pairs) {
+        Map<String, String> fields = new LinkedHashMap<>();
+        for (int i = 0; i < pairs.length; i += 2) {
+            fields.put(pairs[i].toString(), pairs[i + 1].toString());
+        }
+        StringBuilder body = new StringBuilder();
+        for (Map.Entry<String, String> field : fields.entrySet()) {
+            if (body.length() > 0) {
+                body.append('&');
+            }
+            body.append(URLEncoder.encode(field.getKey(), StandardCharsets.UTF_8))
+                    .append('=')
+                    .append(URLEncoder.encode(field.getValue(), StandardCharsets.UTF_8));
+        }
+        return body.toString();
+    }
+
+    private static void send(HttpClient client, HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() != 302) {
+            throw new IllegalStateException("No se pudo crear una fila de trabajo: " + request.uri()
+                    + " respondió " + response.statusCode());
+        }
+    }
+
+    private static List<Integer> loadIds(Connection connection, String query) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(query)) {
+            while (resultSet.next()) {
+                ids.add(resultSet.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    private static List<Row> loadRows(Connection connection, Entity entity, String keyPrefix) throws SQLException {
+        String query = "SELECT id, " + entity.keyColumn + " FROM " + entity.getPath()
+                + " WHERE " + entity.keyColumn + " LIKE ? ORDER BY id";
+        List<Row> rows = new ArrayList<>();
+        try (PreparedStatement statement = connection.prepareStatement(query)) {
+            statement.setString(1, keyPrefix + "%");
+            try (ResultSet resultSet = statement.executeQuery()) {
+                while (resultSet.next()) {
+                    rows.add(new Row(resultSet.getInt(1), resultSet.getString(2)));
+                }
+            }
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,200 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.iesalixar.daw2.javiermorenosalas.metrics.RequestTiming;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Fachada asíncrona sobre cualquiera de los DAO ({@link RegionDAO}, {@link ProvinceDAO},
+ * {@link SupermarketDAO}, {@link LocationDAO}). Cada llamada se ejecuta en un hilo virtual y
+ * devuelve un {@link CompletableFuture}, de forma que se pueden lanzar varias consultas
+ * independientes a la vez sin ocupar hilos del contenedor:
+ *
+ * <pre>
+ * CompletableFuture&lt;List&lt;Region&gt;&gt; regions = asyncRegionDAO.supply(RegionDAO::listAllRegions);
+ * </pre>
+ *
+ * Todas las fachadas comparten un ejecutor y un límite de llamadas simultáneas
+ * ({@code DB_ASYNC_MAX_CONCURRENCY}, por defecto el tamaño máximo del pool y nunca mayor), para
+ * que las llamadas en exceso esperen aquí y no agoten el tiempo de espera del pool.
+ *
+ * Las llamadas se ejecutan fuera del hilo de la petición y, por tanto, fuera de su
+ * {@link UnitOfWork}: cada una toma su propia conexión. Están pensadas para lecturas.
+ *
+ * Dentro de una unidad de trabajo transaccional (peticiones POST) la petición ya tiene una conexión
+ * del pool, así que las llamadas se ejecutan en el momento, una tras otra y con esa misma conexión:
+ * repartirlas entre hilos pediría conexiones adicionales mientras se retiene la primera y, con
+ * muchas peticiones a la vez, agotaría el pool. Así además ven los cambios aún no confirmados.
+ *
+ * @param <D> Tipo del DAO.
+ */
+public final class AsyncDAO<D> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncDAO.class);
+
+    private static final int maxConcurrency = Math.min(
+            DatabaseConnectionManager.getIntProperty("DB_ASYNC_MAX_CONCURRENCY",
+                    DatabaseConnectionManager.getIntProperty("DB_POOL_MAX_SIZE", 10)),
+            DatabaseConnectionManager.getIntProperty("DB_POOL_MAX_SIZE", 10));
+
+    private static final Semaphore permits = new Semaphore(maxConcurrency, true);
+
+    private static final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("dao-async-", 0).factory());
+
+    /**
+     * Operación sobre el DAO.
+     */
+    @FunctionalInterface
+    public interface Call<D, R> {
+        R apply(D dao) throws SQLException;
+    }
+
+    private final D delegate;
+
+    /**
+     * @param delegate DAO sobre el que se ejecutan las llamadas.
+     */
+    public AsyncDAO(D delegate) {
+        this.delegate = delegate;
+    }
+
+    /**
+     * Ejecuta la operación en un hilo virtual o, dentro de una unidad de trabajo transaccional, en
+     * el hilo actual.
+     *
+     * @param call Operación a ejecutar sobre el DAO.
+     * @return Futuro con el resultado; si la operación lanza una {@link SQLException}, el futuro
+     *         se completa con ella.
+     */
+    public <R> CompletableFuture<R> supply(Call<D, R> call) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        UnitOfWork unitOfWork = UnitOfWork.current();
+        if (unitOfWork != null && unitOfWork.isTransactional()) {
+            complete(call, future);
+            return future;
+        }
+        // Las sentencias del hilo virtual cuentan en el desglose de tiempos de la petición
+        RequestTiming timing = RequestTiming.current();
+        try {
+            executor.execute(() -> {
+                RequestTiming previous = RequestTiming.bind(timing);
+                try {
+                    run(call, future);
+                } finally {
+                    RequestTiming.restore(previous);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * @return El DAO sobre el que se ejecutan las llamadas.
+     */
+    public D getDelegate() {
+        return delegate;
+    }
+
+    private <R> void run(Call<D, R> call, CompletableFuture<R> future) {
+        if (future.isDone()) {
+            return; // Cancelado antes de empezar
+        }
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(e);
+            return;
+        }
+        try {
+            if (!future.isDone()) {
+                complete(call, future);
+            }
+        } finally {
+            permits.release();
+        }
+    }
+
+    private <R> void complete(Call<D, R> call, CompletableFuture<R> future) {
+        try {
+            future.complete(call.apply(delegate));
+        } catch (SQLException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Espera el resultado de una llamada como mucho hasta {@code deadlineNanos} y devuelve los
+     * errores como las llamadas síncronas: la {@link SQLException} original o una
+     * {@link SQLTimeoutException} si se agota el tiempo.
+     *
+     * @param future        Futuro devuelto por {@link #supply}.
+     * @param deadlineNanos Instante límite, según {@link System#nanoTime()}.
+     * @return El resultado de la llamada.
+     * @throws SQLException Si la llamada falla, se agota el tiempo o se interrumpe la espera.
+     */
+    public static <R> R await(CompletableFuture<R> future, long deadlineNanos) throws SQLException {
+        try {
+            return future.get(Math.max(0, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            throw new SQLTimeoutException("Tiempo de espera agotado en una consulta asíncrona.", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+            throw new SQLException("Espera de una consulta asíncrona interrumpida.", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sqlException) {
+                throw sqlException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new SQLException("Error en una consulta asíncrona.", cause);
+        }
+    }
+
+    /**
+     * @return Número máximo de llamadas asíncronas simultáneas.
+     */
+    public static int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * @return Número de llamadas asíncronas en ejecución.
+     */
+    public static int getActiveCalls() {
+        return maxConcurrency - permits.availablePermits();
+    }
+
+    /**
+     * @return Número aproximado de llamadas esperando turno.
+     */
+    public static int getQueuedCalls() {
+        return permits.getQueueLength();
+    }
+
+    /**
+     * Detiene el ejecutor. Se llama al cerrar la aplicación.
+     */
+    public static void shutdown() {
+        executor.shutdownNow();
+        logger.info("Ejecutor de llamadas asíncronas a los DAO detenido.");
+    }
+}
@@ -0,0 +1,183 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Operaciones por lotes compartidas por los DAO: escrituras con lotes JDBC y reparto de IDs
+ * en listas IN (...) acotadas.
+ *
+ * Cada escritura se ejecuta en una única transacción: o se aplican todas las filas o ninguna.
+ * Por eso, si falla por un interbloqueo o una espera de bloqueo agotada, se puede repetir entera
+ * (ver {@link TransientErrorRetry}).
+ */
+final class BatchSupport {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchSupport.class);
+
+    // Número máximo de IDs en una misma lista IN (...)
+    static final int MAX_IN_LIST_SIZE = 1000;
+
+    /**
+     * Asigna los parámetros de la sentencia a partir de una entidad.
+     */
+    @FunctionalInterface
+    interface ParameterBinder<T> {
+        void bind(PreparedStatement statement, T row) throws SQLException;
+    }
+
+    private BatchSupport() {}
+
+    /**
+     * Inserta las filas con un lote JDBC y devuelve los IDs generados.
+     *
+     * @param sql    Sentencia INSERT con parámetros.
+     * @param rows   Entidades a insertar.
+     * @param binder Asigna los parámetros de cada entidad.
+     * @return Los IDs generados, en el mismo orden que las filas.
+     * @throws SQLException Si falla alguna fila; en ese caso no se inserta ninguna.
+     */
+    static <T> int[] insertBatch(String sql, List<T> rows, ParameterBinder<T> binder) throws SQLException {
+        int[] generatedIds = new int[rows.size()];
+        if (rows.isEmpty()) {
+            return generatedIds;
+        }
+
+        TransientErrorRetry.execute("insertBatch", () -> {
+            try (Connection connection = DatabaseConnectionManager.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+
+                connection.setAutoCommit(false);
+                try {
+                    for (T row : rows) {
+                        binder.bind(statement, row);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+
+                    try (ResultSet keys = statement.getGeneratedKeys()) {
+                        for (int i = 0; i < generatedIds.length && keys.next(); i++) {
+                            generatedIds[i] = keys.getInt(1);
+                        }
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+            return null;
+        });
+        logger.debug("Lote de inserción ejecutado: {} filas", rows.size());
+        return generatedIds;
+    }
+
+    /**
+     * Actualiza las filas con un lote JDBC.
+     *
+     * @param sql    Sentencia UPDATE con parámetros.
+     * @param rows   Entidades a actualizar.
+     * @param binder Asigna los parámetros de cada entidad.
+     * @throws SQLException Si falla alguna fila; en ese caso no se actualiza ninguna.
+     */
+    static <T> void updateBatch(String sql, List<T> rows, ParameterBinder<T> binder) throws SQLException {
+        if (rows.isEmpty()) {
+            return;
+        }
+
+        TransientErrorRetry.execute("updateBatch", () -> {
+            try (Connection connection = DatabaseConnectionManager.getConnection();
+                 PreparedStatement statement = connection.prepareStatement(sql)) {
+
+                connection.setAutoCommit(false);
+                try {
+                    for (T row : rows) {
+                        binder.bind(statement, row);
+                        statement.addBatch();
+                    }
+                    statement.executeBatch();
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+            return null;
+        });
+        logger.debug("Lote de actualización ejecutado: {} filas", rows.size());
+    }
+
+    /**
+     * Elimina las filas con los IDs indicados usando sentencias {@code DELETE ... WHERE id IN (...)}
+     * de hasta {@link #MAX_IN_LIST_SIZE} IDs.
+     *
+     * @param table Nombre de la tabla (constante del DAO, nunca un dato de entrada).
+     * @param ids   IDs a eliminar.
+     * @return Número de filas eliminadas.
+     * @throws SQLException Si falla alguna sentencia; en ese caso no se elimina ninguna fila.
+     */
+    static int deleteByIds(String table, int[] ids) throws SQLException {
+        if (ids.length == 0) {
+            return 0;
+        }
+
+        int deleted = TransientErrorRetry.execute("deleteByIds " + table, () -> {
+            int count = 0;
+            try (Connection connection = DatabaseConnectionManager.getConnection()) {
+                connection.setAutoCommit(false);
+                try {
+                    for (int from = 0; from < ids.length; from += MAX_IN_LIST_SIZE) {
+                        int to = Math.min(from + MAX_IN_LIST_SIZE, ids.length);
+                        String sql = "DELETE FROM " + table + " WHERE id IN (" + placeholders(to - from) + ")";
+                        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                            for (int i = from; i < to; i++) {
+                                statement.setInt(i - from + 1, ids[i]);
+                            }
+                            count += statement.executeUpdate();
+                        }
+                    }
+                    connection.commit();
+                } catch (SQLException e) {
+                    connection.rollback();
+                    throw e;
+                }
+            }
+            return count;
+        });
+        logger.debug("Borrado por lotes en {}: {} filas", table, deleted);
+        return deleted;
+    }
+
+    /**
+     * Divide los IDs (sin repetidos) en bloques de como mucho {@link #MAX_IN_LIST_SIZE} elementos.
+     *
+     * @param ids IDs a dividir.
+     * @return Bloques de IDs para usar en listas IN (...).
+     */
+    static List<List<Integer>> partitionIds(Collection<Integer> ids) {
+        List<Integer> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<List<Integer>> chunks = new ArrayList<>();
+        for (int from = 0; from < distinct.size(); from += MAX_IN_LIST_SIZE) {
+            chunks.add(distinct.subList(from, Math.min(from + MAX_IN_LIST_SIZE, distinct.size())));
+        }
+        return chunks;
+    }
+
+    /**
+     * @return Una lista de {@code count} marcadores de parámetro separados por comas.
+     */
+    static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+}
@@ -0,0 +1,158 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.iesalixar.daw2.javiermorenosalas.entity.Province;
+import org.iesalixar.daw2.javiermorenosalas.entity.Region;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorador de {@link ProvinceDAO} que sirve el listado y las búsquedas por ID desde memoria.
+ * Las búsquedas por ID se resuelven con el listado completo, que ya incluye la región de cada
+ * provincia. Cualquier escritura vacía la caché.
+ *
+ * Las comprobaciones de código repetido se resuelven con un {@link CodeIndex} que se carga junto
+ * con el listado y se actualiza en cada escritura; si no está disponible se consulta la base de datos.
+ */
+public class CachingProvinceDAO implements ProvinceDAO {
+
+    // Caché compartida por todas las instancias (cada servlet crea la suya)
+    static final ReferenceDataCache<Province> cache = ReferenceDataCache.create("provinces",
+            DatabaseConnectionManager.getIntProperty("DB_REFERENCE_CACHE_TTL_MS", 300000), Province::getId, CachingProvinceDAO::copy);
+
+    // Índice de códigos compartido, para comprobar códigos repetidos sin consultar la base de datos
+    static final CodeIndex<Province> codeIndex = CodeIndex.create("provinces",
+            DatabaseConnectionManager.getIntProperty("DB_REFERENCE_CACHE_TTL_MS", 300000), Province::getId, Province::getCode);
+
+    private final ProvinceDAO delegate;
+
+    /**
+     * @param delegate DAO que accede a la base de datos.
+     */
+    public CachingProvinceDAO(ProvinceDAO delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Province> listAllProvinces() throws SQLException {
+        return cache.getAll(this::loadAll);
+    }
+
+    @Override
+    public Province getProvinceById(int id) throws SQLException {
+        return cache.getById(id, this::loadAll);
+    }
+
+    @Override
+    public Map<Integer, Province> getProvincesByIds(Collection<Integer> ids) throws SQLException {
+        return cache.getByIds(ids, this::loadAll);
+    }
+
+    @Override
+    public void insertProvince(Province province) throws SQLException {
+        try {
+            delegate.insertProvince(province);
+            codeIndex.put(province.getId(), province.getCode());
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public UpsertResult upsertProvince(Province province) throws SQLException {
+        try {
+            UpsertResult result = delegate.upsertProvince(province);
+            codeIndex.put(result.getId(), province.getCode());
+            return result;
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public void updateProvince(Province province) throws SQLException {
+        try {
+            delegate.updateProvince(province);
+            codeIndex.put(province.getId(), province.getCode());
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public void deleteProvince(int id) throws SQLException {
+        try {
+            delegate.deleteProvince(id);
+            codeIndex.remove(id);
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public int[] insertProvinces(List<Province> provinces) throws SQLException {
+        try {
+            int[] ids = delegate.insertProvinces(provinces);
+            for (Province province : provinces) {
+                codeIndex.put(province.getId(), province.getCode());
+            }
+            return ids;
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public void updateProvinces(List<Province> provinces) throws SQLException {
+        try {
+            delegate.updateProvinces(provinces);
+            for (Province province : provinces) {
+                codeIndex.put(province.getId(), province.getCode());
+            }
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public int deleteProvinces(int[] ids) throws SQLException {
+        try {
+            int deleted = delegate.deleteProvinces(ids);
+            for (int id : ids) {
+                codeIndex.remove(id);
+            }
+            return deleted;
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public boolean existsProvinceByCode(String code) throws SQLException {
+        Boolean exists = codeIndex.containsCode(code, 0);
+        return exists != null ? exists : delegate.existsProvinceByCode(code);
+    }
+
+    @Override
+    public boolean existsProvinceByCodeAndNotId(String code, int id) throws SQLException {
+        Boolean exists = codeIndex.containsCode(code, id);
+        return exists != null ? exists : delegate.existsProvinceByCodeAndNotId(code, id);
+    }
+
+    /**
+     * Carga el listado completo desde la base de datos y reconstruye el índice de códigos.
+     */
+    private List<Province> loadAll() throws SQLException {
+        return codeIndex.reload(delegate::listAllProvinces);
+    }
+
+    /**
+     * Copia una provincia, incluida su región, para entregarla fuera de la caché.
+     */
+    static Province copy(Province province) {
+        Region region = province.getRegion() == null ? null : CachingRegionDAO.copy(province.getRegion());
+        return new Province(province.getId(), province.getCode(), province.getName(), region);
+    }
+}
@@ -0,0 +1,154 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.iesalixar.daw2.javiermorenosalas.entity.Region;
+
+import java.sql.SQLException;
+import java.util.List;
+
+/**
+ * Decorador de {@link RegionDAO} que sirve el listado y las búsquedas por ID desde memoria.
+ * Cualquier escritura vacía la caché de regiones y también la de provincias, ya que cada
+ * provincia cacheada incluye su región.
+ *
+ * Las comprobaciones de código repetido se resuelven con un {@link CodeIndex} que se carga junto
+ * con el listado y se actualiza en cada escritura; si no está disponible se consulta la base de datos.
+ */
+public class CachingRegionDAO implements RegionDAO {
+
+    // Caché compartida por todas las instancias (cada servlet crea la suya)
+    static final ReferenceDataCache<Region> cache = ReferenceDataCache.create("regions",
+            DatabaseConnectionManager.getIntProperty("DB_REFERENCE_CACHE_TTL_MS", 300000), Region::getId, CachingRegionDAO::copy);
+
+    // Índice de códigos compartido, para comprobar códigos repetidos sin consultar la base de datos
+    static final CodeIndex<Region> codeIndex = CodeIndex.create("regions",
+            DatabaseConnectionManager.getIntProperty("DB_REFERENCE_CACHE_TTL_MS", 300000), Region::getId, Region::getCode);
+
+    private final RegionDAO delegate;
+
+    /**
+     * @param delegate DAO que accede a la base de datos.
+     */
+    public CachingRegionDAO(RegionDAO delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Region> listAllRegions() throws SQLException {
+        return cache.getAll(this::loadAll);
+    }
+
+    @Override
+    public Region getRegionById(int id) throws SQLException {
+        return cache.getById(id, this::loadAll);
+    }
+
+    @Override
+    public void insertRegion(Region region) throws SQLException {
+        try {
+            delegate.insertRegion(region);
+            codeIndex.put(region.getId(), region.getCode());
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public UpsertResult upsertRegion(Region region) throws SQLException {
+        try {
+            UpsertResult result = delegate.upsertRegion(region);
+            codeIndex.put(result.getId(), region.getCode());
+            return result;
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void updateRegion(Region region) throws SQLException {
+        try {
+            delegate.updateRegion(region);
+            codeIndex.put(region.getId(), region.getCode());
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void deleteRegion(int id) throws SQLException {
+        try {
+            delegate.deleteRegion(id);
+            codeIndex.remove(id);
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public int[] insertRegions(List<Region> regions) throws SQLException {
+        try {
+            int[] ids = delegate.insertRegions(regions);
+            for (Region region : regions) {
+                codeIndex.put(region.getId(), region.getCode());
+            }
+            return ids;
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void updateRegions(List<Region> regions) throws SQLException {
+        try {
+            delegate.updateRegions(regions);
+            for (Region region : regions) {
+                codeIndex.put(region.getId(), region.getCode());
+            }
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public int deleteRegions(int[] ids) throws SQLException {
+        try {
+            int deleted = delegate.deleteRegions(ids);
+            for (int id : ids) {
+                codeIndex.remove(id);
+            }
+            return deleted;
+        } finally {
+            invalidate();
+        }
+    }
+
+    @Override
+    public boolean existsRegionByCode(String code) throws SQLException {
+        Boolean exists = codeIndex.containsCode(code, 0);
+        return exists != null ? exists : delegate.existsRegionByCode(code);
+    }
+
+    @Override
+    public boolean existsRegionByCodeAndNotId(String code, int id) throws SQLException {
+        Boolean exists = codeIndex.containsCode(code, id);
+        return exists != null ? exists : delegate.existsRegionByCodeAndNotId(code, id);
+    }
+
+    /**
+     * Carga el listado completo desde la base de datos y reconstruye el índice de códigos.
+     */
+    private List<Region> loadAll() throws SQLException {
+        return codeIndex.reload(delegate::listAllRegions);
+    }
+
+    private void invalidate() {
+        cache.invalidate();
+        CachingProvinceDAO.cache.invalidate();
+    }
+
+    /**
+     * Copia una región para entregarla fuera de la caché.
+     */
+    static Region copy(Region region) {
+        return new Region(region.getId(), region.getCode(), region.getName());
+    }
+}
@@ -0,0 +1,113 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.iesalixar.daw2.javiermorenosalas.entity.Supermarket;
+
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decorador de {@link SupermarketDAO} que sirve el listado y las búsquedas por ID desde memoria.
+ * Cualquier escritura vacía la caché.
+ */
+public class CachingSupermarketDAO implements SupermarketDAO {
+
+    // Caché compartida por todas las instancias (cada servlet crea la suya)
+    static final ReferenceDataCache<Supermarket> cache = ReferenceDataCache.create("supermarkets",
+            DatabaseConnectionManager.getIntProperty("DB_REFERENCE_CACHE_TTL_MS", 300000), Supermarket::getId, CachingSupermarketDAO::copy);
+
+    private final SupermarketDAO delegate;
+
+    /**
+     * @param delegate DAO que accede a la base de datos.
+     */
+    public CachingSupermarketDAO(SupermarketDAO delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public List<Supermarket> listAllSupermarkets() throws SQLException {
+        return cache.getAll(delegate::listAllSupermarkets);
+    }
+
+    @Override
+    public Supermarket getSupermarketById(int id) throws SQLException {
+        return cache.getById(id, delegate::listAllSupermarkets);
+    }
+
+    @Override
+    public Map<Integer, Supermarket> getSupermarketsByIds(Collection<Integer> ids) throws SQLException {
+        return cache.getByIds(ids, delegate::listAllSupermarkets);
+    }
+
+    @Override
+    public void insertSupermarket(Supermarket supermarket) throws SQLException {
+        try {
+            delegate.insertSupermarket(supermarket);
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public UpsertResult upsertSupermarket(Supermarket supermarket) throws SQLException {
+        try {
+            return delegate.upsertSupermarket(supermarket);
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public void updateSupermarket(Supermarket supermarket) throws SQLException {
+        try {
+            delegate.updateSupermarket(supermarket);
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public void deleteSupermarket(int id) throws SQLException {
+        try {
+            delegate.deleteSupermarket(id);
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public int[] insertSupermarkets(List<Supermarket> supermarkets) throws SQLException {
+        try {
+            return delegate.insertSupermarkets(supermarkets);
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public void updateSupermarkets(List<Supermarket> supermarkets) throws SQLException {
+        try {
+            delegate.updateSupermarkets(supermarkets);
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    @Override
+    public int deleteSupermarkets(int[] ids) throws SQLException {
+        try {
+            return delegate.deleteSupermarkets(ids);
+        } finally {
+            cache.invalidate();
+        }
+    }
+
+    /**
+     * Copia un supermercado para entregarlo fuera de la caché.
+     */
+    static Supermarket copy(Supermarket supermarket) {
+        return new Supermarket(supermarket.getId(), supermarket.getName());
+    }
+}
@@ -0,0 +1,357 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cortocircuito para el acceso a la base de datos.
+ *
+ * - CLOSED: las llamadas pasan y se anota el resultado de las últimas {@code windowSize}. Si el
+ *   porcentaje de fallos o de llamadas lentas supera su umbral, el circuito se abre. Anotar no
+ *   bloquea: la ventana es un array atómico y los contadores se ajustan con cada resultado que
+ *   entra y sale.
+ * - OPEN: las llamadas fallan al momento, sin esperar a la base de datos. Pasado
+ *   {@code openDurationMillis} se prueba la conexión en segundo plano con la sonda; si responde, el
+ *   circuito pasa a HALF_OPEN y, si no, se vuelve a probar más tarde.
+ * - HALF_OPEN: se dejan pasar {@code halfOpenCalls} llamadas de prueba. Cada una informa una sola
+ *   vez de su resultado con {@link #onTrialResult}; los resultados de las llamadas que no tomaron
+ *   permiso se ignoran. Si todas las pruebas salen bien el circuito se cierra; con el primer fallo
+ *   se vuelve a abrir. Una llamada de prueba que no llega a
+ *   la base de datos devuelve su permiso con {@link #releasePermission()}; si aun así pasa
+ *   {@code openDurationMillis} sin que lleguen todos los resultados (una llamada que nunca informa),
+ *   se reponen los permisos que faltan para que otras llamadas puedan completar la prueba.
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    /**
+     * Comprobación de que la base de datos vuelve a responder.
+     */
+    @FunctionalInterface
+    public interface Probe {
+        boolean probe() throws Exception;
+    }
+
+    // Resultados guardados en la ventana
+    private static final int EMPTY = 0;
+    private static final int SUCCESS = 1;
+    private static final int FAILURE = 2;
+    private static final int SLOW = 3;
+
+    private final String name;
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long slowCallThresholdNanos;
+    private final int slowCallRateThreshold;
+    private final long openDurationMillis;
+    private final int halfOpenCalls;
+    private final Probe probe;
+
+    // Ventana circular con los últimos resultados
+    private final AtomicIntegerArray window;
+    private final AtomicLong windowCalls = new AtomicLong();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final AtomicInteger slowCalls = new AtomicInteger();
+
+    private volatile State state = State.CLOSED;
+    private final AtomicInteger halfOpenPermits = new AtomicInteger();
+    private int halfOpenSuccesses = 0;
+    // Se incrementa en cada paso a HALF_OPEN para descartar comprobaciones de periodos anteriores
+    private int halfOpenGeneration = 0;
+
+    private final AtomicLong rejectedCalls = new AtomicLong();
+    private final AtomicLong timesOpened = new AtomicLong();
+
+    private final ScheduledExecutorService prober = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "circuit-breaker-probe");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * @param name                   Nombre del circuito (para trazas y métricas).
+     * @param windowSize             Número de llamadas recientes que se tienen en cuenta.
+     * @param minimumCalls           Llamadas necesarias en la ventana antes de evaluar los umbrales.
+     * @param failureRateThreshold   Porcentaje de fallos a partir del cual se abre el circuito.
+     * @param slowCallThresholdMillis Duración a partir de la cual una llamada se considera lenta.
+     * @param slowCallRateThreshold  Porcentaje de llamadas lentas a partir del cual se abre el circuito.
+     * @param openDurationMillis     Tiempo que el circuito permanece abierto antes de probar la conexión.
+     * @param halfOpenCalls          Llamadas de prueba en el estado HALF_OPEN.
+     * @param probe                  Sonda que se ejecuta en segundo plano mientras el circuito está abierto.
+     */
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, int failureRateThreshold,
+                          long slowCallThresholdMillis, int slowCallRateThreshold, long openDurationMillis,
+                          int halfOpenCalls, Probe probe) {
+        this.name = name;
+        this.window = new AtomicIntegerArray(windowSize);
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThresholdNanos = TimeUnit.MILLISECONDS.toNanos(slowCallThresholdMillis);
+        this.slowCallRateThreshold = slowCallRateThreshold;
+        this.openDurationMillis = openDurationMillis;
+        this.halfOpenCalls = halfOpenCalls;
+        this.probe = probe;
+    }
+
+    /**
+     * Comprueba si se puede hacer una llamada. Con el circuito cerrado no bloquea ni sincroniza.
+     *
+     * @return {@code true} si es una llamada de prueba: debe informar de su resultado una vez con
+     *         {@link #onTrialResult} o devolver el permiso con {@link #releasePermission()}.
+     * @throws SQLTransientConnectionException Si el circuito está abierto o no quedan llamadas de prueba.
+     */
+    public boolean acquirePermission() throws SQLTransientConnectionException {
+        State current = state;
+        if (current == State.CLOSED) {
+            return false;
+        }
+        if (current == State.HALF_OPEN && tryTakeHalfOpenPermit()) {
+            return true;
+        }
+        rejectedCalls.incrementAndGet();
+        throw new SQLTransientConnectionException("Circuito " + name + " abierto: la base de datos no está disponible.");
+    }
+
+    /**
+     * Devuelve el permiso de una llamada que no ha llegado a la base de datos (por ejemplo, porque
+     * no había conexiones libres en el pool), para que no cuente como prueba pendiente.
+     */
+    public synchronized void releasePermission() {
+        if (state == State.HALF_OPEN && halfOpenPermits.get() < halfOpenCalls - halfOpenSuccesses) {
+            halfOpenPermits.incrementAndGet();
+        }
+    }
+
+    /**
+     * Anota una llamada correcta. Solo cuenta con el circuito cerrado.
+     *
+     * @param durationNanos Duración de la llamada.
+     */
+    public void onSuccess(long durationNanos) {
+        record(durationNanos >= slowCallThresholdNanos ? SLOW : SUCCESS);
+    }
+
+    /**
+     * Anota una llamada fallida por un problema de conexión. Solo cuenta con el circuito cerrado.
+     *
+     * @param durationNanos Duración de la llamada.
+     */
+    public void onFailure(long durationNanos) {
+        record(FAILURE);
+    }
+
+    /**
+     * Anota el resultado de una llamada de prueba, una vez por cada permiso tomado con
+     * {@link #acquirePermission()}.
+     *
+     * @param slowestNanos Duración de la parte más lenta de la llamada.
+     * @param failed       Si la llamada ha fallado por un problema de conexión.
+     */
+    public synchronized void onTrialResult(long slowestNanos, boolean failed) {
+        if (state != State.HALF_OPEN) {
+            return;
+        }
+        if (failed) {
+            transitionToOpen("fallo en una llamada de prueba");
+        } else if (slowestNanos >= slowCallThresholdNanos) {
+            transitionToOpen("llamada de prueba lenta");
+        } else if (++halfOpenSuccesses >= halfOpenCalls) {
+            transitionToClosed();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * @return Llamadas rechazadas con el circuito abierto desde el arranque.
+     */
+    public long getRejectedCalls() {
+        return rejectedCalls.get();
+    }
+
+    /**
+     * @return Veces que se ha abierto el circuito desde el arranque.
+     */
+    public long getTimesOpened() {
+        return timesOpened.get();
+    }
+
+    /**
+     * @return Fallos guardados en la ventana de llamadas recientes.
+     */
+    public int getWindowFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return Llamadas de prueba que aún pueden pasar en el estado HALF_OPEN.
+     */
+    public int getHalfOpenPermits() {
+        return state == State.HALF_OPEN ? halfOpenPermits.get() : 0;
+    }
+
+    /**
+     * Detiene la sonda en segundo plano. Se llama al cerrar el pool.
+     */
+    public void shutdown() {
+        prober.shutdownNow();
+    }
+
+    /**
+     * @return true si ya se ha llamado a {@link #shutdown()}: sin sonda el circuito no puede salir
+     *         de OPEN.
+     */
+    public boolean isShutdown() {
+        return prober.isShutdown();
+    }
+
+    /**
+     * Guarda el resultado en la ventana sin bloquear. Cada hueco se cambia con {@code getAndSet},
+     * así que cada resultado se suma a los contadores al entrar y se resta una sola vez al salir,
+     * aunque varios hilos escriban a la vez.
+     */
+    private void record(int outcome) {
+        if (state != State.CLOSED) {
+            return;
+        }
+        long call = windowCalls.getAndIncrement();
+        int evicted = window.getAndSet((int) (call % window.length()), outcome);
+        count(evicted, -1);
+        count(outcome, 1);
+
+        int windowCount = (int) Math.min(call + 1, window.length());
+        if (windowCount >= minimumCalls) {
+            int currentFailures = failures.get();
+            int currentSlowCalls = slowCalls.get();
+            if (currentFailures * 100 >= failureRateThreshold * windowCount) {
+                openIfClosed(currentFailures + " fallos en las últimas " + windowCount + " llamadas");
+            } else if (currentSlowCalls * 100 >= slowCallRateThreshold * windowCount) {
+                openIfClosed(currentSlowCalls + " llamadas lentas en las últimas " + windowCount + " llamadas");
+            }
+        }
+    }
+
+    private void count(int outcome, int delta) {
+        if (outcome == FAILURE) {
+            failures.addAndGet(delta);
+        } else if (outcome == SLOW) {
+            slowCalls.addAndGet(delta);
+        }
+    }
+
+    private synchronized void openIfClosed(String reason) {
+        if (state == State.CLOSED) {
+            transitionToOpen(reason);
+        }
+    }
+
+    private void transitionToOpen(String reason) {
+        state = State.OPEN;
+        timesOpened.incrementAndGet();
+        logger.error("Circuito {} abierto: {}. Se probará la conexión en {} ms.", name, reason, openDurationMillis);
+        scheduleProbe();
+    }
+
+    private void transitionToClosed() {
+        resetWindow();
+        state = State.CLOSED;
+        logger.info("Circuito {} cerrado: la base de datos vuelve a responder.", name);
+    }
+
+    private synchronized void transitionToHalfOpen() {
+        if (state != State.OPEN) {
+            return;
+        }
+        halfOpenSuccesses = 0;
+        halfOpenPermits.set(halfOpenCalls);
+        state = State.HALF_OPEN;
+        logger.info("Circuito {} semiabierto: se permiten {} llamadas de prueba.", name, halfOpenCalls);
+        scheduleHalfOpenCheck(++halfOpenGeneration);
+    }
+
+    /**
+     * Repone los permisos de las llamadas de prueba que no han dado resultado a tiempo.
+     */
+    private synchronized void checkHalfOpen(int generation) {
+        if (state != State.HALF_OPEN || generation != halfOpenGeneration) {
+            return;
+        }
+        int pending = halfOpenCalls - halfOpenSuccesses;
+        if (halfOpenPermits.get() < pending) {
+            logger.warn("Circuito {}: {} llamadas de prueba sin resultado tras {} ms; se reponen sus permisos.",
+                    name, pending - halfOpenPermits.get(), openDurationMillis);
+            halfOpenPermits.set(pending);
+        }
+        scheduleHalfOpenCheck(generation);
+    }
+
+    private boolean tryTakeHalfOpenPermit() {
+        int available;
+        do {
+            available = halfOpenPermits.get();
+            if (available <= 0) {
+                return false;
+            }
+        } while (!halfOpenPermits.compareAndSet(available, available - 1));
+        return true;
+    }
+
+    private void resetWindow() {
+        for (int i = 0; i < window.length(); i++) {
+            count(window.getAndSet(i, EMPTY), -1);
+        }
+        windowCalls.set(0);
+    }
+
+    private void scheduleProbe() {
+        try {
+            prober.schedule(this::runProbe, openDurationMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Sonda del circuito {} no programada: la aplicación se está cerrando.", name);
+        }
+    }
+
+    private void scheduleHalfOpenCheck(int generation) {
+        try {
+            prober.schedule(() -> checkHalfOpen(generation), openDurationMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            logger.debug("Comprobación del circuito {} no programada: la aplicación se está cerrando.", name);
+        }
+    }
+
+    private void runProbe() {
+        if (state != State.OPEN) {
+            return;
+        }
+        boolean healthy;
+        try {
+            healthy = probe.probe();
+        } catch (Exception e) {
+            logger.warn("Sonda del circuito {} fallida: {}", name, e.getMessage());
+            healthy = false;
+        }
+        if (healthy) {
+            transitionToHalfOpen();
+        } else {
+            scheduleProbe();
+        }
+    }
+}
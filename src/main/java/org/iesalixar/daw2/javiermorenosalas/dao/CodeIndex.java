@@ -0,0 +1,221 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Índice en memoria de código a ID para comprobar códigos repetidos sin consultar la base de datos.
+ *
+ * Los códigos se guardan en mayúsculas, igual que la columna {@code code_normalized}. El índice
+ * se carga junto con el listado de la tabla y los DAO con caché lo mantienen al día en cada
+ * escritura; dentro de una {@link UnitOfWork} transaccional los cambios se aplican al confirmar.
+ *
+ * Si el índice aún no se ha cargado o ha caducado, {@link #containsCode} devuelve null y quien
+ * lo consulta debe comprobarlo en la base de datos. También lo devuelve dentro de una unidad de
+ * trabajo transaccional que ya ha escrito en la tabla: el índice aún no refleja esas escrituras,
+ * pero la consulta en la misma transacción sí las ve.
+ *
+ * @param <T> Tipo de entidad indexada.
+ */
+public class CodeIndex<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(CodeIndex.class);
+
+    // Todos los índices creados, para poder consultar sus estadísticas
+    private static final List<CodeIndex<?>> instances = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final long ttlMillis;
+    private final ToIntFunction<T> idExtractor;
+    private final Function<T, String> codeExtractor;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    // Se incrementa en cada escritura para descartar cargas que empezaron antes
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile ConcurrentHashMap<String, Integer> idsByCode = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<Integer, String> codesById = new ConcurrentHashMap<>();
+    // 0 mientras el índice no se ha cargado
+    private volatile long expiresAtMillis = 0;
+
+    // Unidad de trabajo transaccional del hilo con escrituras en este índice aún sin confirmar
+    private final ThreadLocal<UnitOfWork> pendingUnitOfWork = new ThreadLocal<>();
+
+    /**
+     * @param name          Nombre del índice (para trazas y estadísticas).
+     * @param ttlMillis     Tiempo tras el que el índice deja de usarse hasta que se recarga.
+     * @param idExtractor   Función que obtiene el ID de una entidad.
+     * @param codeExtractor Función que obtiene el código de una entidad.
+     */
+    private CodeIndex(String name, long ttlMillis, ToIntFunction<T> idExtractor, Function<T, String> codeExtractor) {
+        this.name = name;
+        this.ttlMillis = ttlMillis;
+        this.idExtractor = idExtractor;
+        this.codeExtractor = codeExtractor;
+    }
+
+    /**
+     * Crea un índice y lo registra para consultar sus estadísticas.
+     *
+     * @param name          Nombre del índice (para trazas y estadísticas).
+     * @param ttlMillis     Tiempo tras el que el índice deja de usarse hasta que se recarga.
+     * @param idExtractor   Función que obtiene el ID de una entidad.
+     * @param codeExtractor Función que obtiene el código de una entidad.
+     * @return El índice creado, aún sin cargar.
+     */
+    public static <T> CodeIndex<T> create(String name, long ttlMillis, ToIntFunction<T> idExtractor,
+                                          Function<T, String> codeExtractor) {
+        CodeIndex<T> index = new CodeIndex<>(name, ttlMillis, idExtractor, codeExtractor);
+        instances.add(index);
+        return index;
+    }
+
+    /**
+     * Carga la tabla con {@code loader} y reconstruye el índice con las filas obtenidas.
+     *
+     * @param loader Consulta que obtiene todas las filas de la tabla.
+     * @return Las filas cargadas.
+     * @throws SQLException Si falla la carga.
+     */
+    public List<T> reload(ReferenceDataCache.Loader<List<T>> loader) throws SQLException {
+        long loadGeneration = generation.get();
+        List<T> rows = loader.load();
+
+        // Dentro de una transacción la carga puede ver cambios aún no confirmados
+        UnitOfWork unitOfWork = UnitOfWork.current();
+        if (unitOfWork != null && unitOfWork.isTransactional()) {
+            return rows;
+        }
+
+        ConcurrentHashMap<String, Integer> newIdsByCode = new ConcurrentHashMap<>();
+        ConcurrentHashMap<Integer, String> newCodesById = new ConcurrentHashMap<>();
+        for (T row : rows) {
+            String code = normalize(codeExtractor.apply(row));
+            int id = idExtractor.applyAsInt(row);
+            newIdsByCode.put(code, id);
+            newCodesById.put(id, code);
+        }
+        synchronized (this) {
+            // Si hubo una escritura durante la carga, se mantiene el índice anterior
+            if (generation.get() == loadGeneration) {
+                idsByCode = newIdsByCode;
+                codesById = newCodesById;
+                expiresAtMillis = System.currentTimeMillis() + ttlMillis;
+                logger.info("Índice de códigos {} cargado: {} elementos.", name, rows.size());
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Comprueba en memoria si existe el código en una fila distinta de {@code excludedId}.
+     *
+     * @param code       Código a comprobar, sin importar mayúsculas.
+     * @param excludedId ID que no se tiene en cuenta (0 para no excluir ninguno).
+     * @return Si el código existe, o null si el índice no está cargado, ha caducado o tiene
+     *         escrituras pendientes de la unidad de trabajo actual.
+     */
+    public Boolean containsCode(String code, int excludedId) {
+        if (System.currentTimeMillis() > expiresAtMillis) {
+            fallbacks.incrementAndGet();
+            return null;
+        }
+        UnitOfWork unitOfWork = UnitOfWork.current();
+        if (unitOfWork != null && pendingUnitOfWork.get() == unitOfWork) {
+            fallbacks.incrementAndGet();
+            return null;
+        }
+        hits.incrementAndGet();
+        Integer id = idsByCode.get(normalize(code));
+        return id != null && id != excludedId;
+    }
+
+    /**
+     * Registra que la fila {@code id} tiene ahora el código indicado.
+     */
+    public void put(int id, String code) {
+        apply(() -> {
+            String normalized = normalize(code);
+            String previous = codesById.put(id, normalized);
+            if (previous != null && !previous.equals(normalized)) {
+                idsByCode.remove(previous, id);
+            }
+            idsByCode.put(normalized, id);
+        });
+    }
+
+    /**
+     * Registra que la fila {@code id} se ha eliminado.
+     */
+    public void remove(int id) {
+        apply(() -> {
+            String previous = codesById.remove(id);
+            if (previous != null) {
+                idsByCode.remove(previous, id);
+            }
+        });
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Número de comprobaciones que tuvieron que ir a la base de datos.
+     */
+    public long getFallbacks() {
+        return fallbacks.get();
+    }
+
+    /**
+     * @return Todos los índices de códigos creados.
+     */
+    public static List<CodeIndex<?>> getInstances() {
+        return Collections.unmodifiableList(instances);
+    }
+
+    /**
+     * Aplica un cambio ya escrito en la base de datos: al momento o, dentro de una transacción,
+     * cuando esta se confirma. Hasta entonces las comprobaciones de esa transacción van a la base
+     * de datos.
+     */
+    private void apply(Runnable change) {
+        generation.incrementAndGet();
+        Runnable synchronizedChange = () -> {
+            synchronized (this) {
+                generation.incrementAndGet();
+                change.run();
+            }
+        };
+        UnitOfWork unitOfWork = UnitOfWork.current();
+        if (unitOfWork != null && unitOfWork.isTransactional()) {
+            if (pendingUnitOfWork.get() != unitOfWork) {
+                pendingUnitOfWork.set(unitOfWork);
+                unitOfWork.afterCompletion(pendingUnitOfWork::remove);
+            }
+            unitOfWork.afterCommit(synchronizedChange);
+        } else {
+            synchronizedChange.run();
+        }
+    }
+
+    private static String normalize(String code) {
+        return code == null ? "" : code.trim().toUpperCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,369 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Pool de conexiones JDBC acotado.
+ *
+ * Mantiene un número mínimo de conexiones abiertas (se rellenan al arrancar), limita el número
+ * máximo de conexiones prestadas a la vez, valida cada conexión antes de entregarla y cierra
+ * las conexiones que llevan demasiado tiempo ociosas por encima del mínimo.
+ *
+ * Las conexiones se entregan envueltas en un proxy: al llamar a {@code close()} la conexión física
+ * no se cierra, sino que se devuelve al pool. Así los DAO pueden seguir usando try-with-resources.
+ * Cada conexión física tiene además su propia {@link PreparedStatementCache}.
+ */
+public class ConnectionPool {
+
+    private static final Logger logger = LoggerFactory.getLogger(ConnectionPool.class);
+
+    // Si la conexión se usó hace menos de este tiempo no se vuelve a validar al prestarla
+    private static final long ALIVE_BYPASS_WINDOW_MILLIS = 500;
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int minSize;
+    private final int maxSize;
+    private final long idleTimeoutMillis;
+    private final long connectionTimeoutMillis;
+    private final int validationTimeoutSeconds;
+    private final int statementCacheSize;
+
+    // Conexiones libres, la más recientemente usada al principio
+    private final LinkedBlockingDeque<PooledConnection> idleConnections = new LinkedBlockingDeque<>();
+
+    // Un permiso por cada conexión que se puede prestar a la vez
+    private final Semaphore permits;
+
+    private final AtomicInteger totalConnections = new AtomicInteger();
+    private final ScheduledExecutorService evictor;
+    private volatile boolean closed = false;
+
+    /**
+     * Crea el pool y abre las conexiones mínimas.
+     *
+     * @param url                      URL JDBC de la base de datos.
+     * @param user                     Usuario de la base de datos.
+     * @param password                 Contraseña de la base de datos.
+     * @param minSize                  Número mínimo de conexiones abiertas.
+     * @param maxSize                  Número máximo de conexiones prestadas a la vez.
+     * @param idleTimeoutMillis        Tiempo que una conexión puede estar ociosa antes de cerrarse.
+     * @param connectionTimeoutMillis  Tiempo máximo de espera para obtener una conexión.
+     * @param validationTimeoutSeconds Tiempo máximo para validar una conexión antes de prestarla.
+     * @param statementCacheSize       Sentencias preparadas cacheadas por conexión (0 para desactivar).
+     */
+    public ConnectionPool(String url, String user, String password, int minSize, int maxSize,
+                          long idleTimeoutMillis, long connectionTimeoutMillis, int validationTimeoutSeconds,
+                          int statementCacheSize) {
+        if (minSize < 0 || maxSize < 1 || minSize > maxSize) {
+            throw new IllegalArgumentException("Tamaños de pool no válidos: min=" + minSize + ", max=" + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        fillToMinimum();
+
+        this.evictor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-evictor");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, idleTimeoutMillis / 2);
+        evictor.scheduleWithFixedDelay(this::evictIdleConnections, period, period, TimeUnit.MILLISECONDS);
+
+        logger.info("Pool de conexiones iniciado: min={}, max={}, abiertas={}", minSize, maxSize, totalConnections.get());
+    }
+
+    /**
+     * Obtiene una conexión del pool. Si no hay ninguna libre se abre una nueva, siempre que no se
+     * supere el máximo; en ese caso se espera hasta el tiempo configurado.
+     *
+     * @return Una conexión validada. Al cerrarla se devuelve al pool.
+     * @throws NoConnectionAvailableException Si todas las conexiones están prestadas y no queda
+     *                                        ninguna libre a tiempo.
+     * @throws SQLException Si no se puede abrir una conexión nueva.
+     */
+    public Connection getConnection() throws SQLException {
+        if (closed) {
+            throw new SQLException("El pool de conexiones está cerrado.");
+        }
+
+        try {
+            if (!permits.tryAcquire(connectionTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                throw new NoConnectionAvailableException(
+                        "No hay conexiones disponibles tras esperar " + connectionTimeoutMillis + " ms (max=" + maxSize + ")", null);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new NoConnectionAvailableException("Interrumpido mientras se esperaba una conexión", e);
+        }
+
+        try {
+            PooledConnection pooled;
+            while ((pooled = idleConnections.pollFirst()) != null) {
+                if (isValid(pooled)) {
+                    return pooled.lease();
+                }
+                logger.warn("Descartando conexión no válida del pool.");
+                discard(pooled);
+            }
+            return openConnection().lease();
+        } catch (SQLException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Cierra todas las conexiones libres y detiene el hilo de limpieza. Las conexiones prestadas
+     * se cierran cuando se devuelven.
+     */
+    public void close() {
+        closed = true;
+        evictor.shutdownNow();
+        PooledConnection pooled;
+        while ((pooled = idleConnections.pollFirst()) != null) {
+            discard(pooled);
+        }
+        logger.info("Pool de conexiones cerrado.");
+    }
+
+    /**
+     * @return Número de conexiones físicas abiertas (libres y prestadas).
+     */
+    public int getTotalConnections() {
+        return totalConnections.get();
+    }
+
+    /**
+     * @return Número de conexiones libres en el pool.
+     */
+    public int getIdleConnections() {
+        return idleConnections.size();
+    }
+
+    /**
+     * @return Número de conexiones prestadas en este momento.
+     */
+    public int getActiveConnections() {
+        return maxSize - permits.availablePermits();
+    }
+
+    /**
+     * @return Número máximo de conexiones que se pueden prestar a la vez.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    private PooledConnection openConnection() throws SQLException {
+        Properties properties = new Properties();
+        if (user != null) {
+            properties.setProperty("user", user);
+        }
+        if (password != null) {
+            properties.setProperty("password", password);
+        }
+        // Filas realmente modificadas en lugar de filas encontradas: los upsert lo usan para saber
+        // si han creado la fila o ya existía
+        properties.setProperty("useAffectedRows", "true");
+        Connection physical = DriverManager.getConnection(url, properties);
+        totalConnections.incrementAndGet();
+        logger.debug("Nueva conexión física abierta. Total: {}", totalConnections.get());
+        return new PooledConnection(physical);
+    }
+
+    private boolean isValid(PooledConnection pooled) {
+        if (System.currentTimeMillis() - pooled.lastUsedMillis < ALIVE_BYPASS_WINDOW_MILLIS) {
+            return true;
+        }
+        try {
+            return pooled.physical.isValid(validationTimeoutSeconds);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private void discard(PooledConnection pooled) {
+        totalConnections.decrementAndGet();
+        if (pooled.statementCache != null) {
+            pooled.statementCache.closeAll();
+        }
+        try {
+            pooled.physical.close();
+        } catch (SQLException e) {
+            logger.warn("Error al cerrar una conexión física: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Devuelve una conexión al pool tras restaurar su estado (autocommit). Si la conexión está rota
+     * o el pool está cerrado, se descarta.
+     */
+    private void release(PooledConnection pooled) {
+        try {
+            boolean reusable = !closed && !pooled.physical.isClosed();
+            if (reusable && !pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+            if (reusable && pooled.statementCache != null) {
+                pooled.statementCache.releaseAll();
+            }
+            if (reusable) {
+                pooled.lastUsedMillis = System.currentTimeMillis();
+                idleConnections.offerFirst(pooled);
+            } else {
+                discard(pooled);
+            }
+        } catch (SQLException e) {
+            logger.warn("No se pudo restaurar la conexión, se descarta: {}", e.getMessage());
+            discard(pooled);
+        } finally {
+            permits.release();
+        }
+    }
+
+    /**
+     * Cierra las conexiones ociosas más antiguas que superen el tiempo de inactividad, sin bajar
+     * del mínimo, y vuelve a rellenar el pool hasta el mínimo si hace falta.
+     */
+    private void evictIdleConnections() {
+        try {
+            long now = System.currentTimeMillis();
+            Iterator<PooledConnection> iterator = idleConnections.descendingIterator();
+            while (iterator.hasNext() && totalConnections.get() > minSize) {
+                PooledConnection pooled = iterator.next();
+                if (now - pooled.lastUsedMillis > idleTimeoutMillis && idleConnections.removeLastOccurrence(pooled)) {
+                    discard(pooled);
+                    logger.debug("Conexión ociosa cerrada. Total: {}", totalConnections.get());
+                }
+            }
+            fillToMinimum();
+        } catch (RuntimeException e) {
+            logger.error("Error en la limpieza del pool de conexiones: {}", e.getMessage(), e);
+        }
+    }
+
+    private void fillToMinimum() {
+        while (!closed && totalConnections.get() < minSize) {
+            try {
+                idleConnections.offerLast(openConnection());
+            } catch (SQLException e) {
+                logger.error("No se pudo rellenar el pool de conexiones: {}", e.getMessage(), e);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Conexión física gestionada por el pool.
+     */
+    private final class PooledConnection {
+
+        private final Connection physical;
+        private final PreparedStatementCache statementCache;
+        private volatile long lastUsedMillis = System.currentTimeMillis();
+
+        private PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = statementCacheSize > 0 ? new PreparedStatementCache(statementCacheSize) : null;
+        }
+
+        /**
+         * Crea el proxy que se entrega a los DAO para un único préstamo.
+         */
+        private Connection lease() {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(this));
+        }
+    }
+
+    /**
+     * No se ha podido tomar una conexión porque todas estaban prestadas: se agotó la espera o se
+     * interrumpió. Indica que el pool está saturado, no que la base de datos falle.
+     */
+    public static final class NoConnectionAvailableException extends SQLTransientConnectionException {
+
+        private NoConnectionAvailableException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * Intercepta {@code close()} para devolver la conexión al pool en lugar de cerrarla.
+     */
+    private final class LeaseHandler implements InvocationHandler {
+
+        private final PooledConnection pooled;
+        private boolean returned = false;
+
+        private LeaseHandler(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public synchronized Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(pooled);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || pooled.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "PooledConnection[" + pooled.physical + "]";
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("La conexión ya se ha devuelto al pool.");
+            }
+            if (pooled.statementCache != null && "prepareStatement".equals(method.getName())
+                    && args.length == 1 && args[0] instanceof String sql) {
+                return pooled.statementCache.prepare(pooled.physical, sql);
+            }
+            try {
+                return method.invoke(pooled.physical, args);
+            } catch (InvocationTargetException e) {
+                // Los errores de conexión los anota en el cortocircuito QueryInstrumentation
+                throw e.getCause();
+            }
+        }
+    }
+}
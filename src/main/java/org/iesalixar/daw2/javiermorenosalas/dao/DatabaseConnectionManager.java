@@ -3,7 +3,6 @@ package org.iesalixar.daw2.javiermorenosalas.dao;
 
 import io.github.cdimascio.dotenv.Dotenv;
 import java.sql.Connection;
-import java.sql.DriverManager;
 import java.sql.SQLException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -12,16 +11,20 @@ import org.slf4j.LoggerFactory;
 public class DatabaseConnectionManager {
 
 
-    // Instancia única de la conexión
-    private static Connection connection = null;
+    // Pool de conexiones compartido por toda la aplicación
+    private static volatile ConnectionPool pool = null;
 
 
     // Logger para trazar eventos usando SLF4J
     private static final Logger logger = LoggerFactory.getLogger(DatabaseConnectionManager.class);
 
 
-    // Cargamos el archivo .env usando dotenv
-    private static Dotenv dotenv = Dotenv.load();
+    // Cargamos el archivo .env usando dotenv; si no existe, se usan solo las variables de entorno
+    private static Dotenv dotenv = Dotenv.configure().ignoreIfMissing().load();
+
+
+    // Cortocircuito que evita esperar a la base de datos cuando no responde; se renueva con el pool
+    private static volatile CircuitBreaker circuitBreaker = createCircuitBreaker();
 
 
     // Constructor privado para evitar la creación de instancias
@@ -29,51 +32,220 @@ public class DatabaseConnectionManager {
 
 
     /**
-     * Método para obtener la instancia de la conexión. Si no existe, se inicializa.
-     * Utiliza el patrón Singleton.
+     * Inicializa el pool de conexiones si todavía no existe y abre las conexiones mínimas.
+     * La configuración se lee del archivo .env:
+     * DB_POOL_MIN_SIZE, DB_POOL_MAX_SIZE, DB_POOL_IDLE_TIMEOUT_MS,
+     * DB_POOL_CONNECTION_TIMEOUT_MS, DB_POOL_VALIDATION_TIMEOUT_S y DB_STATEMENT_CACHE_SIZE.
+     */
+    public static synchronized void initPool() {
+        if (pool != null) {
+            return;
+        }
+        logger.info("Iniciando el pool de conexiones a la base de datos MariaDB...");
+        if (circuitBreaker.isShutdown()) {
+            // El pool se cerró antes: el cortocircuito anterior ya no tiene sonda
+            circuitBreaker = createCircuitBreaker();
+        }
+
+
+        // Obtenemos las variables del archivo .env
+        String dbUrl = dotenv.get("DB_URL");
+        String dbUser = dotenv.get("DB_USER");
+        String dbPassword = dotenv.get("DB_PASSWORD");
+
+
+        pool = new ConnectionPool(dbUrl, dbUser, dbPassword,
+                getIntProperty("DB_POOL_MIN_SIZE", 2),
+                getIntProperty("DB_POOL_MAX_SIZE", 10),
+                getIntProperty("DB_POOL_IDLE_TIMEOUT_MS", 600000),
+                getIntProperty("DB_POOL_CONNECTION_TIMEOUT_MS", 30000),
+                getIntProperty("DB_POOL_VALIDATION_TIMEOUT_S", 5),
+                getIntProperty("DB_STATEMENT_CACHE_SIZE", 50));
+    }
+
+
+    /**
+     * Método para obtener una conexión del pool. Si el pool no existe, se inicializa.
+     * La conexión debe cerrarse después de usarla para devolverla al pool.
+     * Si hay una {@link UnitOfWork} activa en el hilo, se devuelve la conexión compartida de esta.
      *
-     * @return La conexión a la base de datos
+     * @return Una conexión a la base de datos
      */
     public static Connection getConnection() {
-        try {
-            // Si la conexión es null o está cerrada, intentamos abrir una nueva
-            if (connection == null || connection.isClosed()) {
-                logger.info("Iniciando la conexión a la base de datos MariaDB...");
-
+        UnitOfWork unitOfWork = UnitOfWork.current();
+        if (unitOfWork != null) {
+            return unitOfWork.getConnection();
+        }
+        return acquireConnection();
+    }
 
-                // Obtenemos las variables del archivo .env
-                String dbUrl = dotenv.get("DB_URL");
-                String dbUser = dotenv.get("DB_USER");
-                String dbPassword = dotenv.get("DB_PASSWORD");
 
+    /**
+     * Toma una conexión del pool sin tener en cuenta la unidad de trabajo activa.
+     * Si el cortocircuito está abierto, falla al momento sin esperar a la base de datos. La conexión
+     * se entrega instrumentada para medir sus sentencias (ver {@link QueryInstrumentation}).
+     *
+     * En el cortocircuito solo cuentan como fallo los errores del driver al abrir una conexión. La
+     * espera por una conexión libre no se anota: un pool saturado no indica que la base de datos
+     * falle, y la duración de las llamadas se mide en cada sentencia (ver {@link #recordExecution}).
+     * Si el circuito está semiabierto, la conexión entera es una llamada de prueba: su resultado se
+     * anota una sola vez al cerrarla (ver {@link #recordTrial}).
+     *
+     * @return Una conexión a la base de datos
+     */
+    static Connection acquireConnection() {
+        boolean trial;
+        try {
+            trial = circuitBreaker.acquirePermission();
+        } catch (SQLException e) {
+            logger.debug("Conexión rechazada: {}", e.getMessage());
+            throw new RuntimeException("No se pudo conectar a la base de datos.", e);
+        }
 
-                // Intentamos establecer la conexión
-                connection = DriverManager.getConnection(dbUrl, dbUser, dbPassword);
-                logger.info("Conexión a la base de datos establecida exitosamente.");
+        ConnectionPool current = pool;
+        if (current == null) {
+            initPool();
+            current = pool;
+        }
+        try {
+            return QueryInstrumentation.wrap(current.getConnection(), trial);
+        } catch (ConnectionPool.NoConnectionAvailableException e) {
+            // La llamada no llega a la base de datos: si era de prueba, otra puede ocupar su lugar
+            if (trial) {
+                circuitBreaker.releasePermission();
             }
+            logger.error("Error al conectar con la base de datos: {}", e.getMessage(), e);
+            throw new RuntimeException("No se pudo conectar a la base de datos.", e);
         } catch (SQLException e) {
+            if (trial) {
+                circuitBreaker.onTrialResult(0, true);
+            } else {
+                circuitBreaker.onFailure(0);
+            }
             logger.error("Error al conectar con la base de datos: {}", e.getMessage(), e);
             throw new RuntimeException("No se pudo conectar a la base de datos.", e);
         }
-        return connection;
     }
 
 
     /**
-     * Cierra la conexión a la base de datos si está abierta.
+     * Anota en el cortocircuito la ejecución de una sentencia de una conexión que no es de prueba:
+     * cuenta como fallo si el driver devuelve un error de conexión y, si no, como correcta o lenta
+     * según su duración. Los demás errores (claves repetidas, bloqueos...) son respuestas de una base
+     * de datos que funciona. Solo cuenta con el circuito cerrado.
+     *
+     * @param durationNanos Tiempo hasta que el driver devuelve el control.
+     * @param error         Error devuelto por el driver, o null si la sentencia se ejecutó.
+     */
+    static void recordExecution(long durationNanos, SQLException error) {
+        if (error != null && SQLErrors.isConnectionError(error)) {
+            circuitBreaker.onFailure(durationNanos);
+        } else {
+            circuitBreaker.onSuccess(durationNanos);
+        }
+    }
+
+
+    /**
+     * Anota en el cortocircuito los errores de conexión producidos en la propia conexión (confirmar,
+     * deshacer, cambiar el modo de transacción...), para que una base de datos caída abra el
+     * circuito aunque las conexiones del pool sigan prestándose.
+     *
+     * @param e Error devuelto por el driver.
      */
-    public static void closeConnection() {
-        if (connection != null) {
-            try {
-                // Trazamos el proceso de cierre de la conexión
-                logger.info("Cerrando la conexión a la base de datos...");
-                connection.close();
-                logger.info("Conexión cerrada correctamente.");
-            } catch (SQLException e) {
-                // Trazamos cualquier error durante el cierre
-                logger.error("Error al cerrar la conexión a la base de datos: {}", e.getMessage(), e);
-            }
+    static void reportExecutionError(SQLException e) {
+        if (SQLErrors.isConnectionError(e)) {
+            circuitBreaker.onFailure(0);
         }
     }
-}
 
+
+    /**
+     * Anota en el cortocircuito el resultado de una conexión de prueba, al cerrarla.
+     *
+     * @param slowestNanos Duración de su sentencia más lenta.
+     * @param failed       Si alguna sentencia u operación de la conexión tuvo un error de conexión.
+     */
+    static void recordTrial(long slowestNanos, boolean failed) {
+        circuitBreaker.onTrialResult(slowestNanos, failed);
+    }
+
+
+    /**
+     * @return El pool de conexiones, para consultar sus estadísticas, o null si aún no se ha iniciado.
+     */
+    public static ConnectionPool getPool() {
+        return pool;
+    }
+
+
+    /**
+     * @return El cortocircuito de acceso a la base de datos, para consultar su estado.
+     */
+    public static CircuitBreaker getCircuitBreaker() {
+        return circuitBreaker;
+    }
+
+
+    private static CircuitBreaker createCircuitBreaker() {
+        return new CircuitBreaker("database",
+                getIntProperty("DB_CIRCUIT_WINDOW_SIZE", 20),
+                getIntProperty("DB_CIRCUIT_MIN_CALLS", 10),
+                getIntProperty("DB_CIRCUIT_FAILURE_RATE", 50),
+                getIntProperty("DB_CIRCUIT_SLOW_CALL_MS", 5000),
+                getIntProperty("DB_CIRCUIT_SLOW_CALL_RATE", 80),
+                getIntProperty("DB_CIRCUIT_OPEN_MS", 10000),
+                getIntProperty("DB_CIRCUIT_HALF_OPEN_CALLS", 3),
+                DatabaseConnectionManager::probeDatabase);
+    }
+
+
+    /**
+     * Sonda del cortocircuito: comprueba en segundo plano si la base de datos vuelve a responder.
+     */
+    private static boolean probeDatabase() throws SQLException {
+        ConnectionPool current = pool;
+        if (current == null) {
+            return false;
+        }
+        try (Connection connection = current.getConnection()) {
+            return connection.isValid(getIntProperty("DB_POOL_VALIDATION_TIMEOUT_S", 5));
+        }
+    }
+
+
+    /**
+     * Cierra el pool y todas las conexiones a la base de datos, y detiene la sonda del cortocircuito.
+     * Si después se vuelve a iniciar el pool, se crea un cortocircuito nuevo.
+     */
+    public static synchronized void closePool() {
+        if (pool != null) {
+            // Trazamos el proceso de cierre del pool
+            logger.info("Cerrando el pool de conexiones a la base de datos...");
+            pool.close();
+            pool = null;
+            circuitBreaker.shutdown();
+        }
+    }
+
+
+    /**
+     * Lee un valor entero del archivo .env, usando el valor por defecto si no está definido.
+     *
+     * @param key          Nombre de la variable.
+     * @param defaultValue Valor a usar si no está definida o no es un número.
+     * @return El valor leído o el valor por defecto.
+     */
+    public static int getIntProperty(String key, int defaultValue) {
+        String value = dotenv.get(key);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Valor no válido para {}: '{}'. Se usa {}.", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -2,18 +2,37 @@ package org.iesalixar.daw2.javiermorenosalas.dao;
 
 import org.iesalixar.daw2.javiermorenosalas.entity.Location;
 
+import java.io.IOException;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 
 public interface LocationDAO {
 
 
+    /**
+     * Recibe las ubicaciones una a una mientras se recorre el resultado de la consulta.
+     */
+    @FunctionalInterface
+    interface LocationConsumer {
+        void accept(Location location) throws IOException;
+    }
+
+
     List<Location> listAllLocations() throws SQLException;
+    List<Location> listLocationsAfter(int afterId, int limit) throws SQLException;
+    List<Location> listLocationsBefore(int beforeId, int limit) throws SQLException;
+    void streamAllLocations(LocationConsumer consumer) throws SQLException, IOException;
     void insertLocation(Location location) throws SQLException;
+    int[] insertLocations(List<Location> locations) throws SQLException;
     void updateLocation(Location location) throws SQLException;
     void deleteLocation(int id) throws SQLException;
+    void updateLocations(List<Location> locations) throws SQLException;
+    int deleteLocations(int[] ids) throws SQLException;
     Location getLocationById(int id) throws SQLException;
+    Map<Integer, Location> getLocationsByIds(Collection<Integer> ids) throws SQLException;
 
 
 }
@@ -4,17 +4,39 @@ import org.iesalixar.daw2.javiermorenosalas.entity.Location;
 import org.iesalixar.daw2.javiermorenosalas.entity.Province;
 import org.iesalixar.daw2.javiermorenosalas.entity.Region;
 import org.iesalixar.daw2.javiermorenosalas.entity.Supermarket;
+import org.iesalixar.daw2.javiermorenosalas.metrics.DaoOperationEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class LocationDAOImpl implements LocationDAO {
 
     private static final Logger logger = LoggerFactory.getLogger(LocationDAOImpl.class);
 
+    // Consulta base del listado: ubicaciones con su supermercado y su provincia (sin región)
+    private static final String SUMMARY_QUERY = "SELECT l.id, l.address, l.city, s.id AS supermarket_id, s.name AS supermarket_name, " +
+            "p.id AS province_id, p.code AS province_code, p.name AS province_name " +
+            "FROM locations l " +
+            "INNER JOIN supermarkets s ON l.supermarket_id = s.id " +
+            "INNER JOIN provinces p ON l.province_id = p.id";
+
+    // Consulta de detalle: ubicaciones con su supermercado, su provincia y la región de esta
+    private static final String DETAIL_QUERY = "SELECT * FROM locations l " +
+            "INNER JOIN supermarkets s ON s.id = l.supermarket_id " +
+            "INNER JOIN provinces p ON p.id = l.province_id " +
+            "INNER JOIN regions r ON r.id = p.id_region";
+
+    // Filas que el driver trae en cada bloque al recorrer todas las ubicaciones
+    private static final int STREAM_FETCH_SIZE = 500;
+
     /**
      * Lista todas las ubicaciones con sus respectivas provincias y supermercados.
      *
@@ -23,41 +45,165 @@ public class LocationDAOImpl implements LocationDAO {
      */
     public List<Location> listAllLocations() throws SQLException {
         List<Location> locations = new ArrayList<>();
-        String query = "SELECT l.id, l.address, l.city, s.id AS supermarket_id, s.name AS supermarket_name, " +
-                "p.id AS province_id, p.code AS province_code, p.name AS province_name " +
-                "FROM locations l " +
-                "INNER JOIN supermarkets s ON l.supermarket_id = s.id " +
-                "INNER JOIN provinces p ON l.province_id = p.id";
+        String query = SUMMARY_QUERY;
 
         logger.info("Inicio de listAllLocations: Ejecutando consulta para listar todas las ubicaciones");
 
+        DaoOperationEvent event = new DaoOperationEvent("Location", "listAllLocations");
+        event.begin();
         try (Connection connection = DatabaseConnectionManager.getConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
 
             while (resultSet.next()) {
-                int locationId = resultSet.getInt("l.id");
-                String address = resultSet.getString("l.address");
-                String city = resultSet.getString("l.city");
-                int supermarketId = resultSet.getInt("supermarket_id");
-                String supermarketName = resultSet.getString("supermarket_name");
-                int provinceId = resultSet.getInt("province_id");
-                String provinceCode = resultSet.getString("province_code");
-                String provinceName = resultSet.getString("province_name");
-
-                Supermarket supermarket = new Supermarket(supermarketId, supermarketName);
-                Province province = new Province(provinceId, provinceCode, provinceName, null);
-                locations.add(new Location(locationId, address, city, supermarket, province));
+                locations.add(mapLocationSummary(resultSet));
             }
             logger.info("Consulta ejecutada con exito");
+            event.rows = locations.size();
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al ejecutar la consulta para obtener ubicaciones: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         logger.info("Finalizacion de listAllLocations");
         return locations;
     }
 
+    /**
+     * Obtiene una página de ubicaciones con ID mayor que {@code afterId}, ordenadas por ID.
+     * Usa paginación por clave (keyset) sobre la clave primaria, por lo que el coste no depende
+     * de la posición de la página dentro de la tabla.
+     *
+     * @param afterId ID de la última ubicación de la página anterior (0 para la primera página).
+     * @param limit   Número máximo de ubicaciones a devolver.
+     * @return Las ubicaciones de la página en orden ascendente de ID.
+     * @throws SQLException Si ocurre un error en la consulta a la base de datos.
+     */
+    public List<Location> listLocationsAfter(int afterId, int limit) throws SQLException {
+        String query = SUMMARY_QUERY + " WHERE l.id > ? ORDER BY l.id ASC LIMIT ?";
+
+        logger.info("Inicio de listLocationsAfter: Ejecutando consulta para listar {} ubicaciones tras el ID {}", limit, afterId);
+
+        List<Location> locations = listLocationsPage("listLocationsAfter", query, afterId, limit);
+
+        logger.info("Finalizacion de listLocationsAfter");
+        return locations;
+    }
+
+    /**
+     * Obtiene la página de ubicaciones inmediatamente anterior a {@code beforeId}.
+     *
+     * @param beforeId ID de la primera ubicación de la página actual.
+     * @param limit    Número máximo de ubicaciones a devolver.
+     * @return Las ubicaciones de la página en orden ascendente de ID.
+     * @throws SQLException Si ocurre un error en la consulta a la base de datos.
+     */
+    public List<Location> listLocationsBefore(int beforeId, int limit) throws SQLException {
+        String query = SUMMARY_QUERY + " WHERE l.id < ? ORDER BY l.id DESC LIMIT ?";
+
+        logger.info("Inicio de listLocationsBefore: Ejecutando consulta para listar {} ubicaciones antes del ID {}", limit, beforeId);
+
+        // La consulta se recorre hacia atrás, así que se invierte para devolverla en orden ascendente
+        List<Location> locations = listLocationsPage("listLocationsBefore", query, beforeId, limit);
+        Collections.reverse(locations);
+
+        logger.info("Finalizacion de listLocationsBefore");
+        return locations;
+    }
+
+    /**
+     * Recorre todas las ubicaciones sin cargarlas en memoria: el resultado se lee hacia delante
+     * por bloques de {@link #STREAM_FETCH_SIZE} filas y cada ubicación se entrega a {@code consumer}.
+     * La conexión se mantiene ocupada hasta que termina el recorrido.
+     *
+     * @param consumer Receptor de cada ubicación, en orden ascendente de ID.
+     * @throws SQLException Si ocurre un error en la consulta a la base de datos.
+     * @throws IOException  Si el receptor falla al procesar una ubicación.
+     */
+    public void streamAllLocations(LocationConsumer consumer) throws SQLException, IOException {
+        String query = SUMMARY_QUERY + " ORDER BY l.id ASC";
+        long count = 0;
+
+        logger.info("Inicio de streamAllLocations: Recorriendo todas las ubicaciones");
+
+        // Se prepara con tipo y concurrencia explícitos: no pasa por la caché de sentencias
+        DaoOperationEvent event = new DaoOperationEvent("Location", "streamAllLocations");
+        event.begin();
+        try (Connection connection = DatabaseConnectionManager.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query,
+                     ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+
+            preparedStatement.setFetchSize(STREAM_FETCH_SIZE);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    consumer.accept(mapLocationSummary(resultSet));
+                    count++;
+                }
+            }
+            logger.info("Recorrido completado: {} ubicaciones", count);
+            event.rows = count;
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al recorrer las ubicaciones tras {} filas: {}", count, e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalizacion de streamAllLocations");
+    }
+
+    /**
+     * Ejecuta una consulta de página con el ID de corte y el límite como parámetros.
+     *
+     * @param operation Método que pide la página, para el evento de JFR.
+     */
+    private List<Location> listLocationsPage(String operation, String query, int cursorId, int limit) throws SQLException {
+        List<Location> locations = new ArrayList<>(limit);
+
+        DaoOperationEvent event = new DaoOperationEvent("Location", operation);
+        event.begin();
+        try (Connection connection = DatabaseConnectionManager.getConnection();
+             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+            preparedStatement.setInt(1, cursorId);
+            preparedStatement.setInt(2, limit);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    locations.add(mapLocationSummary(resultSet));
+                }
+            }
+            logger.info("Consulta ejecutada con exito: {} ubicaciones", locations.size());
+            event.rows = locations.size();
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al ejecutar la consulta para obtener una pagina de ubicaciones: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        return locations;
+    }
+
+    /**
+     * Construye una ubicación a partir de una fila de {@link #SUMMARY_QUERY}.
+     */
+    private Location mapLocationSummary(ResultSet resultSet) throws SQLException {
+        int locationId = resultSet.getInt("l.id");
+        String address = resultSet.getString("l.address");
+        String city = resultSet.getString("l.city");
+        int supermarketId = resultSet.getInt("supermarket_id");
+        String supermarketName = resultSet.getString("supermarket_name");
+        int provinceId = resultSet.getInt("province_id");
+        String provinceCode = resultSet.getString("province_code");
+        String provinceName = resultSet.getString("province_name");
+
+        Supermarket supermarket = new Supermarket(supermarketId, supermarketName);
+        Province province = new Province(provinceId, provinceCode, provinceName, null);
+        return new Location(locationId, address, city, supermarket, province);
+    }
+
     /**
      * Inserta una nueva ubicacion en la base de datos.
      *
@@ -69,23 +215,72 @@ public class LocationDAOImpl implements LocationDAO {
 
         logger.info("Inicio de insertLocation: Ejecutando consulta para insertar ubicacion");
 
-        try (Connection connection = DatabaseConnectionManager.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-
-            preparedStatement.setString(1, location.getAddress());
-            preparedStatement.setString(2, location.getCity());
-            preparedStatement.setInt(3, location.getSupermarket().getId());
-            preparedStatement.setInt(4, location.getProvince().getId());
-
-            preparedStatement.executeUpdate();
+        DaoOperationEvent event = new DaoOperationEvent("Location", "insertLocation");
+        event.begin();
+        try {
+            TransientErrorRetry.execute("insertLocation", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+                    preparedStatement.setString(1, location.getAddress());
+                    preparedStatement.setString(2, location.getCity());
+                    preparedStatement.setInt(3, location.getSupermarket().getId());
+                    preparedStatement.setInt(4, location.getProvince().getId());
+
+                    preparedStatement.executeUpdate();
+                }
+                return null;
+            });
             logger.info("Consulta ejecutada con exito");
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al ejecutar la consulta para insertar ubicacion: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         logger.info("Finalizacion de insertLocation");
     }
 
+    /**
+     * Inserta varias ubicaciones en una sola transacción usando un lote JDBC, de forma que
+     * todas las filas viajan juntas a la base de datos. Si alguna falla no se inserta ninguna.
+     *
+     * @param locations Las ubicaciones que se desean insertar.
+     * @return Los IDs generados, en el mismo orden que las ubicaciones.
+     * @throws SQLException Si ocurre un error en la consulta a la base de datos.
+     */
+    public int[] insertLocations(List<Location> locations) throws SQLException {
+        String query = "INSERT INTO locations (address, city, supermarket_id, province_id) VALUES (?, ?, ?, ?)";
+
+        logger.info("Inicio de insertLocations: Ejecutando lote para insertar {} ubicaciones", locations.size());
+
+        int[] ids;
+        DaoOperationEvent event = new DaoOperationEvent("Location", "insertLocations");
+        event.begin();
+        try {
+            ids = BatchSupport.insertBatch(query, locations, (statement, location) -> {
+                statement.setString(1, location.getAddress());
+                statement.setString(2, location.getCity());
+                statement.setInt(3, location.getSupermarket().getId());
+                statement.setInt(4, location.getProvince().getId());
+            });
+            for (int i = 0; i < ids.length; i++) {
+                locations.get(i).setId(ids[i]);
+            }
+            logger.info("Lote ejecutado con exito");
+            event.rows = ids.length;
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al ejecutar el lote para insertar ubicaciones: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalizacion de insertLocations");
+        return ids;
+    }
+
     /**
      * Actualiza una ubicacion existente en la base de datos.
      *
@@ -97,20 +292,30 @@ public class LocationDAOImpl implements LocationDAO {
 
         logger.info("Inicio de updateLocation: Ejecutando consulta para actualizar ubicacion");
 
-        try (Connection connection = DatabaseConnectionManager.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-
-            preparedStatement.setString(1, location.getAddress());
-            preparedStatement.setString(2, location.getCity());
-            preparedStatement.setInt(3, location.getSupermarket().getId());
-            preparedStatement.setInt(4, location.getProvince().getId());
-            preparedStatement.setInt(5, location.getId());
-
-            preparedStatement.executeUpdate();
+        DaoOperationEvent event = new DaoOperationEvent("Location", "updateLocation");
+        event.begin();
+        try {
+            TransientErrorRetry.execute("updateLocation", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+                    preparedStatement.setString(1, location.getAddress());
+                    preparedStatement.setString(2, location.getCity());
+                    preparedStatement.setInt(3, location.getSupermarket().getId());
+                    preparedStatement.setInt(4, location.getProvince().getId());
+                    preparedStatement.setInt(5, location.getId());
+
+                    preparedStatement.executeUpdate();
+                }
+                return null;
+            });
             logger.info("Consulta ejecutada con exito");
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al ejecutar la consulta para actualizar ubicacion: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         logger.info("Finalizacion de updateLocation");
     }
@@ -126,20 +331,91 @@ public class LocationDAOImpl implements LocationDAO {
 
         logger.info("Inicio de deleteLocation: Ejecutando consulta para eliminar ubicacion con ID {}", id);
 
-        try (Connection connection = DatabaseConnectionManager.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-
-            preparedStatement.setInt(1, id);
-            preparedStatement.executeUpdate();
-
+        DaoOperationEvent event = new DaoOperationEvent("Location", "deleteLocation");
+        event.begin();
+        try {
+            TransientErrorRetry.execute("deleteLocation", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+                    preparedStatement.setInt(1, id);
+                    preparedStatement.executeUpdate();
+                }
+                return null;
+            });
             logger.info("Ubicacion con ID {} eliminada con exito", id);
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al eliminar la ubicacion con ID {}: {}", id, e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         logger.info("Finalizacion de deleteLocation");
     }
 
+    /**
+     * Actualiza varias ubicaciones en una sola transacción usando un lote JDBC.
+     * Si alguna falla no se actualiza ninguna.
+     *
+     * @param locations Las ubicaciones con los nuevos datos.
+     * @throws SQLException Si ocurre un error en la consulta a la base de datos.
+     */
+    public void updateLocations(List<Location> locations) throws SQLException {
+        String query = "UPDATE locations SET address = ?, city = ?, supermarket_id = ?, province_id = ? WHERE id = ?";
+
+        logger.info("Inicio de updateLocations: Ejecutando lote para actualizar {} ubicaciones", locations.size());
+
+        DaoOperationEvent event = new DaoOperationEvent("Location", "updateLocations");
+        event.begin();
+        try {
+            BatchSupport.updateBatch(query, locations, (statement, location) -> {
+                statement.setString(1, location.getAddress());
+                statement.setString(2, location.getCity());
+                statement.setInt(3, location.getSupermarket().getId());
+                statement.setInt(4, location.getProvince().getId());
+                statement.setInt(5, location.getId());
+            });
+            logger.info("Lote ejecutado con exito");
+            event.rows = locations.size();
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al ejecutar el lote para actualizar ubicaciones: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalizacion de updateLocations");
+    }
+
+    /**
+     * Elimina varias ubicaciones en una sola transacción.
+     *
+     * @param ids Los IDs de las ubicaciones a eliminar.
+     * @return Número de ubicaciones eliminadas.
+     * @throws SQLException Si ocurre un error en la consulta a la base de datos.
+     */
+    public int deleteLocations(int[] ids) throws SQLException {
+        logger.info("Inicio de deleteLocations: Eliminando {} ubicaciones", ids.length);
+
+        int deleted;
+        DaoOperationEvent event = new DaoOperationEvent("Location", "deleteLocations");
+        event.begin();
+        try {
+            deleted = BatchSupport.deleteByIds("locations", ids);
+            logger.info("{} ubicaciones eliminadas con exito", deleted);
+            event.rows = deleted;
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al eliminar ubicaciones: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalizacion de deleteLocations");
+        return deleted;
+    }
+
     /**
      * Obtiene una ubicacion por su ID de la base de datos.
      *
@@ -148,16 +424,14 @@ public class LocationDAOImpl implements LocationDAO {
      * @throws SQLException Si ocurre un error en la consulta a la base de datos.
      */
     public Location getLocationById(int id) throws SQLException {
-        String query = "SELECT * FROM locations l " +
-                "INNER JOIN supermarkets s ON s.id = l.supermarket_id " +
-                "INNER JOIN provinces p ON p.id = l.province_id " +
-                "INNER JOIN regions r ON r.id = p.id_region " +
-                "WHERE l.id = ?";
+        String query = DETAIL_QUERY + " WHERE l.id = ?";
 
         Location location = null;
 
         logger.info("Inicio de getLocationById: Ejecutando consulta para obtener ubicacion con ID {}", id);
 
+        DaoOperationEvent event = new DaoOperationEvent("Location", "getLocationById");
+        event.begin();
         try (Connection connection = DatabaseConnectionManager.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
@@ -165,39 +439,96 @@ public class LocationDAOImpl implements LocationDAO {
             ResultSet resultSet = preparedStatement.executeQuery();
 
             if (resultSet.next()) {
-                // Obtener los campos de la ubicacion
-                String address = resultSet.getString("l.address");
-                String city = resultSet.getString("l.city");
-                int supermarketId = resultSet.getInt("l.supermarket_id");
-                int provinceId = resultSet.getInt("l.province_id");
-
-                // Obtener informacion del supermercado
-                String supermarketName = resultSet.getString("s.name");
-                Supermarket supermarket = new Supermarket(supermarketId, supermarketName);
-
-                // Obtener informacion de la provincia y la region
-                String provinceCode = resultSet.getString("p.code");
-                String provinceName = resultSet.getString("p.name");
-                int regionId = resultSet.getInt("r.id");
-                String regionCode = resultSet.getString("r.code");
-                String regionName = resultSet.getString("r.name");
-                Region region = new Region(regionId, regionCode, regionName);
-
-                Province province = new Province(provinceId, provinceCode, provinceName, region);
-
-                // Crear la ubicacion
-                location = new Location(id, address, city, supermarket, province);
+                location = mapLocation(resultSet);
 
                 logger.info("Ubicacion con ID {} encontrada: {}", id, location);
             } else {
                 logger.warn("No se encontro ninguna ubicacion con ID {}", id);
             }
+            event.rows = location != null ? 1 : 0;
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al obtener la ubicacion con ID {}: {}", id, e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
 
         logger.info("Finalizacion de getLocationById");
         return location;
     }
+
+    /**
+     * Obtiene varias ubicaciones por sus IDs, con su supermercado, provincia y region.
+     * Los IDs se reparten en listas IN (...) acotadas, de modo que se hace una consulta por
+     * cada bloque en lugar de una por ubicacion.
+     *
+     * @param ids IDs de las ubicaciones a buscar.
+     * @return Mapa de ID a ubicacion; los IDs que no existen no aparecen en el mapa.
+     * @throws SQLException Si ocurre un error en la consulta a la base de datos.
+     */
+    public Map<Integer, Location> getLocationsByIds(Collection<Integer> ids) throws SQLException {
+        Map<Integer, Location> locations = new HashMap<>();
+
+        logger.info("Inicio de getLocationsByIds: Ejecutando consulta para obtener {} ubicaciones", ids.size());
+
+        DaoOperationEvent event = new DaoOperationEvent("Location", "getLocationsByIds");
+        event.begin();
+        try (Connection connection = DatabaseConnectionManager.getConnection()) {
+            for (List<Integer> chunk : BatchSupport.partitionIds(ids)) {
+                String query = DETAIL_QUERY + " WHERE l.id IN (" + BatchSupport.placeholders(chunk.size()) + ")";
+                try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        preparedStatement.setInt(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                        while (resultSet.next()) {
+                            Location location = mapLocation(resultSet);
+                            locations.put(location.getId(), location);
+                        }
+                    }
+                }
+            }
+            logger.info("Consulta ejecutada con exito: {} ubicaciones encontradas", locations.size());
+            event.rows = locations.size();
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al obtener ubicaciones por IDs: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+
+        logger.info("Finalizacion de getLocationsByIds");
+        return locations;
+    }
+
+    /**
+     * Construye una ubicacion completa a partir de una fila de {@link #DETAIL_QUERY}.
+     */
+    private Location mapLocation(ResultSet resultSet) throws SQLException {
+        // Obtener los campos de la ubicacion
+        int id = resultSet.getInt("l.id");
+        String address = resultSet.getString("l.address");
+        String city = resultSet.getString("l.city");
+        int supermarketId = resultSet.getInt("l.supermarket_id");
+        int provinceId = resultSet.getInt("l.province_id");
+
+        // Obtener informacion del supermercado
+        String supermarketName = resultSet.getString("s.name");
+        Supermarket supermarket = new Supermarket(supermarketId, supermarketName);
+
+        // Obtener informacion de la provincia y la region
+        String provinceCode = resultSet.getString("p.code");
+        String provinceName = resultSet.getString("p.name");
+        int regionId = resultSet.getInt("r.id");
+        String regionCode = resultSet.getString("r.code");
+        String regionName = resultSet.getString("r.name");
+        Region region = new Region(regionId, regionCode, regionName);
+
+        Province province = new Province(provinceId, provinceCode, provinceName, region);
+
+        // Crear la ubicacion
+        return new Location(id, address, city, supermarket, province);
+    }
 }
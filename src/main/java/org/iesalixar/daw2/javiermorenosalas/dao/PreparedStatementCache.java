@@ -0,0 +1,294 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caché LRU de sentencias preparadas asociada a una conexión física del pool.
+ *
+ * Las sentencias se identifican por el texto SQL. Cuando un DAO prepara una consulta que ya está
+ * en la caché se le devuelve la misma sentencia, y al cerrarla se limpian sus parámetros y se
+ * restauran los ajustes que haya cambiado (tamaño de lectura, máximo de filas, tiempo de espera...).
+ * Si se cambia un ajuste que no se puede deshacer, como el nombre del cursor, la sentencia se
+ * cierra de verdad y sale de la caché.
+ * Para que el servidor no vuelva a analizar la consulta, la URL de MariaDB debe incluir
+ * {@code useServerPrepStmts=true}.
+ *
+ * Los contadores de aciertos, fallos y expulsiones son globales para todas las conexiones.
+ */
+public class PreparedStatementCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(PreparedStatementCache.class);
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong evictions = new AtomicLong();
+
+    // Ajustes que se restauran al devolver la sentencia, con el método que lee su valor actual
+    private static final Map<String, String> RESETTABLE_SETTINGS = Map.of(
+            "setFetchSize", "getFetchSize",
+            "setFetchDirection", "getFetchDirection",
+            "setMaxRows", "getMaxRows",
+            "setLargeMaxRows", "getLargeMaxRows",
+            "setMaxFieldSize", "getMaxFieldSize",
+            "setQueryTimeout", "getQueryTimeout");
+
+    // Ajustes que no se pueden deshacer: la sentencia deja de ser reutilizable
+    private static final Set<String> PERMANENT_SETTINGS = Set.of(
+            "setCursorName", "setEscapeProcessing", "setPoolable", "closeOnCompletion");
+
+    private final int maxSize;
+    private final LinkedHashMap<String, CachedStatement> statements;
+
+    /**
+     * @param maxSize Número máximo de sentencias guardadas para la conexión.
+     */
+    public PreparedStatementCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= PreparedStatementCache.this.maxSize) {
+                    return false;
+                }
+                evictions.incrementAndGet();
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+    }
+
+    /**
+     * Devuelve una sentencia preparada para el SQL indicado, reutilizando la de la caché si existe
+     * y no está en uso.
+     *
+     * @param physical Conexión física sobre la que se prepara la sentencia.
+     * @param sql      Texto SQL de la sentencia.
+     * @return Sentencia cuyo {@code close()} la devuelve a la caché.
+     * @throws SQLException Si no se puede preparar la sentencia.
+     */
+    public synchronized PreparedStatement prepare(Connection physical, String sql) throws SQLException {
+        CachedStatement cached = statements.get(sql);
+        if (cached != null && !cached.inUse) {
+            hits.incrementAndGet();
+            return cached.lease();
+        }
+
+        misses.incrementAndGet();
+        PreparedStatement statement = physical.prepareStatement(sql);
+        if (cached != null) {
+            // La misma consulta ya está abierta en esta conexión: se usa una sentencia sin cachear
+            return new CachedStatement(statement, false).lease();
+        }
+        CachedStatement created = new CachedStatement(statement, true);
+        statements.put(sql, created);
+        return created.lease();
+    }
+
+    /**
+     * Marca como libres las sentencias que no se cerraron antes de devolver la conexión al pool.
+     */
+    public synchronized void releaseAll() {
+        for (CachedStatement cached : new ArrayList<>(statements.values())) {
+            if (cached.inUse) {
+                cached.release(cached.currentLease);
+            }
+        }
+    }
+
+    /**
+     * Cierra todas las sentencias de la caché. Se usa al cerrar la conexión física.
+     */
+    public synchronized void closeAll() {
+        List<CachedStatement> all = new ArrayList<>(statements.values());
+        statements.clear();
+        for (CachedStatement cached : all) {
+            cached.evict();
+        }
+    }
+
+    /**
+     * @return Número de sentencias reutilizadas desde la caché.
+     */
+    public static long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * @return Número de sentencias que hubo que preparar.
+     */
+    public static long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return Número de sentencias expulsadas por superar el tamaño de la caché.
+     */
+    public static long getEvictions() {
+        return evictions.get();
+    }
+
+    /**
+     * Sentencia física guardada en la caché junto con su estado de uso.
+     */
+    private final class CachedStatement {
+
+        private final PreparedStatement physical;
+        private boolean cacheable;
+        private boolean inUse = false;
+        private LeaseHandler currentLease;
+
+        // Valor original de cada ajuste cambiado durante el préstamo actual, por método set
+        private final Map<Method, Object> changedSettings = new HashMap<>();
+
+        private CachedStatement(PreparedStatement physical, boolean cacheable) {
+            this.physical = physical;
+            this.cacheable = cacheable;
+        }
+
+        private PreparedStatement lease() {
+            inUse = true;
+            currentLease = new LeaseHandler(this);
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    currentLease);
+        }
+
+        /**
+         * Devuelve la sentencia a la caché, o la cierra si ya no pertenece a ella.
+         * Se ignora si el préstamo indicado ya no es el actual.
+         */
+        private void release(LeaseHandler lease) {
+            synchronized (PreparedStatementCache.this) {
+                if (lease == null || lease != currentLease) {
+                    return;
+                }
+                lease.returned = true;
+                currentLease = null;
+                inUse = false;
+                if (!cacheable) {
+                    closeQuietly();
+                    return;
+                }
+                try {
+                    physical.clearParameters();
+                    physical.clearBatch();
+                    restoreSettings();
+                } catch (SQLException | ReflectiveOperationException e) {
+                    logger.warn("No se pudo limpiar la sentencia cacheada, se descarta: {}", e.getMessage());
+                    discard();
+                }
+            }
+        }
+
+        /**
+         * Guarda el valor de un ajuste antes de que el préstamo actual lo cambie por primera vez.
+         * Si el ajuste no se puede deshacer, la sentencia se descartará al liberarla.
+         */
+        private void beforeSetting(Method setter) throws ReflectiveOperationException {
+            String getter = RESETTABLE_SETTINGS.get(setter.getName());
+            if (getter != null) {
+                if (!changedSettings.containsKey(setter)) {
+                    changedSettings.put(setter, PreparedStatement.class.getMethod(getter).invoke(physical));
+                }
+            } else if (PERMANENT_SETTINGS.contains(setter.getName())) {
+                synchronized (PreparedStatementCache.this) {
+                    if (cacheable) {
+                        cacheable = false;
+                        statements.values().remove(this);
+                    }
+                }
+            }
+        }
+
+        private void restoreSettings() throws ReflectiveOperationException {
+            for (Map.Entry<Method, Object> setting : changedSettings.entrySet()) {
+                setting.getKey().invoke(physical, setting.getValue());
+            }
+            changedSettings.clear();
+        }
+
+        private void discard() {
+            cacheable = false;
+            statements.values().remove(this);
+            closeQuietly();
+        }
+
+        /**
+         * Saca la sentencia de la caché. Si está en uso se cerrará cuando se libere.
+         */
+        private void evict() {
+            cacheable = false;
+            if (!inUse) {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly() {
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                logger.warn("Error al cerrar una sentencia preparada: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Intercepta {@code close()} para devolver la sentencia a la caché en lugar de cerrarla.
+     */
+    private static final class LeaseHandler implements InvocationHandler {
+
+        private final CachedStatement cached;
+        private volatile boolean returned = false;
+
+        private LeaseHandler(CachedStatement cached) {
+            this.cached = cached;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    cached.release(this);
+                    return null;
+                case "isClosed":
+                    return returned || cached.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "CachedStatement[" + cached.physical + "]";
+                default:
+                    break;
+            }
+            if (returned) {
+                throw new SQLException("La sentencia ya se ha cerrado.");
+            }
+            try {
+                if (method.getName().startsWith("set") || "closeOnCompletion".equals(method.getName())) {
+                    cached.beforeSetting(method);
+                }
+                return method.invoke(cached.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
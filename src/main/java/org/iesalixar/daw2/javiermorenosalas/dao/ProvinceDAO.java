@@ -3,7 +3,9 @@ package org.iesalixar.daw2.javiermorenosalas.dao;
 import org.iesalixar.daw2.javiermorenosalas.entity.Province;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 
 public interface ProvinceDAO {
@@ -11,9 +13,14 @@ public interface ProvinceDAO {
 
     List<Province> listAllProvinces() throws SQLException;
     void insertProvince(Province Province) throws SQLException;
+    UpsertResult upsertProvince(Province province) throws SQLException;
     void updateProvince(Province Province) throws SQLException;
     void deleteProvince(int id) throws SQLException;
+    int[] insertProvinces(List<Province> provinces) throws SQLException;
+    void updateProvinces(List<Province> provinces) throws SQLException;
+    int deleteProvinces(int[] ids) throws SQLException;
     Province getProvinceById(int id) throws SQLException;
+    Map<Integer, Province> getProvincesByIds(Collection<Integer> ids) throws SQLException;
     boolean existsProvinceByCode(String code) throws SQLException;
     boolean existsProvinceByCodeAndNotId(String code, int id) throws SQLException;
 
@@ -2,12 +2,16 @@ package org.iesalixar.daw2.javiermorenosalas.dao;
 
 import org.iesalixar.daw2.javiermorenosalas.entity.Province;
 import org.iesalixar.daw2.javiermorenosalas.entity.Region;
+import org.iesalixar.daw2.javiermorenosalas.metrics.DaoOperationEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class ProvinceDAOImpl implements ProvinceDAO {
 
@@ -27,28 +31,26 @@ public class ProvinceDAOImpl implements ProvinceDAO {
         logger.info("Inicio de listAllProvinces: Ejecutando consulta para listar todas las provincias y regiones");
 
         // Obtener una nueva conexión para cada operación
+        DaoOperationEvent event = new DaoOperationEvent("Province", "listAllProvinces");
+        event.begin();
         try (Connection connection = DatabaseConnectionManager.getConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
 
             while (resultSet.next()) {
-                int prov_id = resultSet.getInt("p.id");
-                String prov_code = resultSet.getString("p.code");
-                String prov_name = resultSet.getString("p.name");
-                int prov_id_region = resultSet.getInt("p.id_region");
-                int reg_id = resultSet.getInt("r.id");
-                String reg_name = resultSet.getString("r.name");
-                String reg_code = resultSet.getString("r.code");
-                Region region = new Region(reg_id, reg_code, reg_name);
-                Provinces.add(new Province(prov_id, prov_code, prov_name, region));
+                Provinces.add(mapProvince(resultSet));
             }
             // Registramos la cantidad de provincias obtenidas
             logger.info("Consulta ejecutada con éxito");
 
+            event.rows = Provinces.size();
         } catch (SQLException e) {
+            event.failed = true;
             // Si ocurre una excepción, registramos el error
             logger.error("Error al ejecutar la consulta para obtener provincias: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         // Registramos la finalización del metodo
         logger.info("Finalización de listAllProvinces.");
@@ -65,28 +67,86 @@ public class ProvinceDAOImpl implements ProvinceDAO {
 
         logger.info("Inicio de insertProvince: Ejecutando consulta para insertar provincias");
 
-        try (Connection connection = DatabaseConnectionManager.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-
-            // Obtener el ID de la región desde el objeto Region
-            int regionId = province.getRegion().getId();
-
-            // Configurar los parámetros de la consulta
-            preparedStatement.setString(1, province.getCode());
-            preparedStatement.setString(2, province.getName());
-            preparedStatement.setInt(3, regionId);  // Usar el id de la región
-
-            // Ejecutar la consulta
-            preparedStatement.executeUpdate();
-
+        DaoOperationEvent event = new DaoOperationEvent("Province", "insertProvince");
+        event.begin();
+        try {
+            TransientErrorRetry.execute("insertProvince", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+
+                    // Obtener el ID de la región desde el objeto Region
+                    int regionId = province.getRegion().getId();
+
+                    // Configurar los parámetros de la consulta
+                    preparedStatement.setString(1, province.getCode());
+                    preparedStatement.setString(2, province.getName());
+                    preparedStatement.setInt(3, regionId);  // Usar el id de la región
+
+                    // Ejecutar la consulta
+                    preparedStatement.executeUpdate();
+
+                    // Guardar en la entidad el ID generado
+                    try (ResultSet keys = preparedStatement.getGeneratedKeys()) {
+                        if (keys.next()) {
+                            province.setId(keys.getInt(1));
+                        }
+                    }
+                }
+                return null;
+            });
             logger.info("Consulta ejecutada con exito");
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al ejecutar la consulta para insertar provincias: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         logger.info("Finalizacion de insertProvince");
     }
 
+    /**
+     * Inserta la provincia o, si ya existe una con el mismo código, actualiza su nombre y su
+     * región, todo en una única sentencia.
+     *
+     * @param province Provincia a guardar; se le asigna el ID resultante.
+     * @return El ID de la fila y si se ha creado.
+     * @throws SQLException Si ocurre un error en la consulta a la base de datos.
+     */
+    public UpsertResult upsertProvince(Province province) throws SQLException {
+        String query = "INSERT INTO provinces (code, name, id_region) VALUES (?, ?, ?) "
+                + "ON DUPLICATE KEY UPDATE name = VALUES(name), id_region = VALUES(id_region), id = LAST_INSERT_ID(id)";
+
+        logger.info("Inicio de upsertProvince: Ejecutando consulta para insertar o actualizar provincia {}", province);
+
+        UpsertResult result;
+        DaoOperationEvent event = new DaoOperationEvent("Province", "upsertProvince");
+        event.begin();
+        try {
+            result = TransientErrorRetry.execute("upsertProvince", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+
+                    preparedStatement.setString(1, province.getCode());
+                    preparedStatement.setString(2, province.getName());
+                    preparedStatement.setInt(3, province.getRegion().getId());
+                    return UpsertResult.of(preparedStatement, preparedStatement.executeUpdate());
+                }
+            });
+            province.setId(result.getId());
+            logger.info("Provincia {} {} con exito", province, result.isCreated() ? "insertada" : "actualizada");
+            event.rows = 1;
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al ejecutar la consulta para insertar o actualizar provincia: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalizacion de upsertProvince.");
+        return result;
+    }
+
     /**
      * Actualiza una provincia existente en la base de datos.
      * @param province Objeto Province que contiene los nuevos datos de la provincia.
@@ -97,24 +157,34 @@ public class ProvinceDAOImpl implements ProvinceDAO {
 
         logger.info("Inicio de updateProvince: Ejecutando consulta para actualizar provincias");
 
-        try (Connection connection = DatabaseConnectionManager.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-
-            // Obtener el ID de la región desde el objeto Region
-            int regionId = province.getRegion().getId();
-
-            // Configurar los parámetros de la consulta
-            preparedStatement.setString(1, province.getCode());
-            preparedStatement.setString(2, province.getName());
-            preparedStatement.setInt(3, regionId);  // Actualizar el id_region
-            preparedStatement.setInt(4, province.getId());  // El ID de la provincia para la cláusula WHERE
-
-            // Ejecutar la consulta
-            preparedStatement.executeUpdate();
+        DaoOperationEvent event = new DaoOperationEvent("Province", "updateProvince");
+        event.begin();
+        try {
+            TransientErrorRetry.execute("updateProvince", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+                    // Obtener el ID de la región desde el objeto Region
+                    int regionId = province.getRegion().getId();
+
+                    // Configurar los parámetros de la consulta
+                    preparedStatement.setString(1, province.getCode());
+                    preparedStatement.setString(2, province.getName());
+                    preparedStatement.setInt(3, regionId);  // Actualizar el id_region
+                    preparedStatement.setInt(4, province.getId());  // El ID de la provincia para la cláusula WHERE
+
+                    // Ejecutar la consulta
+                    preparedStatement.executeUpdate();
+                }
+                return null;
+            });
             logger.info("Consulta ejecutada con exito");
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al ejecutar la consulta para actualizar provincias: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         logger.info("Finalizacion de updateProvince");
     }
@@ -129,20 +199,128 @@ public class ProvinceDAOImpl implements ProvinceDAO {
 
         logger.info("Inicio de deleteProvince: Ejecutando consulta para eliminar la provincia con ID {}", id);
 
-        try (Connection connection = DatabaseConnectionManager.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-
-            preparedStatement.setInt(1, id);
-            preparedStatement.executeUpdate();
-
+        DaoOperationEvent event = new DaoOperationEvent("Province", "deleteProvince");
+        event.begin();
+        try {
+            TransientErrorRetry.execute("deleteProvince", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+                    preparedStatement.setInt(1, id);
+                    preparedStatement.executeUpdate();
+                }
+                return null;
+            });
             logger.info("Provincia con ID {} eliminada con éxito", id);
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al eliminar la provincia con ID {}: {}", id, e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         logger.info("Finalización de deleteProvince");
     }
 
+    /**
+     * Inserta varias provincias en una sola transacción usando un lote JDBC.
+     * Si alguna falla no se inserta ninguna.
+     *
+     * @param provinces Lista de provincias a insertar. Se les asigna el ID generado.
+     * @return Los IDs generados, en el mismo orden que la lista.
+     * @throws SQLException Si ocurre un error en la inserción a la base de datos.
+     */
+    public int[] insertProvinces(List<Province> provinces) throws SQLException {
+        String query = "INSERT INTO provinces (code, name, id_region) VALUES (?, ?, ?)";
+
+        logger.info("Inicio de insertProvinces: Ejecutando lote para insertar {} provincias", provinces.size());
+
+        int[] ids;
+        DaoOperationEvent event = new DaoOperationEvent("Province", "insertProvinces");
+        event.begin();
+        try {
+            ids = BatchSupport.insertBatch(query, provinces, (statement, province) -> {
+                statement.setString(1, province.getCode());
+                statement.setString(2, province.getName());
+                statement.setInt(3, province.getRegion().getId());
+            });
+            for (int i = 0; i < ids.length; i++) {
+                provinces.get(i).setId(ids[i]);
+            }
+            logger.info("Lote ejecutado con éxito");
+            event.rows = ids.length;
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al ejecutar el lote para insertar provincias: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalización de insertProvinces");
+        return ids;
+    }
+
+    /**
+     * Actualiza varias provincias en una sola transacción usando un lote JDBC.
+     * Si alguna falla no se actualiza ninguna.
+     *
+     * @param provinces Lista de provincias con los nuevos datos.
+     * @throws SQLException Si ocurre un error en la actualización a la base de datos.
+     */
+    public void updateProvinces(List<Province> provinces) throws SQLException {
+        String query = "UPDATE provinces SET code = ?, name = ?, id_region = ? WHERE id = ?";
+
+        logger.info("Inicio de updateProvinces: Ejecutando lote para actualizar {} provincias", provinces.size());
+
+        DaoOperationEvent event = new DaoOperationEvent("Province", "updateProvinces");
+        event.begin();
+        try {
+            BatchSupport.updateBatch(query, provinces, (statement, province) -> {
+                statement.setString(1, province.getCode());
+                statement.setString(2, province.getName());
+                statement.setInt(3, province.getRegion().getId());
+                statement.setInt(4, province.getId());
+            });
+            logger.info("Lote ejecutado con éxito");
+            event.rows = provinces.size();
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al ejecutar el lote para actualizar provincias: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalización de updateProvinces");
+    }
+
+    /**
+     * Elimina varias provincias en una sola transacción.
+     *
+     * @param ids IDs de las provincias a eliminar.
+     * @return Número de provincias eliminadas.
+     * @throws SQLException Si ocurre un error en la eliminación a la base de datos.
+     */
+    public int deleteProvinces(int[] ids) throws SQLException {
+        logger.info("Inicio de deleteProvinces: Eliminando {} provincias", ids.length);
+
+        int deleted;
+        DaoOperationEvent event = new DaoOperationEvent("Province", "deleteProvinces");
+        event.begin();
+        try {
+            deleted = BatchSupport.deleteByIds("provinces", ids);
+            logger.info("{} provincias eliminadas con éxito", deleted);
+            event.rows = deleted;
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al eliminar provincias: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalización de deleteProvinces");
+        return deleted;
+    }
+
     /**
      * Obtiene una provincia por su ID de la base de datos.
      * @param id ID de la provincia a buscar.
@@ -155,6 +333,8 @@ public class ProvinceDAOImpl implements ProvinceDAO {
 
         logger.info("Inicio de getProvinceById: Ejecutando consulta para obtener provincia con ID {}", id);
 
+        DaoOperationEvent event = new DaoOperationEvent("Province", "getProvinceById");
+        event.begin();
         try (Connection connection = DatabaseConnectionManager.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
@@ -172,14 +352,80 @@ public class ProvinceDAOImpl implements ProvinceDAO {
             } else {
                 logger.warn("No se encontró ninguna provincia con ID {}", id);
             }
+            event.rows = Province != null ? 1 : 0;
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al obtener la provincia con ID {}: {}", id, e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         logger.info("Finalización de getProvinceById");
         return Province;
     }
 
+    /**
+     * Obtiene varias provincias por sus IDs. Los IDs se reparten en listas IN (...) acotadas,
+     * de modo que se hace una consulta por cada bloque en lugar de una por provincia.
+     * @param ids IDs de las provincias a buscar.
+     * @return Mapa de ID a provincia; los IDs que no existen no aparecen en el mapa.
+     * @throws SQLException Si ocurre un error en la consulta a la base de datos.
+     */
+    @Override
+    public Map<Integer, Province> getProvincesByIds(Collection<Integer> ids) throws SQLException {
+        Map<Integer, Province> provinces = new HashMap<>();
+
+        logger.info("Inicio de getProvincesByIds: Ejecutando consulta para obtener {} provincias", ids.size());
+
+        DaoOperationEvent event = new DaoOperationEvent("Province", "getProvincesByIds");
+        event.begin();
+        try (Connection connection = DatabaseConnectionManager.getConnection()) {
+            for (List<Integer> chunk : BatchSupport.partitionIds(ids)) {
+                String query = "SELECT * FROM provinces p INNER JOIN regions r on r.id = p.id_region " +
+                        "WHERE p.id IN (" + BatchSupport.placeholders(chunk.size()) + ")";
+                try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        preparedStatement.setInt(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                        while (resultSet.next()) {
+                            Province province = mapProvince(resultSet);
+                            provinces.put(province.getId(), province);
+                        }
+                    }
+                }
+            }
+            logger.info("Consulta ejecutada con éxito: {} provincias encontradas", provinces.size());
+            event.rows = provinces.size();
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al obtener provincias por IDs: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalización de getProvincesByIds");
+        return provinces;
+    }
+
+    /**
+     * Construye una provincia con su región a partir de una fila de la consulta
+     * {@code provinces p INNER JOIN regions r}.
+     * @param resultSet Resultado posicionado en la fila a leer.
+     * @return La provincia leída.
+     * @throws SQLException Si no se puede leer alguna columna.
+     */
+    private Province mapProvince(ResultSet resultSet) throws SQLException {
+        int prov_id = resultSet.getInt("p.id");
+        String prov_code = resultSet.getString("p.code");
+        String prov_name = resultSet.getString("p.name");
+        int reg_id = resultSet.getInt("r.id");
+        String reg_name = resultSet.getString("r.name");
+        String reg_code = resultSet.getString("r.code");
+        Region region = new Region(reg_id, reg_code, reg_name);
+        return new Province(prov_id, prov_code, prov_name, region);
+    }
+
     /**
      * Verifica si una provincia con el código especificado ya existe en la base de datos,
      * ignorando mayúsculas.
@@ -189,10 +435,12 @@ public class ProvinceDAOImpl implements ProvinceDAO {
      */
     @Override
     public boolean existsProvinceByCode(String code) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM provinces WHERE UPPER(code) = ?";
+        String sql = "SELECT EXISTS(SELECT 1 FROM provinces WHERE code_normalized = ? LIMIT 1)";
 
         logger.info("Inicio de existsProvinceByCode: Verificando si existe provincia con código {}", code);
 
+        DaoOperationEvent event = new DaoOperationEvent("Province", "existsProvinceByCode");
+        event.begin();
         try (Connection connection = DatabaseConnectionManager.getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
 
@@ -206,8 +454,11 @@ public class ProvinceDAOImpl implements ProvinceDAO {
                 return exists;
             }
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al verificar si existe provincia con código {}: {}", code, e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
     }
 
@@ -221,10 +472,12 @@ public class ProvinceDAOImpl implements ProvinceDAO {
      */
     @Override
     public boolean existsProvinceByCodeAndNotId(String code, int id) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM provinces WHERE UPPER(code) = ? AND id != ?";
+        String sql = "SELECT EXISTS(SELECT 1 FROM provinces WHERE code_normalized = ? AND id <> ? LIMIT 1)";
 
         logger.info("Inicio de existsProvinceByCodeAndNotId: Verificando si existe provincia con código {} excluyendo ID {}", code, id);
 
+        DaoOperationEvent event = new DaoOperationEvent("Province", "existsProvinceByCodeAndNotId");
+        event.begin();
         try (Connection connection = DatabaseConnectionManager.getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
 
@@ -239,8 +492,11 @@ public class ProvinceDAOImpl implements ProvinceDAO {
                 return exists;
             }
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al verificar si existe provincia con código {} excluyendo ID {}: {}", code, id, e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
     }
 
@@ -0,0 +1,464 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.iesalixar.daw2.javiermorenosalas.metrics.RequestTiming;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Instrumentación de las sentencias que ejecutan los DAO.
+ *
+ * {@link DatabaseConnectionManager} envuelve cada conexión que presta con {@link #wrap(Connection)}.
+ * Las sentencias creadas desde ella miden por separado el tiempo de ejecución (hasta que el driver
+ * devuelve el control) y el de lectura (el tiempo dentro de {@code ResultSet.next()}), y cuentan
+ * las filas leídas o modificadas. Los datos se acumulan por sentencia normalizada: sin espacios
+ * repetidos, con los literales sustituidos por {@code ?} y las listas {@code IN (?, ?, ...)}
+ * reducidas a una sola forma.
+ *
+ * Cada ejecución se suma también al desglose de la petición en curso ({@link RequestTiming}).
+ * Las ejecuciones que superan {@code DB_SLOW_QUERY_MS} se registran como consultas lentas. De los
+ * parámetros solo se registra el tipo, nunca el valor.
+ *
+ * La duración de cada ejecución se anota además en el cortocircuito de la base de datos
+ * ({@link DatabaseConnectionManager#recordExecution}), igual que los errores de conexión de la
+ * propia conexión. Por eso las conexiones se envuelven siempre: con {@code DB_QUERY_STATS_ENABLED=0}
+ * solo se desactivan las estadísticas, el desglose y la traza de consultas lentas. Si la conexión es
+ * una llamada de prueba del cortocircuito, sus resultados se reúnen y se anotan una sola vez al
+ * cerrarla ({@link DatabaseConnectionManager#recordTrial}).
+ */
+public final class QueryInstrumentation {
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryInstrumentation.class);
+
+    private static final boolean enabled = DatabaseConnectionManager.getIntProperty("DB_QUERY_STATS_ENABLED", 1) != 0;
+    private static final long slowQueryMillis = DatabaseConnectionManager.getIntProperty("DB_SLOW_QUERY_MS", 500);
+    private static final long slowQueryNanos = TimeUnit.MILLISECONDS.toNanos(slowQueryMillis);
+
+    // Máximo de sentencias distintas; las demás se acumulan juntas
+    private static final int MAX_QUERIES = 500;
+    private static final String OTHER_QUERIES = "(otras sentencias)";
+
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\?(?:\\s*,\\s*\\?)+");
+
+    private static final ConcurrentHashMap<String, QueryStats> stats = new ConcurrentHashMap<>();
+    // Sentencias ya normalizadas, para no aplicar las expresiones regulares en cada ejecución
+    private static final ConcurrentHashMap<String, String> normalized = new ConcurrentHashMap<>();
+
+    private QueryInstrumentation() {}
+
+    /**
+     * Envuelve una conexión para medir las sentencias que se creen desde ella.
+     *
+     * @param connection Conexión prestada por el pool.
+     * @param trial      Si la conexión es una llamada de prueba del cortocircuito.
+     * @return La conexión instrumentada.
+     */
+    static Connection wrap(Connection connection, boolean trial) {
+        return (Connection) Proxy.newProxyInstance(
+                Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection, trial));
+    }
+
+    /**
+     * @return Las estadísticas de todas las sentencias, de mayor a menor tiempo total.
+     */
+    public static List<QueryStats> getStats() {
+        List<QueryStats> all = new ArrayList<>(stats.values());
+        all.sort(Comparator.comparingDouble(QueryStats::getTotalMillis).reversed());
+        return all;
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static long getSlowQueryMillis() {
+        return slowQueryMillis;
+    }
+
+    /**
+     * @return La sentencia sin espacios repetidos, con los literales sustituidos por {@code ?} y las
+     *         listas de parámetros reducidas a {@code ?, ...}.
+     */
+    static String normalize(String sql) {
+        String cached = normalized.get(sql);
+        if (cached != null) {
+            return cached;
+        }
+        String result = WHITESPACE.matcher(sql.trim()).replaceAll(" ");
+        result = STRING_LITERAL.matcher(result).replaceAll("?");
+        result = NUMBER_LITERAL.matcher(result).replaceAll("?");
+        result = PARAMETER_LIST.matcher(result).replaceAll("?, ...");
+        if (normalized.size() < MAX_QUERIES * 4) {
+            normalized.put(sql, result);
+        }
+        return result;
+    }
+
+    private static QueryStats statsFor(String sql) {
+        String key = normalize(sql);
+        QueryStats existing = stats.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        if (stats.size() >= MAX_QUERIES) {
+            key = OTHER_QUERIES;
+        }
+        return stats.computeIfAbsent(key, QueryStats::new);
+    }
+
+    private static Throwable unwrap(InvocationTargetException e) {
+        return e.getCause() != null ? e.getCause() : e;
+    }
+
+
+    /**
+     * Envuelve las sentencias que crea la conexión y anota sus resultados en el cortocircuito.
+     */
+    private static final class ConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+        private final boolean trial;
+        // Resultado acumulado de una conexión de prueba, que se anota al cerrarla
+        private long slowestNanos = 0;
+        private boolean failed = false;
+        private boolean trialReported = false;
+
+        private ConnectionHandler(Connection target, boolean trial) {
+            this.target = target;
+            this.trial = trial;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+
+            Object result;
+            try {
+                result = method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                Throwable cause = unwrap(e);
+                if (cause instanceof SQLException sqlException) {
+                    recordConnectionError(sqlException);
+                }
+                throw cause;
+            } finally {
+                if ("close".equals(method.getName())) {
+                    reportTrial();
+                }
+            }
+
+            if ("prepareStatement".equals(method.getName()) && result instanceof PreparedStatement statement) {
+                return wrapStatement(PreparedStatement.class, statement, (String) args[0]);
+            }
+            if ("createStatement".equals(method.getName()) && result instanceof Statement statement) {
+                return wrapStatement(Statement.class, statement, null);
+            }
+            return result;
+        }
+
+        /**
+         * Anota la ejecución de una sentencia de esta conexión.
+         */
+        private void recordExecution(long executeNanos, SQLException error) {
+            if (!trial) {
+                DatabaseConnectionManager.recordExecution(executeNanos, error);
+                return;
+            }
+            slowestNanos = Math.max(slowestNanos, executeNanos);
+            if (error != null && SQLErrors.isConnectionError(error)) {
+                failed = true;
+            }
+        }
+
+        /**
+         * Anota un error de la propia conexión (confirmar, deshacer, cambiar el modo de transacción...).
+         */
+        private void recordConnectionError(SQLException e) {
+            if (!trial) {
+                DatabaseConnectionManager.reportExecutionError(e);
+            } else if (SQLErrors.isConnectionError(e)) {
+                failed = true;
+            }
+        }
+
+        private void reportTrial() {
+            if (trial && !trialReported) {
+                trialReported = true;
+                DatabaseConnectionManager.recordTrial(slowestNanos, failed);
+            }
+        }
+
+        private Object wrapStatement(Class<? extends Statement> type, Statement statement, String sql) {
+            return Proxy.newProxyInstance(
+                    type.getClassLoader(),
+                    new Class<?>[]{type},
+                    new StatementHandler(this, statement, sql));
+        }
+    }
+
+
+    /**
+     * Mide las ejecuciones de una sentencia y guarda el tipo de sus parámetros.
+     */
+    private static final class StatementHandler implements InvocationHandler {
+
+        private final ConnectionHandler connection;
+        private final Statement target;
+        // Sentencia preparada; en las sentencias simples se toma del argumento de execute
+        private final String preparedSql;
+        private final List<String> parameterTypes = new ArrayList<>();
+        private int batchSize = 0;
+        private Execution pending;
+
+        private StatementHandler(ConnectionHandler connection, Statement target, String preparedSql) {
+            this.connection = connection;
+            this.target = target;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "close":
+                    finishPending();
+                    break;
+                case "clearParameters":
+                    parameterTypes.clear();
+                    break;
+                case "addBatch":
+                    batchSize++;
+                    break;
+                case "clearBatch":
+                    batchSize = 0;
+                    break;
+                default:
+                    if (name.startsWith("execute")) {
+                        return execute(method, args);
+                    }
+                    if (enabled && name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                        rememberParameter(index, name, args[1]);
+                    }
+                    break;
+            }
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw unwrap(e);
+            }
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            finishPending();
+            String sql = preparedSql != null ? preparedSql
+                    : (args != null && args.length > 0 && args[0] instanceof String s ? s : null);
+            if (sql == null) {
+                return invokeTarget(method, args);
+            }
+
+            Execution execution = enabled ? new Execution(sql, describeParameters()) : null;
+            long start = System.nanoTime();
+            Object result;
+            try {
+                result = invokeTarget(method, args);
+            } catch (Throwable e) {
+                long executeNanos = System.nanoTime() - start;
+                if (e instanceof SQLException sqlException) {
+                    connection.recordExecution(executeNanos, sqlException);
+                }
+                if (execution != null) {
+                    execution.executeNanos = executeNanos;
+                    execution.finish(true);
+                }
+                throw e;
+            } finally {
+                batchSize = 0;
+            }
+            long executeNanos = System.nanoTime() - start;
+            connection.recordExecution(executeNanos, null);
+            if (execution == null) {
+                return result;
+            }
+            execution.executeNanos = executeNanos;
+
+            if (result instanceof ResultSet resultSet) {
+                // La ejecución termina cuando se cierra el resultado o la sentencia
+                pending = execution;
+                return Proxy.newProxyInstance(
+                        ResultSet.class.getClassLoader(),
+                        new Class<?>[]{ResultSet.class},
+                        new ResultSetHandler(resultSet, execution));
+            }
+            execution.rows = affectedRows(result);
+            execution.finish(false);
+            return result;
+        }
+
+        private Object invokeTarget(Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw unwrap(e);
+            }
+        }
+
+        private void finishPending() {
+            if (pending != null) {
+                pending.finish(false);
+                pending = null;
+            }
+        }
+
+        private void rememberParameter(int index, String setter, Object value) {
+            while (parameterTypes.size() < index) {
+                parameterTypes.add("?");
+            }
+            String type = "setNull".equals(setter) || value == null ? "null" : value.getClass().getSimpleName();
+            parameterTypes.set(index - 1, type);
+        }
+
+        private String describeParameters() {
+            if (parameterTypes.isEmpty()) {
+                return batchSize > 0 ? "lote de " + batchSize : "";
+            }
+            String types = String.join(", ", parameterTypes);
+            return batchSize > 0 ? "lote de " + batchSize + ", último: [" + types + "]" : "[" + types + "]";
+        }
+
+        private static long affectedRows(Object result) {
+            if (result instanceof Integer count) {
+                return Math.max(0, count);
+            }
+            if (result instanceof Long count) {
+                return Math.max(0, count);
+            }
+            long total = 0;
+            if (result instanceof int[] counts) {
+                for (int count : counts) {
+                    total += Math.max(0, count);
+                }
+            } else if (result instanceof long[] counts) {
+                for (long count : counts) {
+                    total += Math.max(0, count);
+                }
+            }
+            return total;
+        }
+    }
+
+
+    /**
+     * Cuenta las filas leídas y el tiempo dentro de {@code next()}.
+     */
+    private static final class ResultSetHandler implements InvocationHandler {
+
+        private final ResultSet target;
+        private final Execution execution;
+
+        private ResultSetHandler(ResultSet target, Execution execution) {
+            this.target = target;
+            this.execution = execution;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "next": {
+                    long start = System.nanoTime();
+                    try {
+                        boolean hasRow = target.next();
+                        if (hasRow) {
+                            execution.rows++;
+                        }
+                        return hasRow;
+                    } finally {
+                        execution.fetchNanos += System.nanoTime() - start;
+                    }
+                }
+                case "close":
+                    execution.finish(false);
+                    break;
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw unwrap(e);
+            }
+        }
+    }
+
+
+    /**
+     * Una ejecución de una sentencia, desde {@code execute} hasta que se cierra su resultado.
+     */
+    private static final class Execution {
+
+        private final String sql;
+        private final String parameters;
+        private long executeNanos;
+        private long fetchNanos;
+        private long rows;
+        private boolean finished;
+
+        private Execution(String sql, String parameters) {
+            this.sql = sql;
+            this.parameters = parameters;
+        }
+
+        private void finish(boolean failed) {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            statsFor(sql).record(executeNanos, fetchNanos, rows, failed);
+
+            long totalNanos = executeNanos + fetchNanos;
+            RequestTiming.recordQuery(totalNanos);
+            if (totalNanos >= slowQueryNanos) {
+                logger.warn("Consulta lenta ({} ms: ejecución {} ms, lectura {} ms, {} filas{}): {} | parámetros: {}",
+                        TimeUnit.NANOSECONDS.toMillis(totalNanos),
+                        TimeUnit.NANOSECONDS.toMillis(executeNanos),
+                        TimeUnit.NANOSECONDS.toMillis(fetchNanos),
+                        rows, failed ? ", con error" : "", normalize(sql), parameters.isEmpty() ? "ninguno" : parameters);
+            }
+        }
+    }
+}
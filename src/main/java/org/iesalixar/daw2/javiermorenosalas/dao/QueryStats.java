@@ -0,0 +1,101 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Estadísticas acumuladas de una sentencia SQL normalizada: número de ejecuciones, errores, filas
+ * y tiempo de ejecución y de lectura de resultados por separado.
+ */
+public final class QueryStats {
+
+    private final String sql;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder rows = new LongAdder();
+    private final LongAdder executeNanos = new LongAdder();
+    private final LongAdder fetchNanos = new LongAdder();
+    private final AtomicLong maxNanos = new AtomicLong();
+
+    QueryStats(String sql) {
+        this.sql = sql;
+    }
+
+    /**
+     * Anota una ejecución terminada.
+     */
+    void record(long executeNanos, long fetchNanos, long rows, boolean failed) {
+        calls.increment();
+        if (failed) {
+            errors.increment();
+        }
+        this.rows.add(rows);
+        this.executeNanos.add(executeNanos);
+        this.fetchNanos.add(fetchNanos);
+        maxNanos.accumulateAndGet(executeNanos + fetchNanos, Math::max);
+    }
+
+    /**
+     * @return La sentencia normalizada: literales y listas de parámetros sustituidos por {@code ?}.
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    /**
+     * @return Filas leídas (consultas) o modificadas (escrituras) en total.
+     */
+    public long getRows() {
+        return rows.sum();
+    }
+
+    /**
+     * @return Tiempo total esperando a que la base de datos ejecute la sentencia, en milisegundos.
+     */
+    public double getExecuteMillis() {
+        return toMillis(executeNanos.sum());
+    }
+
+    /**
+     * @return Tiempo total recorriendo los resultados, en milisegundos.
+     */
+    public double getFetchMillis() {
+        return toMillis(fetchNanos.sum());
+    }
+
+    /**
+     * @return Tiempo total (ejecución y lectura), en milisegundos.
+     */
+    public double getTotalMillis() {
+        return toMillis(executeNanos.sum() + fetchNanos.sum());
+    }
+
+    /**
+     * @return Tiempo medio por ejecución, en milisegundos.
+     */
+    public double getAverageMillis() {
+        long count = calls.sum();
+        return count == 0 ? 0.0 : getTotalMillis() / count;
+    }
+
+    /**
+     * @return La ejecución más lenta, en milisegundos.
+     */
+    public double getMaxMillis() {
+        return toMillis(maxNanos.get());
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
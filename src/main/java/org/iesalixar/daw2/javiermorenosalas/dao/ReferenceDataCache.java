@@ -0,0 +1,232 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ToIntFunction;
+import java.util.function.UnaryOperator;
+
+/**
+ * Caché en memoria de una tabla de datos de referencia (regiones, provincias, supermercados).
+ *
+ * Guarda la lista completa y un índice por ID construido a partir de ella. La caché se vacía
+ * cuando se escribe en la tabla a través de los DAO con caché, y caduca pasado un tiempo para
+ * recoger los cambios hechos por otras vías.
+ *
+ * Las entidades son mutables, así que nunca se entregan las de la caché: cada lectura devuelve
+ * copias, que quien las recibe puede modificar sin afectar a otras peticiones.
+ *
+ * @param <T> Tipo de entidad cacheada.
+ */
+public class ReferenceDataCache<T> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ReferenceDataCache.class);
+
+    // Todas las cachés creadas, para poder consultar sus estadísticas
+    private static final List<ReferenceDataCache<?>> instances = new CopyOnWriteArrayList<>();
+
+    /**
+     * Operación de carga contra la base de datos.
+     */
+    @FunctionalInterface
+    public interface Loader<R> {
+        R load() throws SQLException;
+    }
+
+    private final String name;
+    private final long ttlMillis;
+    private final ToIntFunction<T> idExtractor;
+    private final UnaryOperator<T> copier;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    // Se incrementa en cada invalidación para descartar cargas que empezaron antes
+    private final AtomicLong generation = new AtomicLong();
+
+    private volatile Snapshot<T> snapshot;
+
+    /**
+     * @param name        Nombre de la caché (para trazas y estadísticas).
+     * @param ttlMillis   Tiempo de vida de los datos cacheados.
+     * @param idExtractor Función que obtiene el ID de una entidad.
+     * @param copier      Función que crea una copia independiente de una entidad.
+     */
+    private ReferenceDataCache(String name, long ttlMillis, ToIntFunction<T> idExtractor, UnaryOperator<T> copier) {
+        this.name = name;
+        this.ttlMillis = ttlMillis;
+        this.idExtractor = idExtractor;
+        this.copier = copier;
+    }
+
+    /**
+     * Crea una caché vacía y la registra para consultar sus estadísticas.
+     *
+     * @param name        Nombre de la caché (para trazas y estadísticas).
+     * @param ttlMillis   Tiempo de vida de los datos cacheados.
+     * @param idExtractor Función que obtiene el ID de una entidad.
+     * @param copier      Función que crea una copia independiente de una entidad.
+     * @return La caché creada.
+     */
+    public static <T> ReferenceDataCache<T> create(String name, long ttlMillis, ToIntFunction<T> idExtractor,
+                                                   UnaryOperator<T> copier) {
+        ReferenceDataCache<T> cache = new ReferenceDataCache<>(name, ttlMillis, idExtractor, copier);
+        instances.add(cache);
+        return cache;
+    }
+
+    /**
+     * Devuelve la lista completa, cargándola con {@code loader} si no está en memoria.
+     *
+     * @param loader Consulta que obtiene todas las filas de la tabla.
+     * @return Copia de todas las entidades.
+     * @throws SQLException Si falla la carga.
+     */
+    public List<T> getAll(Loader<List<T>> loader) throws SQLException {
+        List<T> cached = current(loader).list;
+        List<T> copies = new ArrayList<>(cached.size());
+        for (T row : cached) {
+            copies.add(copier.apply(row));
+        }
+        return copies;
+    }
+
+    /**
+     * Devuelve la entidad con el ID indicado a partir del índice en memoria.
+     *
+     * @param id     ID de la entidad.
+     * @param loader Consulta que obtiene todas las filas de la tabla.
+     * @return Copia de la entidad o null si no existe.
+     * @throws SQLException Si falla la carga.
+     */
+    public T getById(int id, Loader<List<T>> loader) throws SQLException {
+        T row = current(loader).byId.get(id);
+        return row == null ? null : copier.apply(row);
+    }
+
+    /**
+     * Devuelve las entidades con los IDs indicados a partir del índice en memoria.
+     *
+     * @param ids    IDs de las entidades.
+     * @param loader Consulta que obtiene todas las filas de la tabla.
+     * @return Mapa de ID a copia de la entidad; los IDs que no existen no aparecen en el mapa.
+     * @throws SQLException Si falla la carga.
+     */
+    public Map<Integer, T> getByIds(Collection<Integer> ids, Loader<List<T>> loader) throws SQLException {
+        Map<Integer, T> byId = current(loader).byId;
+        Map<Integer, T> result = new HashMap<>();
+        for (Integer id : ids) {
+            T row = byId.get(id);
+            if (row != null) {
+                result.put(id, copier.apply(row));
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Vacía la caché. Se llama después de cada escritura en la tabla.
+     * Dentro de una {@link UnitOfWork} se vacía también al terminarla, para que una carga hecha
+     * por otra petición antes de confirmar la transacción no quede guardada.
+     */
+    public void invalidate() {
+        clear();
+        UnitOfWork unitOfWork = UnitOfWork.current();
+        if (unitOfWork != null) {
+            unitOfWork.afterCompletion(this::clear);
+        }
+    }
+
+    private void clear() {
+        generation.incrementAndGet();
+        snapshot = null;
+        logger.debug("Caché {} invalidada.", name);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return Proporción de lecturas servidas desde memoria (entre 0 y 1).
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * @return Todas las cachés de datos de referencia creadas.
+     */
+    public static List<ReferenceDataCache<?>> getInstances() {
+        return Collections.unmodifiableList(instances);
+    }
+
+    private Snapshot<T> current(Loader<List<T>> loader) throws SQLException {
+        Snapshot<T> cached = snapshot;
+        if (cached != null && !cached.isExpired()) {
+            hits.incrementAndGet();
+            return cached;
+        }
+        synchronized (this) {
+            cached = snapshot;
+            if (cached != null && !cached.isExpired()) {
+                hits.incrementAndGet();
+                return cached;
+            }
+            misses.incrementAndGet();
+            long loadGeneration = generation.get();
+            Snapshot<T> loaded = new Snapshot<>(loader.load(), idExtractor, System.currentTimeMillis() + ttlMillis);
+            snapshot = loaded;
+            // Si hubo una escritura durante la carga, los datos se usan pero no se guardan
+            if (generation.get() != loadGeneration) {
+                snapshot = null;
+            }
+            logger.info("Caché {} cargada: {} elementos (tasa de aciertos {}).",
+                    name, loaded.list.size(), String.format("%.2f", getHitRate()));
+            return loaded;
+        }
+    }
+
+    /**
+     * Copia inmutable de la tabla en un momento dado.
+     */
+    private static final class Snapshot<T> {
+
+        private final List<T> list;
+        private final Map<Integer, T> byId;
+        private final long expiresAtMillis;
+
+        private Snapshot(List<T> rows, ToIntFunction<T> idExtractor, long expiresAtMillis) {
+            this.list = Collections.unmodifiableList(rows);
+            Map<Integer, T> index = new HashMap<>();
+            for (T row : rows) {
+                index.put(idExtractor.applyAsInt(row), row);
+            }
+            this.byId = index;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+
+        private boolean isExpired() {
+            return System.currentTimeMillis() > expiresAtMillis;
+        }
+    }
+}
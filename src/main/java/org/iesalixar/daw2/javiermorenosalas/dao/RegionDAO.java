@@ -10,8 +10,12 @@ public interface RegionDAO {
 
     List<Region> listAllRegions() throws SQLException;
     void insertRegion(Region region) throws SQLException;
+    UpsertResult upsertRegion(Region region) throws SQLException;
     void updateRegion(Region region) throws SQLException;
     void deleteRegion(int id) throws SQLException;
+    int[] insertRegions(List<Region> regions) throws SQLException;
+    void updateRegions(List<Region> regions) throws SQLException;
+    int deleteRegions(int[] ids) throws SQLException;
     Region getRegionById(int id) throws SQLException;
     boolean existsRegionByCode(String code) throws SQLException;
     boolean existsRegionByCodeAndNotId(String code, int id) throws SQLException;
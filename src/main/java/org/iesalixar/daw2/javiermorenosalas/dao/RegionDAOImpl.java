@@ -1,6 +1,7 @@
 package org.iesalixar.daw2.javiermorenosalas.dao;
 
 import org.iesalixar.daw2.javiermorenosalas.entity.Region;
+import org.iesalixar.daw2.javiermorenosalas.metrics.DaoOperationEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -23,6 +24,8 @@ public class RegionDAOImpl implements RegionDAO {
 
         logger.info("Inicio de listAllRegions: Ejecutando consulta para listar todas las regiones");
 
+        DaoOperationEvent event = new DaoOperationEvent("Region", "listAllRegions");
+        event.begin();
         try (Connection connection = DatabaseConnectionManager.getConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
@@ -34,9 +37,13 @@ public class RegionDAOImpl implements RegionDAO {
                 regions.add(new Region(id, code, name));
             }
             logger.info("Consulta ejecutada con éxito.");
+            event.rows = regions.size();
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al ejecutar la consulta para obtener regiones: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         logger.info("Finalización de listAllRegions.");
         return regions;
@@ -52,20 +59,78 @@ public class RegionDAOImpl implements RegionDAO {
 
         logger.info("Inicio de insertRegion: Ejecutando consulta para insertar región {}", region);
 
-        try (Connection connection = DatabaseConnectionManager.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-
-            preparedStatement.setString(1, region.getCode());
-            preparedStatement.setString(2, region.getName());
-            preparedStatement.executeUpdate();
+        DaoOperationEvent event = new DaoOperationEvent("Region", "insertRegion");
+        event.begin();
+        try {
+            TransientErrorRetry.execute("insertRegion", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+
+                    preparedStatement.setString(1, region.getCode());
+                    preparedStatement.setString(2, region.getName());
+                    preparedStatement.executeUpdate();
+
+                    // Se guarda en la entidad el ID generado
+                    try (ResultSet keys = preparedStatement.getGeneratedKeys()) {
+                        if (keys.next()) {
+                            region.setId(keys.getInt(1));
+                        }
+                    }
+                }
+                return null;
+            });
             logger.info("Región {} insertada con éxito", region);
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al ejecutar la consulta para insertar región: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         logger.info("Finalización de insertRegion.");
     }
 
+    /**
+     * Inserta la región o, si ya existe una con el mismo código, actualiza su nombre, todo en
+     * una única sentencia.
+     *
+     * @param region Región a guardar; se le asigna el ID resultante.
+     * @return El ID de la fila y si se ha creado.
+     * @throws SQLException Si ocurre un error en la consulta a la base de datos.
+     */
+    public UpsertResult upsertRegion(Region region) throws SQLException {
+        String query = "INSERT INTO regions (code, name) VALUES (?, ?) "
+                + "ON DUPLICATE KEY UPDATE name = VALUES(name), id = LAST_INSERT_ID(id)";
+
+        logger.info("Inicio de upsertRegion: Ejecutando consulta para insertar o actualizar región {}", region);
+
+        UpsertResult result;
+        DaoOperationEvent event = new DaoOperationEvent("Region", "upsertRegion");
+        event.begin();
+        try {
+            result = TransientErrorRetry.execute("upsertRegion", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+
+                    preparedStatement.setString(1, region.getCode());
+                    preparedStatement.setString(2, region.getName());
+                    return UpsertResult.of(preparedStatement, preparedStatement.executeUpdate());
+                }
+            });
+            region.setId(result.getId());
+            logger.info("Región {} {} con éxito", region, result.isCreated() ? "insertada" : "actualizada");
+            event.rows = 1;
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al ejecutar la consulta para insertar o actualizar región: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalización de upsertRegion.");
+        return result;
+    }
+
     /**
      * Actualiza una región existente en la base de datos.
      * @param region Región a actualizar
@@ -76,17 +141,27 @@ public class RegionDAOImpl implements RegionDAO {
 
         logger.info("Inicio de updateRegion: Ejecutando consulta para actualizar región {}", region);
 
-        try (Connection connection = DatabaseConnectionManager.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-
-            preparedStatement.setString(1, region.getCode());
-            preparedStatement.setString(2, region.getName());
-            preparedStatement.setInt(3, region.getId());
-            preparedStatement.executeUpdate();
+        DaoOperationEvent event = new DaoOperationEvent("Region", "updateRegion");
+        event.begin();
+        try {
+            TransientErrorRetry.execute("updateRegion", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+                    preparedStatement.setString(1, region.getCode());
+                    preparedStatement.setString(2, region.getName());
+                    preparedStatement.setInt(3, region.getId());
+                    preparedStatement.executeUpdate();
+                }
+                return null;
+            });
             logger.info("Región {} actualizada con éxito", region);
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al ejecutar la consulta para actualizar región: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         logger.info("Finalización de updateRegion.");
     }
@@ -101,19 +176,126 @@ public class RegionDAOImpl implements RegionDAO {
 
         logger.info("Inicio de deleteRegion: Ejecutando consulta para eliminar región con ID {}", id);
 
-        try (Connection connection = DatabaseConnectionManager.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
-
-            preparedStatement.setInt(1, id);
-            preparedStatement.executeUpdate();
+        DaoOperationEvent event = new DaoOperationEvent("Region", "deleteRegion");
+        event.begin();
+        try {
+            TransientErrorRetry.execute("deleteRegion", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+
+                    preparedStatement.setInt(1, id);
+                    preparedStatement.executeUpdate();
+                }
+                return null;
+            });
             logger.info("Región con ID {} eliminada con éxito", id);
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al ejecutar la consulta para eliminar región con ID {}: {}", id, e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         logger.info("Finalización de deleteRegion.");
     }
 
+    /**
+     * Inserta varias regiones en una sola transacción usando un lote JDBC.
+     * Si alguna falla no se inserta ninguna.
+     *
+     * @param regions Lista de regiones a insertar. Se les asigna el ID generado.
+     * @return Los IDs generados, en el mismo orden que la lista.
+     * @throws SQLException Si ocurre un error en la inserción a la base de datos.
+     */
+    public int[] insertRegions(List<Region> regions) throws SQLException {
+        String query = "INSERT INTO regions (code, name) VALUES (?, ?)";
+
+        logger.info("Inicio de insertRegions: Ejecutando lote para insertar {} regiones", regions.size());
+
+        int[] ids;
+        DaoOperationEvent event = new DaoOperationEvent("Region", "insertRegions");
+        event.begin();
+        try {
+            ids = BatchSupport.insertBatch(query, regions, (statement, region) -> {
+                statement.setString(1, region.getCode());
+                statement.setString(2, region.getName());
+            });
+            for (int i = 0; i < ids.length; i++) {
+                regions.get(i).setId(ids[i]);
+            }
+            logger.info("Lote ejecutado con éxito");
+            event.rows = ids.length;
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al ejecutar el lote para insertar regiones: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalización de insertRegions");
+        return ids;
+    }
+
+    /**
+     * Actualiza varias regiones en una sola transacción usando un lote JDBC.
+     * Si alguna falla no se actualiza ninguna.
+     *
+     * @param regions Lista de regiones con los nuevos datos.
+     * @throws SQLException Si ocurre un error en la actualización a la base de datos.
+     */
+    public void updateRegions(List<Region> regions) throws SQLException {
+        String query = "UPDATE regions SET code = ?, name = ? WHERE id = ?";
+
+        logger.info("Inicio de updateRegions: Ejecutando lote para actualizar {} regiones", regions.size());
+
+        DaoOperationEvent event = new DaoOperationEvent("Region", "updateRegions");
+        event.begin();
+        try {
+            BatchSupport.updateBatch(query, regions, (statement, region) -> {
+                statement.setString(1, region.getCode());
+                statement.setString(2, region.getName());
+                statement.setInt(3, region.getId());
+            });
+            logger.info("Lote ejecutado con éxito");
+            event.rows = regions.size();
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al ejecutar el lote para actualizar regiones: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalización de updateRegions");
+    }
+
+    /**
+     * Elimina varias regiones en una sola transacción.
+     *
+     * @param ids IDs de las regiones a eliminar.
+     * @return Número de regiones eliminadas.
+     * @throws SQLException Si ocurre un error en la eliminación a la base de datos.
+     */
+    public int deleteRegions(int[] ids) throws SQLException {
+        logger.info("Inicio de deleteRegions: Eliminando {} regiones", ids.length);
+
+        int deleted;
+        DaoOperationEvent event = new DaoOperationEvent("Region", "deleteRegions");
+        event.begin();
+        try {
+            deleted = BatchSupport.deleteByIds("regions", ids);
+            logger.info("{} regiones eliminadas con éxito", deleted);
+            event.rows = deleted;
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al eliminar regiones: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalización de deleteRegions");
+        return deleted;
+    }
+
     /**
      * Obtiene una región por su ID de la base de datos.
      * @param id ID de la región a buscar
@@ -126,6 +308,8 @@ public class RegionDAOImpl implements RegionDAO {
 
         logger.info("Inicio de getRegionById: Ejecutando consulta para obtener región con ID {}", id);
 
+        DaoOperationEvent event = new DaoOperationEvent("Region", "getRegionById");
+        event.begin();
         try (Connection connection = DatabaseConnectionManager.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
@@ -139,9 +323,13 @@ public class RegionDAOImpl implements RegionDAO {
             } else {
                 logger.warn("No se encontró ninguna región con ID {}", id);
             }
+            event.rows = region != null ? 1 : 0;
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al obtener la región con ID {}: {}", id, e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
         logger.info("Finalización de getRegionById.");
         return region;
@@ -157,10 +345,12 @@ public class RegionDAOImpl implements RegionDAO {
      */
     @Override
     public boolean existsRegionByCode(String code) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM regions WHERE UPPER(code) = ?";
+        String sql = "SELECT EXISTS(SELECT 1 FROM regions WHERE code_normalized = ? LIMIT 1)";
 
         logger.info("Inicio de existsRegionByCode: Verificando si existe región con código {}", code);
 
+        DaoOperationEvent event = new DaoOperationEvent("Region", "existsRegionByCode");
+        event.begin();
         try (Connection connection = DatabaseConnectionManager.getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
 
@@ -172,8 +362,11 @@ public class RegionDAOImpl implements RegionDAO {
                 return exists;
             }
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al verificar si existe región con código {}: {}", code, e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
     }
 
@@ -189,10 +382,12 @@ public class RegionDAOImpl implements RegionDAO {
      */
     @Override
     public boolean existsRegionByCodeAndNotId(String code, int id) throws SQLException {
-        String sql = "SELECT COUNT(*) FROM regions WHERE UPPER(code) = ? AND id != ?";
+        String sql = "SELECT EXISTS(SELECT 1 FROM regions WHERE code_normalized = ? AND id <> ? LIMIT 1)";
 
         logger.info("Inicio de existsRegionByCodeAndNotId: Verificando si existe región con código {} excluyendo ID {}", code, id);
 
+        DaoOperationEvent event = new DaoOperationEvent("Region", "existsRegionByCodeAndNotId");
+        event.begin();
         try (Connection connection = DatabaseConnectionManager.getConnection();
              PreparedStatement statement = connection.prepareStatement(sql)) {
 
@@ -205,8 +400,11 @@ public class RegionDAOImpl implements RegionDAO {
                 return exists;
             }
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al verificar si existe región con código {} excluyendo ID {}: {}", code, id, e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
     }
 }
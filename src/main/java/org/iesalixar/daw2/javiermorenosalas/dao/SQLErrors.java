@@ -0,0 +1,93 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLTransientConnectionException;
+
+/**
+ * Clasifica los errores de MariaDB provocados por restricciones de la base de datos, para que los
+ * servlets puedan intentar la escritura directamente y mostrar el mensaje adecuado si falla, en
+ * lugar de comprobar antes con consultas adicionales. También distingue los errores de conexión y
+ * los transitorios, que pueden reintentarse.
+ *
+ * MariaDB usa el SQLState 23000 para todas las violaciones de integridad; el tipo concreto se
+ * distingue por el código de error.
+ */
+public final class SQLErrors {
+
+    private static final String INTEGRITY_CONSTRAINT_VIOLATION = "23000";
+
+    // ER_DUP_ENTRY: valor repetido en una clave única
+    private static final int DUPLICATE_ENTRY = 1062;
+    // ER_ROW_IS_REFERENCED_2: se borra o modifica una fila referenciada por otra tabla
+    private static final int ROW_IS_REFERENCED = 1451;
+    // ER_NO_REFERENCED_ROW_2: la fila referenciada por la clave foránea no existe
+    private static final int NO_REFERENCED_ROW = 1452;
+    // ER_LOCK_WAIT_TIMEOUT: se agota la espera de un bloqueo
+    private static final int LOCK_WAIT_TIMEOUT = 1205;
+    // ER_LOCK_DEADLOCK: interbloqueo, la transacción se ha deshecho
+    private static final int DEADLOCK = 1213;
+
+    // Fallo de serialización (SQLState estándar de los interbloqueos)
+    private static final String SERIALIZATION_FAILURE = "40001";
+
+    private SQLErrors() {}
+
+    /**
+     * @return true si el error se debe a un valor repetido en una clave única.
+     */
+    public static boolean isDuplicateKey(SQLException e) {
+        return isIntegrityViolation(e, DUPLICATE_ENTRY);
+    }
+
+    /**
+     * @return true si el error se debe a que la fila referenciada por una clave foránea no existe.
+     */
+    public static boolean isMissingReference(SQLException e) {
+        return isIntegrityViolation(e, NO_REFERENCED_ROW);
+    }
+
+    /**
+     * @return true si el error se debe a que la fila está referenciada desde otra tabla.
+     */
+    public static boolean isReferencedRow(SQLException e) {
+        return isIntegrityViolation(e, ROW_IS_REFERENCED);
+    }
+
+    /**
+     * @return true si el error se debe a que no se puede conectar con la base de datos o se ha
+     *         perdido la conexión (SQLState de clase 08).
+     */
+    public static boolean isConnectionError(SQLException e) {
+        if (e instanceof SQLTransientConnectionException || e instanceof SQLNonTransientConnectionException) {
+            return true;
+        }
+        String sqlState = e.getSQLState();
+        return sqlState != null && sqlState.startsWith("08");
+    }
+
+    /**
+     * @return true si el error es transitorio (interbloqueo o espera de bloqueo agotada) y la
+     *         operación puede repetirse.
+     */
+    public static boolean isTransient(SQLException e) {
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            if (current.getErrorCode() == DEADLOCK || current.getErrorCode() == LOCK_WAIT_TIMEOUT
+                    || SERIALIZATION_FAILURE.equals(current.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isIntegrityViolation(SQLException e, int errorCode) {
+        // En los lotes el error original puede venir encadenado
+        for (SQLException current = e; current != null; current = current.getNextException()) {
+            if (current.getErrorCode() == errorCode
+                    && INTEGRITY_CONSTRAINT_VIOLATION.equals(current.getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
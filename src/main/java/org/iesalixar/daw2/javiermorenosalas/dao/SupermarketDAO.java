@@ -3,7 +3,9 @@ package org.iesalixar.daw2.javiermorenosalas.dao;
 import org.iesalixar.daw2.javiermorenosalas.entity.Supermarket;
 
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 
 public interface SupermarketDAO {
@@ -11,9 +13,14 @@ public interface SupermarketDAO {
 
     List<Supermarket> listAllSupermarkets() throws SQLException;
     void insertSupermarket(Supermarket supermarket) throws SQLException;
+    UpsertResult upsertSupermarket(Supermarket supermarket) throws SQLException;
     void updateSupermarket(Supermarket supermarket) throws SQLException;
     void deleteSupermarket(int id) throws SQLException;
+    int[] insertSupermarkets(List<Supermarket> supermarkets) throws SQLException;
+    void updateSupermarkets(List<Supermarket> supermarkets) throws SQLException;
+    int deleteSupermarkets(int[] ids) throws SQLException;
     Supermarket getSupermarketById(int id) throws SQLException;
+    Map<Integer, Supermarket> getSupermarketsByIds(Collection<Integer> ids) throws SQLException;
 
 
 }
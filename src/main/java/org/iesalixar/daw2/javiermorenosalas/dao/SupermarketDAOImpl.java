@@ -1,12 +1,16 @@
 package org.iesalixar.daw2.javiermorenosalas.dao;
 
 import org.iesalixar.daw2.javiermorenosalas.entity.Supermarket;
+import org.iesalixar.daw2.javiermorenosalas.metrics.DaoOperationEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class SupermarketDAOImpl implements SupermarketDAO {
 
@@ -24,19 +28,23 @@ public class SupermarketDAOImpl implements SupermarketDAO {
 
         logger.info("Inicio de listAllSupermarkets: Ejecutando consulta para listar todos los supermercados.");
 
+        DaoOperationEvent event = new DaoOperationEvent("Supermarket", "listAllSupermarkets");
+        event.begin();
         try (Connection connection = DatabaseConnectionManager.getConnection();
              Statement statement = connection.createStatement();
              ResultSet resultSet = statement.executeQuery(query)) {
 
             while (resultSet.next()) {
-                int id = resultSet.getInt("id");
-                String name = resultSet.getString("name");
-                supermarkets.add(new Supermarket(id, name));
+                supermarkets.add(mapSupermarket(resultSet));
             }
             logger.info("Consulta ejecutada con exito.");
+            event.rows = supermarkets.size();
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al ejecutar la consulta para obtener supermercados: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
 
         logger.info("Finalizacion de listAllSupermarkets.");
@@ -54,20 +62,70 @@ public class SupermarketDAOImpl implements SupermarketDAO {
 
         logger.info("Inicio de insertSupermarket: Ejecutando consulta para insertar supermarket {}", supermarket);
 
-        try (Connection connection = DatabaseConnectionManager.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+        DaoOperationEvent event = new DaoOperationEvent("Supermarket", "insertSupermarket");
+        event.begin();
+        try {
+            TransientErrorRetry.execute("insertSupermarket", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
-            preparedStatement.setString(1, supermarket.getName());
-            preparedStatement.executeUpdate();
+                    preparedStatement.setString(1, supermarket.getName());
+                    preparedStatement.executeUpdate();
+                }
+                return null;
+            });
             logger.info("Supermarket '{}' insertado con exito.", supermarket.getName());
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al ejecutar la consulta para insertar supermarket: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
 
         logger.info("Finalizacion de insertSupermarket.");
     }
 
+    /**
+     * Inserta el supermercado si no existe ninguno con el mismo nombre, en una única sentencia.
+     * Si ya existe, se devuelve su ID sin modificarlo.
+     *
+     * @param supermarket Supermercado a guardar; se le asigna el ID resultante.
+     * @return El ID de la fila y si se ha creado.
+     * @throws SQLException Si ocurre un error en la consulta a la base de datos.
+     */
+    public UpsertResult upsertSupermarket(Supermarket supermarket) throws SQLException {
+        String query = "INSERT INTO supermarkets (name) VALUES (?) "
+                + "ON DUPLICATE KEY UPDATE id = LAST_INSERT_ID(id)";
+
+        logger.info("Inicio de upsertSupermarket: Ejecutando consulta para insertar o actualizar supermarket {}", supermarket);
+
+        UpsertResult result;
+        DaoOperationEvent event = new DaoOperationEvent("Supermarket", "upsertSupermarket");
+        event.begin();
+        try {
+            result = TransientErrorRetry.execute("upsertSupermarket", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query, Statement.RETURN_GENERATED_KEYS)) {
+
+                    preparedStatement.setString(1, supermarket.getName());
+                    return UpsertResult.of(preparedStatement, preparedStatement.executeUpdate());
+                }
+            });
+            supermarket.setId(result.getId());
+            logger.info("Supermarket {} {} con exito", supermarket, result.isCreated() ? "insertado" : "existente");
+            event.rows = 1;
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al ejecutar la consulta para insertar o actualizar supermarket: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalizacion de upsertSupermarket.");
+        return result;
+    }
+
     /**
      * Actualiza un supermercado existente en la base de datos.
      *
@@ -79,16 +137,26 @@ public class SupermarketDAOImpl implements SupermarketDAO {
 
         logger.info("Inicio de updateSupermarket: Ejecutando consulta para actualizar supermarket {}", supermarket);
 
-        try (Connection connection = DatabaseConnectionManager.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+        DaoOperationEvent event = new DaoOperationEvent("Supermarket", "updateSupermarket");
+        event.begin();
+        try {
+            TransientErrorRetry.execute("updateSupermarket", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
-            preparedStatement.setString(1, supermarket.getName());
-            preparedStatement.setInt(2, supermarket.getId());
-            preparedStatement.executeUpdate();
+                    preparedStatement.setString(1, supermarket.getName());
+                    preparedStatement.setInt(2, supermarket.getId());
+                    preparedStatement.executeUpdate();
+                }
+                return null;
+            });
             logger.info("Supermarket '{}' actualizado con exito.", supermarket.getName());
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al ejecutar la consulta para actualizar supermarket: {}", e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
 
         logger.info("Finalizacion de updateSupermarket.");
@@ -105,20 +173,125 @@ public class SupermarketDAOImpl implements SupermarketDAO {
 
         logger.info("Inicio de deleteSupermarket: Ejecutando consulta para eliminar supermarket con ID {}", id);
 
-        try (Connection connection = DatabaseConnectionManager.getConnection();
-             PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+        DaoOperationEvent event = new DaoOperationEvent("Supermarket", "deleteSupermarket");
+        event.begin();
+        try {
+            TransientErrorRetry.execute("deleteSupermarket", () -> {
+                try (Connection connection = DatabaseConnectionManager.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
-            preparedStatement.setInt(1, id);
-            preparedStatement.executeUpdate();
+                    preparedStatement.setInt(1, id);
+                    preparedStatement.executeUpdate();
+                }
+                return null;
+            });
             logger.info("Supermarket con ID {} eliminado con exito.", id);
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al ejecutar la consulta para eliminar supermarket con ID {}: {}", id, e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
 
         logger.info("Finalizacion de deleteSupermarket.");
     }
 
+    /**
+     * Inserta varios supermercados en una sola transacción usando un lote JDBC.
+     * Si alguno falla no se inserta ninguno.
+     *
+     * @param supermarkets Lista de supermercados a insertar. Se les asigna el ID generado.
+     * @return Los IDs generados, en el mismo orden que la lista.
+     * @throws SQLException Si ocurre un error en la inserción a la base de datos.
+     */
+    public int[] insertSupermarkets(List<Supermarket> supermarkets) throws SQLException {
+        String query = "INSERT INTO supermarkets (name) VALUES (?)";
+
+        logger.info("Inicio de insertSupermarkets: Ejecutando lote para insertar {} supermercados", supermarkets.size());
+
+        int[] ids;
+        DaoOperationEvent event = new DaoOperationEvent("Supermarket", "insertSupermarkets");
+        event.begin();
+        try {
+            ids = BatchSupport.insertBatch(query, supermarkets, (statement, supermarket) -> {
+                statement.setString(1, supermarket.getName());
+            });
+            for (int i = 0; i < ids.length; i++) {
+                supermarkets.get(i).setId(ids[i]);
+            }
+            logger.info("Lote ejecutado con exito");
+            event.rows = ids.length;
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al ejecutar el lote para insertar supermercados: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalizacion de insertSupermarkets");
+        return ids;
+    }
+
+    /**
+     * Actualiza varios supermercados en una sola transacción usando un lote JDBC.
+     * Si alguno falla no se actualiza ninguno.
+     *
+     * @param supermarkets Lista de supermercados con los nuevos datos.
+     * @throws SQLException Si ocurre un error en la actualización a la base de datos.
+     */
+    public void updateSupermarkets(List<Supermarket> supermarkets) throws SQLException {
+        String query = "UPDATE supermarkets SET name = ? WHERE id = ?";
+
+        logger.info("Inicio de updateSupermarkets: Ejecutando lote para actualizar {} supermercados", supermarkets.size());
+
+        DaoOperationEvent event = new DaoOperationEvent("Supermarket", "updateSupermarkets");
+        event.begin();
+        try {
+            BatchSupport.updateBatch(query, supermarkets, (statement, supermarket) -> {
+                statement.setString(1, supermarket.getName());
+                statement.setInt(2, supermarket.getId());
+            });
+            logger.info("Lote ejecutado con exito");
+            event.rows = supermarkets.size();
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al ejecutar el lote para actualizar supermercados: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalizacion de updateSupermarkets");
+    }
+
+    /**
+     * Elimina varios supermercados en una sola transacción.
+     *
+     * @param ids IDs de los supermercados a eliminar.
+     * @return Número de supermercados eliminados.
+     * @throws SQLException Si ocurre un error en la eliminación a la base de datos.
+     */
+    public int deleteSupermarkets(int[] ids) throws SQLException {
+        logger.info("Inicio de deleteSupermarkets: Eliminando {} supermercados", ids.length);
+
+        int deleted;
+        DaoOperationEvent event = new DaoOperationEvent("Supermarket", "deleteSupermarkets");
+        event.begin();
+        try {
+            deleted = BatchSupport.deleteByIds("supermarkets", ids);
+            logger.info("{} supermercados eliminados con exito", deleted);
+            event.rows = deleted;
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al eliminar supermercados: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+        logger.info("Finalizacion de deleteSupermarkets");
+        return deleted;
+    }
+
     /**
      * Obtiene un supermercado por su ID de la base de datos.
      *
@@ -132,6 +305,8 @@ public class SupermarketDAOImpl implements SupermarketDAO {
 
         logger.info("Inicio de getSupermarketById: Ejecutando consulta para obtener supermarket con ID {}", id);
 
+        DaoOperationEvent event = new DaoOperationEvent("Supermarket", "getSupermarketById");
+        event.begin();
         try (Connection connection = DatabaseConnectionManager.getConnection();
              PreparedStatement preparedStatement = connection.prepareStatement(query)) {
 
@@ -145,13 +320,73 @@ public class SupermarketDAOImpl implements SupermarketDAO {
             } else {
                 logger.warn("No se encontro ningun supermarket con ID {}", id);
             }
+            event.rows = supermarket != null ? 1 : 0;
         } catch (SQLException e) {
+            event.failed = true;
             logger.error("Error al obtener la supermarket con ID {}: {}", id, e.getMessage(), e);
             throw e;
+        } finally {
+            event.commit();
         }
 
         logger.info("Finalizacion de getSupermarketById.");
         return supermarket;
     }
 
+    /**
+     * Obtiene varios supermercados por sus IDs. Los IDs se reparten en listas IN (...) acotadas,
+     * de modo que se hace una consulta por cada bloque en lugar de una por supermercado.
+     *
+     * @param ids Los IDs de los supermercados a buscar.
+     * @return Mapa de ID a supermercado; los IDs que no existen no aparecen en el mapa.
+     * @throws SQLException Si ocurre un error en la consulta a la base de datos.
+     */
+    public Map<Integer, Supermarket> getSupermarketsByIds(Collection<Integer> ids) throws SQLException {
+        Map<Integer, Supermarket> supermarkets = new HashMap<>();
+
+        logger.info("Inicio de getSupermarketsByIds: Ejecutando consulta para obtener {} supermercados", ids.size());
+
+        DaoOperationEvent event = new DaoOperationEvent("Supermarket", "getSupermarketsByIds");
+        event.begin();
+        try (Connection connection = DatabaseConnectionManager.getConnection()) {
+            for (List<Integer> chunk : BatchSupport.partitionIds(ids)) {
+                String query = "SELECT * FROM supermarkets WHERE id IN (" + BatchSupport.placeholders(chunk.size()) + ")";
+                try (PreparedStatement preparedStatement = connection.prepareStatement(query)) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        preparedStatement.setInt(i + 1, chunk.get(i));
+                    }
+                    try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                        while (resultSet.next()) {
+                            Supermarket supermarket = mapSupermarket(resultSet);
+                            supermarkets.put(supermarket.getId(), supermarket);
+                        }
+                    }
+                }
+            }
+            logger.info("Consulta ejecutada con exito: {} supermercados encontrados.", supermarkets.size());
+            event.rows = supermarkets.size();
+        } catch (SQLException e) {
+            event.failed = true;
+            logger.error("Error al obtener supermercados por IDs: {}", e.getMessage(), e);
+            throw e;
+        } finally {
+            event.commit();
+        }
+
+        logger.info("Finalizacion de getSupermarketsByIds.");
+        return supermarkets;
+    }
+
+    /**
+     * Construye un supermercado a partir de una fila de la tabla supermarkets.
+     *
+     * @param resultSet Resultado posicionado en la fila a leer.
+     * @return El supermercado leído.
+     * @throws SQLException Si no se puede leer alguna columna.
+     */
+    private Supermarket mapSupermarket(ResultSet resultSet) throws SQLException {
+        int id = resultSet.getInt("id");
+        String name = resultSet.getString("name");
+        return new Supermarket(id, name);
+    }
 }
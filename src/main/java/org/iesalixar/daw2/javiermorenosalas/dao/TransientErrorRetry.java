@@ -0,0 +1,168 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Reintentos de escrituras que fallan por errores transitorios de la base de datos: interbloqueos
+ * (1213) y esperas de bloqueo agotadas (1205).
+ *
+ * Solo se reintentan estos errores porque en ellos MariaDB garantiza que la sentencia o la
+ * transacción se ha deshecho, así que repetirla no aplica nada dos veces. Los errores de conexión
+ * no se reintentan: no se sabe si la escritura llegó a confirmarse.
+ *
+ * Tras un interbloqueo se deshace la transacción entera, por eso no se reintenta una sentencia
+ * suelta dentro de una {@link UnitOfWork} transaccional: se reintenta la unidad de trabajo completa
+ * desde fuera. Entre intentos se espera un tiempo aleatorio entre 0 y una espera exponencial
+ * acotada, para que las transacciones enfrentadas no vuelvan a coincidir.
+ *
+ * Lo usan todas las escrituras de los DAO: las de una sola fila (incluidos los upsert, que los
+ * procesos de sincronización llaman fuera de los servlets) y los lotes de {@link BatchSupport}.
+ */
+public final class TransientErrorRetry {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransientErrorRetry.class);
+
+    private static final int maxAttempts = Math.max(1, DatabaseConnectionManager.getIntProperty("DB_RETRY_MAX_ATTEMPTS", 3));
+    private static final long baseDelayMillis = DatabaseConnectionManager.getIntProperty("DB_RETRY_BASE_DELAY_MS", 20);
+    private static final long maxDelayMillis = DatabaseConnectionManager.getIntProperty("DB_RETRY_MAX_DELAY_MS", 500);
+
+    private static final AtomicLong retries = new AtomicLong();
+    private static final AtomicLong recovered = new AtomicLong();
+    private static final AtomicLong exhausted = new AtomicLong();
+
+    /**
+     * Operación que se puede repetir.
+     */
+    @FunctionalInterface
+    public interface Call<R> {
+        R call() throws SQLException;
+    }
+
+    private TransientErrorRetry() {}
+
+    /**
+     * Ejecuta la operación y la repite si falla por un error transitorio. Dentro de una unidad de
+     * trabajo transaccional se ejecuta una sola vez.
+     *
+     * @param operation Nombre de la operación (para trazas).
+     * @param call      Operación a ejecutar.
+     * @return El resultado de la operación.
+     * @throws SQLException El error de la operación si no es transitorio o se agotan los intentos.
+     */
+    public static <R> R execute(String operation, Call<R> call) throws SQLException {
+        UnitOfWork unitOfWork = UnitOfWork.current();
+        if (unitOfWork != null && unitOfWork.isTransactional()) {
+            return call.call();
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                R result = call.call();
+                if (attempt > 1) {
+                    recordRecovered(operation, attempt);
+                }
+                return result;
+            } catch (SQLException e) {
+                if (!shouldRetry(e, attempt) || !backoff(operation, attempt, e)) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Indica si hay que repetir una operación que ha fallado. Si el error es transitorio pero ya
+     * no quedan intentos, lo anota como agotado.
+     *
+     * @param failure Error de la operación; el error SQL puede venir como causa.
+     * @param attempt Número del intento que ha fallado, empezando en 1.
+     * @return true si el error es transitorio y quedan intentos.
+     */
+    public static boolean shouldRetry(Throwable failure, int attempt) {
+        if (!isTransient(failure)) {
+            return false;
+        }
+        if (attempt >= maxAttempts) {
+            exhausted.incrementAndGet();
+            logger.warn("Error transitorio tras {} intentos, no se reintenta: {}", attempt, failure.getMessage());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Espera antes del siguiente intento y lo anota.
+     *
+     * @param operation Nombre de la operación (para trazas).
+     * @param attempt   Número del intento que ha fallado, empezando en 1.
+     * @param failure   Error de la operación.
+     * @return false si el hilo se ha interrumpido durante la espera; en ese caso no hay que reintentar.
+     */
+    public static boolean backoff(String operation, int attempt, Throwable failure) {
+        long ceiling = Math.min(maxDelayMillis, baseDelayMillis << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(ceiling + 1);
+        retries.incrementAndGet();
+        logger.warn("Error transitorio en {} (intento {} de {}), se reintenta en {} ms: {}",
+                operation, attempt, maxAttempts, delay, failure.getMessage());
+        try {
+            Thread.sleep(delay);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Anota que una operación ha salido bien después de reintentarla.
+     *
+     * @param operation Nombre de la operación (para trazas).
+     * @param attempts  Intentos que ha necesitado.
+     */
+    public static void recordRecovered(String operation, int attempts) {
+        recovered.incrementAndGet();
+        logger.info("{} completada tras {} intentos.", operation, attempts);
+    }
+
+    /**
+     * @return true si el error, o alguna de sus causas, es un error SQL transitorio.
+     */
+    public static boolean isTransient(Throwable failure) {
+        for (Throwable current = failure; current != null; current = current.getCause()) {
+            if (current instanceof SQLException sqlException && SQLErrors.isTransient(sqlException)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * @return Reintentos hechos desde el arranque.
+     */
+    public static long getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * @return Operaciones que han salido bien después de reintentarlas.
+     */
+    public static long getRecovered() {
+        return recovered.get();
+    }
+
+    /**
+     * @return Operaciones que han fallado por un error transitorio tras agotar los intentos.
+     */
+    public static long getExhausted() {
+        return exhausted.get();
+    }
+}
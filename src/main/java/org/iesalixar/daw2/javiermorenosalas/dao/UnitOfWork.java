@@ -0,0 +1,243 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Unidad de trabajo asociada al hilo actual.
+ *
+ * Mientras está activa, {@link DatabaseConnectionManager#getConnection()} devuelve siempre la
+ * misma conexión, que se toma del pool la primera vez que un DAO la pide. Así todas las llamadas
+ * a DAO de una petición comparten conexión.
+ *
+ * Si la unidad es transaccional, todas las operaciones forman una única transacción que se
+ * confirma en {@link #commit()}; los {@code commit()}, {@code rollback()} y
+ * {@code setAutoCommit()} que hagan los DAO se ignoran porque se unen a la transacción exterior,
+ * y {@code getAutoCommit()} devuelve {@code false}, que es el estado real de la conexión.
+ * Si no lo es, cada sentencia se confirma por sí sola como fuera de la unidad de trabajo.
+ */
+public final class UnitOfWork implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(UnitOfWork.class);
+
+    private static final ThreadLocal<UnitOfWork> current = new ThreadLocal<>();
+
+    private final boolean transactional;
+    private Connection connection;
+    private Connection sharedView;
+    private final List<Runnable> afterCompletion = new ArrayList<>();
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private boolean committed;
+
+    private UnitOfWork(boolean transactional, Connection connection) {
+        this.transactional = transactional;
+        this.connection = connection;
+    }
+
+    /**
+     * Inicia una unidad de trabajo en el hilo actual.
+     *
+     * @param transactional Si todas las operaciones deben ir en una única transacción.
+     * @return La unidad de trabajo; debe cerrarse al terminar.
+     * @throws IllegalStateException Si ya hay una unidad de trabajo activa en el hilo.
+     */
+    public static UnitOfWork begin(boolean transactional) {
+        return begin(transactional, null);
+    }
+
+    /**
+     * Inicia una unidad de trabajo en el hilo actual que usa la conexión indicada en lugar de
+     * tomar una del pool. La conexión se cierra al cerrar la unidad. Permite ejecutar los DAO
+     * contra una conexión simulada, como hacen las pruebas de rendimiento.
+     *
+     * @param transactional Si todas las operaciones deben ir en una única transacción.
+     * @param connection    Conexión a usar, o null para tomarla del pool cuando se necesite.
+     * @return La unidad de trabajo; debe cerrarse al terminar.
+     * @throws IllegalStateException Si ya hay una unidad de trabajo activa en el hilo.
+     */
+    static UnitOfWork begin(boolean transactional, Connection connection) {
+        if (current.get() != null) {
+            throw new IllegalStateException("Ya hay una unidad de trabajo activa en este hilo.");
+        }
+        UnitOfWork unitOfWork = new UnitOfWork(transactional, connection);
+        current.set(unitOfWork);
+        return unitOfWork;
+    }
+
+    /**
+     * @return La unidad de trabajo activa en el hilo actual, o null si no hay ninguna.
+     */
+    public static UnitOfWork current() {
+        return current.get();
+    }
+
+    /**
+     * @return true si todas las operaciones van en una única transacción.
+     */
+    public boolean isTransactional() {
+        return transactional;
+    }
+
+    /**
+     * Devuelve la conexión de la unidad de trabajo, tomándola del pool si es la primera vez.
+     * Cerrar la conexión devuelta no la devuelve al pool; eso ocurre en {@link #close()}.
+     *
+     * @return La conexión compartida.
+     */
+    Connection getConnection() {
+        if (sharedView == null) {
+            if (connection == null) {
+                connection = DatabaseConnectionManager.acquireConnection();
+            }
+            try {
+                if (transactional) {
+                    connection.setAutoCommit(false);
+                }
+            } catch (SQLException e) {
+                throw new RuntimeException("No se pudo iniciar la transacción.", e);
+            }
+            sharedView = (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new SharedConnectionHandler(connection));
+        }
+        return sharedView;
+    }
+
+    /**
+     * Registra una acción que se ejecuta al cerrar la unidad de trabajo, cuando la transacción
+     * ya se ha confirmado o deshecho (por ejemplo, vaciar una caché).
+     *
+     * @param action Acción a ejecutar.
+     */
+    public void afterCompletion(Runnable action) {
+        afterCompletion.add(action);
+    }
+
+    /**
+     * Registra una acción que se ejecuta al cerrar la unidad de trabajo solo si la transacción se
+     * ha confirmado (por ejemplo, reflejar en memoria una escritura). Si la unidad no es
+     * transaccional, la escritura ya está confirmada y la acción se ejecuta en el momento.
+     *
+     * @param action Acción a ejecutar.
+     */
+    public void afterCommit(Runnable action) {
+        if (transactional) {
+            afterCommit.add(action);
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Confirma la transacción, si la unidad es transaccional y se llegó a usar la conexión.
+     *
+     * @throws SQLException Si falla la confirmación.
+     */
+    public void commit() throws SQLException {
+        if (transactional && sharedView != null) {
+            connection.commit();
+            logger.debug("Unidad de trabajo confirmada.");
+        }
+        committed = true;
+    }
+
+    /**
+     * Deshace la transacción, si la unidad es transaccional y se llegó a usar la conexión.
+     */
+    public void rollback() {
+        if (transactional && sharedView != null) {
+            try {
+                connection.rollback();
+                logger.debug("Unidad de trabajo deshecha.");
+            } catch (SQLException e) {
+                logger.error("Error al deshacer la unidad de trabajo: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Termina la unidad de trabajo y devuelve la conexión al pool. Lo que no se haya confirmado
+     * se deshace.
+     */
+    @Override
+    public void close() {
+        current.remove();
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.warn("Error al devolver la conexión de la unidad de trabajo: {}", e.getMessage());
+            }
+            connection = null;
+            sharedView = null;
+        }
+        if (committed) {
+            runAll(afterCommit);
+        }
+        runAll(afterCompletion);
+    }
+
+    private static void runAll(List<Runnable> actions) {
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                logger.warn("Error en una acción al cerrar la unidad de trabajo: {}", e.getMessage(), e);
+            }
+        }
+        actions.clear();
+    }
+
+    /**
+     * Conexión que ven los DAO dentro de la unidad de trabajo: su {@code close()} no hace nada y,
+     * en modo transaccional, no pueden confirmar ni deshacer por su cuenta.
+     */
+    private final class SharedConnectionHandler implements InvocationHandler {
+
+        private final Connection target;
+
+        private SharedConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    // Fuera de una transacción, se deja la conexión en autocommit para la siguiente llamada
+                    if (!transactional && !target.getAutoCommit()) {
+                        target.setAutoCommit(true);
+                    }
+                    return null;
+                case "commit":
+                case "rollback":
+                case "setAutoCommit":
+                    if (transactional) {
+                        return null;
+                    }
+                    break;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                default:
+                    break;
+            }
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Resultado de un upsert ({@code INSERT ... ON DUPLICATE KEY UPDATE}): el ID de la fila y si se
+ * ha creado o ya existía.
+ */
+public final class UpsertResult {
+
+    private final int id;
+    private final boolean created;
+
+    public UpsertResult(int id, boolean created) {
+        this.id = id;
+        this.created = created;
+    }
+
+    /**
+     * @return ID de la fila creada o actualizada.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * @return true si la fila no existía y se ha insertado.
+     */
+    public boolean isCreated() {
+        return created;
+    }
+
+    /**
+     * Construye el resultado a partir de una sentencia upsert ya ejecutada.
+     *
+     * La sentencia debe prepararse con {@code RETURN_GENERATED_KEYS} e incluir
+     * {@code id = LAST_INSERT_ID(id)} en la parte UPDATE, para que el ID devuelto sea también el de
+     * la fila existente. Con {@code useAffectedRows=true}, que activa el pool, MariaDB devuelve 1 si
+     * ha insertado la fila, 2 si la ha modificado y 0 si ya tenía esos valores.
+     *
+     * @param statement    Sentencia ejecutada.
+     * @param affectedRows Valor devuelto por {@code executeUpdate()}.
+     * @return El resultado del upsert.
+     * @throws SQLException Si no se puede leer el ID generado.
+     */
+    static UpsertResult of(PreparedStatement statement, int affectedRows) throws SQLException {
+        try (ResultSet keys = statement.getGeneratedKeys()) {
+            if (!keys.next()) {
+                throw new SQLException("El upsert no ha devuelto el ID de la fila.");
+            }
+            return new UpsertResult(keys.getInt(1), affectedRows == 1);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "UpsertResult(id=" + id + ", created=" + created + ")";
+    }
+}
@@ -0,0 +1,169 @@
+package org.iesalixar.daw2.javiermorenosalas.filters;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Compartimento con un número máximo de peticiones simultáneas y una cola de espera acotada.
+ *
+ * Una petición entra si hay hueco ({@link #tryAcquire()}); si no, puede ponerse en la cola
+ * ({@link #enqueue(Runnable)}) siempre que no esté llena. La espera no ocupa ningún hilo: al quedar
+ * un hueco libre, {@link #release()} se lo pasa a la primera petición de la cola ejecutando su
+ * acción de entrada. Quien encola la petición se encarga de limitar la espera a
+ * {@link #getMaxWaitMillis()} y de sacarla de la cola con {@link #cancel(Runnable)} si se agota.
+ */
+public class Bulkhead {
+
+    private final String name;
+    private final int maxConcurrent;
+    private final int maxQueued;
+    private final long maxWaitMillis;
+
+    // Protege active y waiting
+    private final Object lock = new Object();
+    private int active;
+    private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param name          Nombre del compartimento (para trazas y métricas).
+     * @param maxConcurrent Peticiones que pueden ejecutarse a la vez.
+     * @param maxQueued     Peticiones que pueden esperar turno.
+     * @param maxWaitMillis Tiempo máximo de espera en la cola.
+     */
+    public Bulkhead(String name, int maxConcurrent, int maxQueued, long maxWaitMillis) {
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxQueued = maxQueued;
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Intenta entrar en el compartimento sin esperar. Si devuelve true, hay que llamar a
+     * {@link #release()} al terminar.
+     *
+     * @return true si la petición puede ejecutarse ya.
+     */
+    public boolean tryAcquire() {
+        synchronized (lock) {
+            // Los huecos libres se reparten primero a la cola
+            if (active >= maxConcurrent || !waiting.isEmpty()) {
+                return false;
+            }
+            active++;
+        }
+        admitted.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Pone una petición en la cola. Cuando le llegue el turno se ejecuta {@code onAdmitted} (en el
+     * hilo que libera el hueco) y a partir de ese momento hay que llamar a {@link #release()} al
+     * terminar.
+     *
+     * @param onAdmitted Acción que deja continuar a la petición.
+     * @return false si la cola está llena y la petición se rechaza.
+     */
+    public boolean enqueue(Runnable onAdmitted) {
+        synchronized (lock) {
+            if (active < maxConcurrent && waiting.isEmpty()) {
+                active++;
+            } else if (waiting.size() >= maxQueued) {
+                rejected.incrementAndGet();
+                return false;
+            } else {
+                waiting.add(onAdmitted);
+                return true;
+            }
+        }
+        // Se liberó un hueco entre tryAcquire y enqueue
+        admitted.incrementAndGet();
+        onAdmitted.run();
+        return true;
+    }
+
+    /**
+     * Saca de la cola una petición que ha agotado su espera y la cuenta como rechazada.
+     *
+     * @param onAdmitted La acción con la que se encoló.
+     * @return true si seguía en la cola; false si ya había entrado.
+     */
+    public boolean cancel(Runnable onAdmitted) {
+        synchronized (lock) {
+            if (!waiting.remove(onAdmitted)) {
+                return false;
+            }
+        }
+        rejected.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Cuenta como rechazada una petición que no llega a encolarse.
+     */
+    public void reject() {
+        rejected.incrementAndGet();
+    }
+
+    /**
+     * Deja libre el hueco ocupado por una petición admitida o se lo pasa a la primera de la cola.
+     */
+    public void release() {
+        Runnable next;
+        synchronized (lock) {
+            next = waiting.poll();
+            if (next == null) {
+                active--;
+                return;
+            }
+        }
+        admitted.incrementAndGet();
+        next.run();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * @return Peticiones ejecutándose ahora.
+     */
+    public int getActive() {
+        synchronized (lock) {
+            return active;
+        }
+    }
+
+    /**
+     * @return Peticiones esperando turno ahora.
+     */
+    public int getQueued() {
+        synchronized (lock) {
+            return waiting.size();
+        }
+    }
+
+    /**
+     * @return Total de peticiones admitidas desde el arranque.
+     */
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    /**
+     * @return Total de peticiones rechazadas desde el arranque.
+     */
+    public long getRejected() {
+        return rejected.get();
+    }
+}
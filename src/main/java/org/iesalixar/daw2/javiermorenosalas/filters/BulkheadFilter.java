@@ -0,0 +1,251 @@
+package org.iesalixar.daw2.javiermorenosalas.filters;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.iesalixar.daw2.javiermorenosalas.dao.DatabaseConnectionManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+
+/**
+ * Filtro de control de admisión para los servlets que acceden a la base de datos.
+ *
+ * Las lecturas (listar, formularios de alta y edición, exportar) y las escrituras (insertar,
+ * actualizar, eliminar, importar) van a compartimentos separados, cada uno con su límite de
+ * peticiones simultáneas y su cola de espera acotada. Así una avalancha de lecturas no deja sin
+ * hueco a las escrituras ni al revés. Si no hay hueco, se responde 503 con {@code Retry-After}
+ * en lugar de acumular peticiones sobre el pool de conexiones.
+ *
+ * Las peticiones que esperan turno no ocupan un hilo del contenedor: el filtro pasa la petición a
+ * modo asíncrono con un tiempo límite de {@code BULKHEAD_MAX_WAIT_MS} y la deja en la cola. Al
+ * quedar un hueco libre la petición vuelve a entrar con {@link AsyncContext#dispatch()} y
+ * continúa la cadena; si antes se agota el tiempo, se responde 503. Por eso el filtro se aplica
+ * también a los reenvíos {@link DispatcherType#ASYNC} (ver {@code web.xml}).
+ *
+ * En las peticiones asíncronas el hueco se libera cuando la petición termina, no cuando el
+ * filtro devuelve el control. En las que esperaban turno, el escuchador que lo libera se registra
+ * al darles el hueco, antes del reenvío: si la petición falla o el cliente se desconecta antes de
+ * volver a entrar, el hueco también se libera.
+ */
+public class BulkheadFilter extends HttpFilter {
+
+
+    // Logger para trazar eventos usando SLF4J
+    private static final Logger logger = LoggerFactory.getLogger(BulkheadFilter.class);
+
+    // Atributo con el hueco concedido a una petición que esperaba en la cola
+    private static final String ADMITTED_ATTRIBUTE = BulkheadFilter.class.getName() + ".admitted";
+
+    // Segundos que se indican al cliente para reintentar cuando se rechaza una petición
+    private static final String RETRY_AFTER_SECONDS = "2";
+
+    private static final long maxWaitMillis = DatabaseConnectionManager.getIntProperty("BULKHEAD_MAX_WAIT_MS", 1000);
+
+    private static final Bulkhead readBulkhead = new Bulkhead("read",
+            DatabaseConnectionManager.getIntProperty("BULKHEAD_READ_LIMIT", 20),
+            DatabaseConnectionManager.getIntProperty("BULKHEAD_READ_QUEUE", 50),
+            maxWaitMillis);
+
+    private static final Bulkhead writeBulkhead = new Bulkhead("write",
+            DatabaseConnectionManager.getIntProperty("BULKHEAD_WRITE_LIMIT", 5),
+            DatabaseConnectionManager.getIntProperty("BULKHEAD_WRITE_QUEUE", 20),
+            maxWaitMillis);
+
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        if (request.getDispatcherType() == DispatcherType.ASYNC) {
+            // Vuelve una petición que esperaba en la cola y ya tiene hueco
+            Release admitted = (Release) request.getAttribute(ADMITTED_ATTRIBUTE);
+            if (admitted == null) {
+                chain.doFilter(request, response);
+            } else {
+                request.removeAttribute(ADMITTED_ATTRIBUTE);
+                proceed(admitted, request, response, chain);
+            }
+            return;
+        }
+
+        Bulkhead bulkhead = isWrite(request) ? writeBulkhead : readBulkhead;
+        if (bulkhead.tryAcquire()) {
+            proceed(new Release(bulkhead), request, response, chain);
+        } else if (request.isAsyncSupported()) {
+            enqueue(bulkhead, request, response);
+        } else {
+            bulkhead.reject();
+            reject(bulkhead, request, response);
+        }
+    }
+
+    /**
+     * Ejecuta la petición admitida y libera su hueco al terminar.
+     */
+    private static void proceed(Release release, HttpServletRequest request, HttpServletResponse response,
+                                FilterChain chain) throws IOException, ServletException {
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new ReleaseOnCompletion(release));
+            } else {
+                release.run();
+            }
+        }
+    }
+
+    /**
+     * Deja la petición esperando turno en modo asíncrono, sin ocupar el hilo del contenedor.
+     */
+    private static void enqueue(Bulkhead bulkhead, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(bulkhead.getMaxWaitMillis());
+        Runnable onAdmitted = () -> {
+            Release release = new Release(bulkhead);
+            try {
+                // Desde aquí el hueco es de la petición, aunque termine antes de volver a entrar
+                asyncContext.addListener(new ReleaseOnCompletion(release));
+                request.setAttribute(ADMITTED_ATTRIBUTE, release);
+                asyncContext.dispatch();
+            } catch (IllegalStateException e) {
+                // La petición ya había terminado: el hueco pasa a la siguiente
+                logger.warn("No se pudo reanudar la petición en espera: {}", e.getMessage());
+                release.run();
+            }
+        };
+        asyncContext.addListener(new RejectOnTimeout(bulkhead, onAdmitted));
+        if (!bulkhead.enqueue(onAdmitted)) {
+            reject(bulkhead, request, response);
+            asyncContext.complete();
+        }
+    }
+
+    private static void reject(Bulkhead bulkhead, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        logger.warn("Petición rechazada por el compartimento {}: {} {} ({} activas, {} en cola)",
+                bulkhead.getName(), request.getMethod(), request.getRequestURI(),
+                bulkhead.getActive(), bulkhead.getQueued());
+        response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+        response.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+    }
+
+    /**
+     * @return Los compartimentos de lectura y escritura, para consultar sus estadísticas.
+     */
+    public static List<Bulkhead> getBulkheads() {
+        return List.of(readBulkhead, writeBulkhead);
+    }
+
+    /**
+     * Clasifica solo por el método HTTP: todo lo que no es GET ni HEAD (los POST de insertar,
+     * actualizar, eliminar e importar) va al compartimento de escritura.
+     */
+    private static boolean isWrite(HttpServletRequest request) {
+        return !"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod());
+    }
+
+
+    /**
+     * Hueco concedido a una petición. Se puede liberar desde varios sitios (al terminar la cadena,
+     * al completar o fallar la petición asíncrona, si no se puede reanudar), pero solo cuenta una vez.
+     */
+    private static final class Release implements Runnable {
+
+        private final Bulkhead bulkhead;
+        private final AtomicBoolean released = new AtomicBoolean(false);
+
+        private Release(Bulkhead bulkhead) {
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public void run() {
+            if (released.compareAndSet(false, true)) {
+                bulkhead.release();
+            }
+        }
+    }
+
+
+    /**
+     * Libera el hueco del compartimento cuando termina una petición asíncrona.
+     */
+    private static final class ReleaseOnCompletion implements AsyncListener {
+
+        private final Release release;
+
+        private ReleaseOnCompletion(Release release) {
+            this.release = release;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release.run();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Un nuevo ciclo asíncrono descarta los escuchadores anteriores
+            event.getAsyncContext().addListener(this, event.getSuppliedRequest(), event.getSuppliedResponse());
+        }
+    }
+
+
+    /**
+     * Responde 503 si la petición agota su espera en la cola.
+     */
+    private static final class RejectOnTimeout implements AsyncListener {
+
+        private final Bulkhead bulkhead;
+        private final Runnable onAdmitted;
+
+        private RejectOnTimeout(Bulkhead bulkhead, Runnable onAdmitted) {
+            this.bulkhead = bulkhead;
+            this.onAdmitted = onAdmitted;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            // Si ya había entrado, el reenvío está en marcha
+            if (bulkhead.cancel(onAdmitted)) {
+                reject(bulkhead, (HttpServletRequest) event.getSuppliedRequest(),
+                        (HttpServletResponse) event.getSuppliedResponse());
+                event.getAsyncContext().complete();
+            }
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            bulkhead.cancel(onAdmitted);
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package org.iesalixar.daw2.javiermorenosalas.filters;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletMapping;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.iesalixar.daw2.javiermorenosalas.metrics.MetricsRegistry;
+import org.iesalixar.daw2.javiermorenosalas.metrics.MetricsRegistry.ActionMetrics;
+import org.iesalixar.daw2.javiermorenosalas.metrics.ServletActionEvent;
+
+import java.io.IOException;
+
+
+/**
+ * Filtro que mide todas las peticiones y las anota en el {@link MetricsRegistry}, agrupadas por
+ * servlet (el patrón con el que se ha resuelto la petición, sin la barra inicial) y por el
+ * parámetro {@code action}.
+ *
+ * En las peticiones asíncronas la duración y el código de estado se anotan cuando la petición
+ * termina, no cuando el filtro devuelve el control. Las peticiones a {@code /metrics} no se miden.
+ *
+ * Las peticiones síncronas generan además un {@link ServletActionEvent} de JFR; las asíncronas lo
+ * generan en el hilo que las procesa (ver {@code AsyncDatabaseServlet}).
+ *
+ * En las peticiones síncronas el filtro no reserva memoria salvo que la grabación de JFR pida el
+ * evento; en las asíncronas reserva solo el escuchador que anota la petición al terminar.
+ *
+ * Es el primer filtro de la cadena (ver {@code web.xml}), así que la duración incluye la espera en
+ * el {@link BulkheadFilter} y también se miden las peticiones que este rechaza.
+ */
+public class MetricsFilter extends HttpFilter {
+
+
+    private static final String METRICS_PATTERN = "/metrics";
+
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        HttpServletMapping mapping = request.getHttpServletMapping();
+        if (METRICS_PATTERN.equals(mapping.getPattern())) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        ActionMetrics metrics = MetricsRegistry.forAction(MetricsRegistry.servletName(mapping.getPattern()), actionOf(request));
+        ServletActionEvent event = ServletActionEvent.beginIfEnabled(request);
+        long start = System.nanoTime();
+        MetricsRegistry.requestStarted();
+        boolean failed = true;
+        try {
+            chain.doFilter(request, response);
+            failed = false;
+        } finally {
+            if (request.isAsyncStarted()) {
+                // El evento de JFR no se guarda: AsyncDatabaseServlet emite el suyo en el hilo que
+                // atiende la acción, y este solo mediría el arranque de la petición
+                request.getAsyncContext().addListener(new RecordOnCompletion(metrics, start));
+            } else {
+                MetricsRegistry.requestFinished();
+                // Si el servlet lanza una excepción, el contenedor responderá 500
+                int status = failed ? HttpServletResponse.SC_INTERNAL_SERVER_ERROR : response.getStatus();
+                metrics.record(System.nanoTime() - start, status);
+                if (event != null) {
+                    event.end(status);
+                }
+            }
+        }
+    }
+
+    /**
+     * En los formularios multipart no se lee el parámetro para no procesar el cuerpo antes que el servlet.
+     */
+    private static String actionOf(HttpServletRequest request) {
+        String contentType = request.getContentType();
+        if (contentType != null && contentType.startsWith("multipart/")) {
+            return null;
+        }
+        return request.getParameter("action");
+    }
+
+
+    /**
+     * Anota la petición asíncrona cuando termina.
+     */
+    private static final class RecordOnCompletion implements AsyncListener {
+
+        private final ActionMetrics metrics;
+        private final long start;
+
+        private RecordOnCompletion(ActionMetrics metrics, long start) {
+            this.metrics = metrics;
+            this.start = start;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            MetricsRegistry.requestFinished();
+            HttpServletResponse response = (HttpServletResponse) event.getSuppliedResponse();
+            metrics.record(System.nanoTime() - start, response.getStatus());
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Un nuevo ciclo asíncrono (la petición esperó en el BulkheadFilter) descarta los escuchadores anteriores
+            event.getAsyncContext().addListener(this, event.getSuppliedRequest(), event.getSuppliedResponse());
+        }
+    }
+}
@@ -0,0 +1,232 @@
+package org.iesalixar.daw2.javiermorenosalas.filters;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpFilter;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.iesalixar.daw2.javiermorenosalas.dao.DatabaseConnectionManager;
+import org.iesalixar.daw2.javiermorenosalas.metrics.RequestTiming;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Locale;
+
+
+/**
+ * Filtro que desglosa el tiempo de cada petición a los servlets CRUD en base de datos,
+ * renderizado de la JSP y total, y cuenta las sentencias SQL ejecutadas.
+ *
+ * El desglose se envía en la cabecera {@code Server-Timing}, que las herramientas de desarrollo
+ * del navegador muestran junto a la petición, y en una traza por petición. Si una petición ejecuta
+ * más de {@code SERVER_TIMING_QUERY_WARN} sentencias, la traza se escribe como aviso: suele ser
+ * señal de consultas N+1.
+ *
+ * La cabecera se escribe justo antes de que la respuesta pueda enviarse: al redirigir, al
+ * responder con un error y antes y después de reenviar a la JSP. Si la JSP llena el búfer de la
+ * respuesta, la cabecera se queda con los tiempos anteriores al renderizado.
+ *
+ * En las peticiones asíncronas la JSP se renderiza después, al reenviar la petición, cuando la
+ * cabecera ya no puede cambiar sin retener toda la respuesta. Por eso en ellas la cabecera solo
+ * lleva el tiempo de base de datos, y el renderizado (desde que el servlet entrega la vista hasta
+ * que la petición termina) y el total aparecen solo en la traza.
+ *
+ * Va detrás del {@link BulkheadFilter} (ver {@code web.xml}): mide solo las peticiones admitidas y,
+ * en las que esperaron en la cola, desde que les llega el turno.
+ */
+public class ServerTimingFilter extends HttpFilter {
+
+
+    // Logger para trazar eventos usando SLF4J
+    private static final Logger logger = LoggerFactory.getLogger(ServerTimingFilter.class);
+
+    private static final String SERVER_TIMING = "Server-Timing";
+
+    private static final int queryWarnThreshold = DatabaseConnectionManager.getIntProperty("SERVER_TIMING_QUERY_WARN", 20);
+
+
+    @Override
+    protected void doFilter(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws IOException, ServletException {
+        RequestTiming timing = new RequestTiming();
+        TimingResponse timingResponse = new TimingResponse(response, timing);
+        TimingRequest timingRequest = new TimingRequest(request, timing);
+
+        RequestTiming previous = RequestTiming.bind(timing);
+        try {
+            chain.doFilter(timingRequest, timingResponse);
+        } finally {
+            RequestTiming.restore(previous);
+            if (request.isAsyncStarted()) {
+                request.getAsyncContext().addListener(new LogOnCompletion(request, response, timing));
+            } else {
+                timingResponse.writeHeader();
+                log(request, response, timing);
+            }
+        }
+    }
+
+    private static void log(HttpServletRequest request, HttpServletResponse response, RequestTiming timing) {
+        String line = String.format(Locale.ROOT,
+                "method=%s uri=%s action=%s status=%d total_ms=%.2f db_ms=%.2f render_ms=%.2f queries=%d",
+                request.getMethod(), request.getRequestURI(), request.getParameter("action"), response.getStatus(),
+                timing.getTotalMillis(), timing.getDatabaseMillis(), timing.getRenderMillis(), timing.getQueries());
+        if (timing.getQueries() > queryWarnThreshold) {
+            logger.warn("Tiempos de la petición (demasiadas sentencias): {}", line);
+        } else {
+            logger.info("Tiempos de la petición: {}", line);
+        }
+    }
+
+
+    /**
+     * Respuesta que escribe la cabecera {@code Server-Timing} antes de redirigir o enviar un error.
+     */
+    private static final class TimingResponse extends HttpServletResponseWrapper {
+
+        private final RequestTiming timing;
+
+        private TimingResponse(HttpServletResponse response, RequestTiming timing) {
+            super(response);
+            this.timing = timing;
+        }
+
+        @Override
+        public void sendRedirect(String location) throws IOException {
+            writeHeader();
+            super.sendRedirect(location);
+        }
+
+        @Override
+        public void sendError(int status) throws IOException {
+            writeHeader();
+            super.sendError(status);
+        }
+
+        @Override
+        public void sendError(int status, String message) throws IOException {
+            writeHeader();
+            super.sendError(status, message);
+        }
+
+        private void writeHeader() {
+            if (!isCommitted()) {
+                setHeader(SERVER_TIMING, timing.toServerTiming());
+            }
+        }
+    }
+
+
+    /**
+     * Petición cuyos {@link RequestDispatcher} miden el tiempo de renderizado.
+     */
+    private static final class TimingRequest extends HttpServletRequestWrapper {
+
+        private final RequestTiming timing;
+
+        private TimingRequest(HttpServletRequest request, RequestTiming timing) {
+            super(request);
+            this.timing = timing;
+        }
+
+        @Override
+        public RequestDispatcher getRequestDispatcher(String path) {
+            RequestDispatcher dispatcher = super.getRequestDispatcher(path);
+            return dispatcher == null ? null : new TimingDispatcher(dispatcher, timing);
+        }
+    }
+
+
+    /**
+     * Mide el reenvío a la vista y escribe la cabecera antes y después.
+     */
+    private static final class TimingDispatcher implements RequestDispatcher {
+
+        private final RequestDispatcher dispatcher;
+        private final RequestTiming timing;
+
+        private TimingDispatcher(RequestDispatcher dispatcher, RequestTiming timing) {
+            this.dispatcher = dispatcher;
+            this.timing = timing;
+        }
+
+        @Override
+        public void forward(ServletRequest request, ServletResponse response) throws ServletException, IOException {
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            if (request.isAsyncStarted()) {
+                // La vista se renderiza al reenviar la petición asíncrona; se mide hasta que termina
+                timing.deferRender();
+                writeHeader(httpResponse);
+                dispatcher.forward(request, response);
+                return;
+            }
+            writeHeader(httpResponse);
+            long start = System.nanoTime();
+            try {
+                dispatcher.forward(request, response);
+            } finally {
+                timing.recordRender(System.nanoTime() - start);
+                writeHeader(httpResponse);
+            }
+        }
+
+        @Override
+        public void include(ServletRequest request, ServletResponse response) throws ServletException, IOException {
+            long start = System.nanoTime();
+            try {
+                dispatcher.include(request, response);
+            } finally {
+                timing.recordRender(System.nanoTime() - start);
+            }
+        }
+
+        private void writeHeader(HttpServletResponse response) {
+            if (!response.isCommitted()) {
+                response.setHeader(SERVER_TIMING, timing.toServerTiming());
+            }
+        }
+    }
+
+
+    /**
+     * Escribe la traza de una petición asíncrona cuando termina.
+     */
+    private static final class LogOnCompletion implements AsyncListener {
+
+        private final HttpServletRequest request;
+        private final HttpServletResponse response;
+        private final RequestTiming timing;
+
+        private LogOnCompletion(HttpServletRequest request, HttpServletResponse response, RequestTiming timing) {
+            this.request = request;
+            this.response = response;
+            this.timing = timing;
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            timing.finishDeferredRender();
+            log(request, response, timing);
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
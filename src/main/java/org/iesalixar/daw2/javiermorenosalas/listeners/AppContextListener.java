@@ -3,17 +3,23 @@ package org.iesalixar.daw2.javiermorenosalas.listeners;
 import jakarta.servlet.ServletContextEvent;
 import jakarta.servlet.ServletContextListener;
 import jakarta.servlet.annotation.WebListener;
+import org.iesalixar.daw2.javiermorenosalas.dao.AsyncDAO;
+import org.iesalixar.daw2.javiermorenosalas.dao.CachingProvinceDAO;
+import org.iesalixar.daw2.javiermorenosalas.dao.CachingRegionDAO;
 import org.iesalixar.daw2.javiermorenosalas.dao.DatabaseConnectionManager;
 import org.iesalixar.daw2.javiermorenosalas.dao.DataInitializer;
+import org.iesalixar.daw2.javiermorenosalas.dao.ProvinceDAOImpl;
+import org.iesalixar.daw2.javiermorenosalas.dao.RegionDAOImpl;
+import org.iesalixar.daw2.javiermorenosalas.metrics.ComponentMetrics;
+import org.iesalixar.daw2.javiermorenosalas.servlets.AsyncDatabaseServlet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import java.sql.Connection;
 import java.io.InputStream;
 
 
 /**
  * Listener que se ejecuta al iniciar y cerrar la aplicación.
- * Se usa para iniciar y cerrar la conexión a la base de datos.
+ * Se usa para iniciar y cerrar el pool de conexiones a la base de datos.
  */
 @WebListener
 public class AppContextListener implements ServletContextListener {
@@ -28,8 +34,15 @@ public class AppContextListener implements ServletContextListener {
         logger.info("Inicializando la aplicación y conectando a la base de datos...");
 
 
-        // Iniciamos la conexión a la base de datos al arrancar la aplicación
-        try (Connection connection = DatabaseConnectionManager.getConnection()) {
+        // Registramos las métricas de los componentes para el servlet /metrics
+        ComponentMetrics.registerAll();
+
+
+        // Iniciamos el pool de conexiones a la base de datos al arrancar la aplicación
+        try {
+            DatabaseConnectionManager.initPool();
+
+
             // Obtener el archivo data.sql desde el classpath
             // El archivo esta direccionado a data.sql pero del target
             InputStream sqlFileStream = sce.getServletContext().getResourceAsStream("/WEB-INF/classes/data.sql");
@@ -46,6 +59,12 @@ public class AppContextListener implements ServletContextListener {
             logger.info("Carga de datos finalizada.");
 
 
+            // Precargar las cachés de regiones y provincias y sus índices de códigos
+            new CachingRegionDAO(new RegionDAOImpl()).listAllRegions();
+            new CachingProvinceDAO(new ProvinceDAOImpl()).listAllProvinces();
+            logger.info("Cachés de datos de referencia precargadas.");
+
+
         } catch (Exception e) {
             logger.error("Error al inicializar la aplicación y cargar los datos: {}", e.getMessage(), e);
         }
@@ -54,8 +73,10 @@ public class AppContextListener implements ServletContextListener {
 
     @Override
     public void contextDestroyed(ServletContextEvent sce) {
-        // Cerramos la conexión a la base de datos cuando se destruye el contexto
-        logger.info("Cerrando la conexión a la base de datos al apagar la aplicación...");
-        DatabaseConnectionManager.closeConnection();
+        // Cerramos el pool de conexiones cuando se destruye el contexto
+        logger.info("Cerrando el pool de conexiones al apagar la aplicación...");
+        AsyncDatabaseServlet.shutdownExecutor();
+        AsyncDAO.shutdown();
+        DatabaseConnectionManager.closePool();
     }
 }
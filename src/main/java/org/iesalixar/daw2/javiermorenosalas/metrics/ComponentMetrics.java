@@ -0,0 +1,121 @@
+package org.iesalixar.daw2.javiermorenosalas.metrics;
+
+import org.iesalixar.daw2.javiermorenosalas.dao.AsyncDAO;
+import org.iesalixar.daw2.javiermorenosalas.dao.CircuitBreaker;
+import org.iesalixar.daw2.javiermorenosalas.dao.CodeIndex;
+import org.iesalixar.daw2.javiermorenosalas.dao.ConnectionPool;
+import org.iesalixar.daw2.javiermorenosalas.dao.DatabaseConnectionManager;
+import org.iesalixar.daw2.javiermorenosalas.dao.PreparedStatementCache;
+import org.iesalixar.daw2.javiermorenosalas.dao.ReferenceDataCache;
+import org.iesalixar.daw2.javiermorenosalas.dao.TransientErrorRetry;
+import org.iesalixar.daw2.javiermorenosalas.filters.Bulkhead;
+import org.iesalixar.daw2.javiermorenosalas.filters.BulkheadFilter;
+import org.iesalixar.daw2.javiermorenosalas.servlets.AsyncDatabaseServlet;
+
+import static org.iesalixar.daw2.javiermorenosalas.metrics.MetricsRegistry.COUNTER;
+import static org.iesalixar.daw2.javiermorenosalas.metrics.MetricsRegistry.GAUGE;
+import static org.iesalixar.daw2.javiermorenosalas.metrics.MetricsRegistry.register;
+
+/**
+ * Registra en el {@link MetricsRegistry} las estadísticas que ya llevan los componentes de acceso
+ * a datos y de control de carga. Los valores se leen al pedir las métricas.
+ */
+public final class ComponentMetrics {
+
+    private ComponentMetrics() {}
+
+    /**
+     * Registra todas las métricas de los componentes. Se llama al iniciar la aplicación.
+     */
+    public static void registerAll() {
+        registerConnectionPool();
+        registerCaches();
+        registerConcurrency();
+        registerResilience();
+    }
+
+    private static void registerConnectionPool() {
+        register("app_db_pool_connections", GAUGE, "Conexiones del pool por estado.", samples -> {
+            ConnectionPool pool = DatabaseConnectionManager.getPool();
+            if (pool != null) {
+                samples.add("state=\"active\"", pool.getActiveConnections());
+                samples.add("state=\"idle\"", pool.getIdleConnections());
+                samples.add("state=\"open\"", pool.getTotalConnections());
+            }
+        });
+        register("app_db_pool_max_connections", GAUGE, "Conexiones que se pueden prestar a la vez.", samples -> {
+            ConnectionPool pool = DatabaseConnectionManager.getPool();
+            if (pool != null) {
+                samples.add("", pool.getMaxSize());
+            }
+        });
+        register("app_db_statement_cache_total", COUNTER, "Sentencias preparadas servidas desde la caché, preparadas y expulsadas.", samples -> {
+            samples.add("result=\"hit\"", PreparedStatementCache.getHits());
+            samples.add("result=\"miss\"", PreparedStatementCache.getMisses());
+            samples.add("result=\"eviction\"", PreparedStatementCache.getEvictions());
+        });
+    }
+
+    private static void registerCaches() {
+        register("app_reference_cache_requests_total", COUNTER, "Lecturas de las cachés de datos de referencia.", samples -> {
+            for (ReferenceDataCache<?> cache : ReferenceDataCache.getInstances()) {
+                samples.add("cache=\"" + cache.getName() + "\",result=\"hit\"", cache.getHits());
+                samples.add("cache=\"" + cache.getName() + "\",result=\"miss\"", cache.getMisses());
+            }
+        });
+        register("app_code_index_checks_total", COUNTER, "Comprobaciones de códigos resueltas en memoria o en la base de datos.", samples -> {
+            for (CodeIndex<?> index : CodeIndex.getInstances()) {
+                samples.add("index=\"" + index.getName() + "\",result=\"hit\"", index.getHits());
+                samples.add("index=\"" + index.getName() + "\",result=\"fallback\"", index.getFallbacks());
+            }
+        });
+    }
+
+    private static void registerConcurrency() {
+        register("app_dao_async_calls", GAUGE, "Llamadas a DAO asíncronas en curso y en espera.", samples -> {
+            samples.add("state=\"active\"", AsyncDAO.getActiveCalls());
+            samples.add("state=\"queued\"", AsyncDAO.getQueuedCalls());
+        });
+        register("app_dao_async_max_concurrency", GAUGE, "Llamadas a DAO asíncronas que pueden ejecutarse a la vez.",
+                samples -> samples.add("", AsyncDAO.getMaxConcurrency()));
+        register("app_async_servlet_requests", GAUGE, "Peticiones de los servlets de base de datos en proceso y en cola.", samples -> {
+            samples.add("state=\"active\"", AsyncDatabaseServlet.getActiveRequests());
+            samples.add("state=\"queued\"", AsyncDatabaseServlet.getQueuedRequests());
+        });
+        register("app_bulkhead_requests", GAUGE, "Peticiones dentro de cada compartimento y en su cola.", samples -> {
+            for (Bulkhead bulkhead : BulkheadFilter.getBulkheads()) {
+                samples.add("bulkhead=\"" + bulkhead.getName() + "\",state=\"active\"", bulkhead.getActive());
+                samples.add("bulkhead=\"" + bulkhead.getName() + "\",state=\"queued\"", bulkhead.getQueued());
+            }
+        });
+        register("app_bulkhead_decisions_total", COUNTER, "Peticiones admitidas y rechazadas por cada compartimento.", samples -> {
+            for (Bulkhead bulkhead : BulkheadFilter.getBulkheads()) {
+                samples.add("bulkhead=\"" + bulkhead.getName() + "\",result=\"admitted\"", bulkhead.getAdmitted());
+                samples.add("bulkhead=\"" + bulkhead.getName() + "\",result=\"rejected\"", bulkhead.getRejected());
+            }
+        });
+    }
+
+    private static void registerResilience() {
+        register("app_db_circuit_state", GAUGE, "Estado del cortocircuito de la base de datos (1 en el estado actual).", samples -> {
+            CircuitBreaker breaker = DatabaseConnectionManager.getCircuitBreaker();
+            for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+                samples.add("circuit=\"" + breaker.getName() + "\",state=\"" + state + "\"",
+                        breaker.getState() == state ? 1 : 0);
+            }
+        });
+        register("app_db_circuit_rejected_total", COUNTER, "Llamadas rechazadas con el cortocircuito abierto.", samples -> {
+            CircuitBreaker breaker = DatabaseConnectionManager.getCircuitBreaker();
+            samples.add("circuit=\"" + breaker.getName() + "\"", breaker.getRejectedCalls());
+        });
+        register("app_db_circuit_opened_total", COUNTER, "Veces que se ha abierto el cortocircuito.", samples -> {
+            CircuitBreaker breaker = DatabaseConnectionManager.getCircuitBreaker();
+            samples.add("circuit=\"" + breaker.getName() + "\"", breaker.getTimesOpened());
+        });
+        register("app_db_transient_retries_total", COUNTER, "Reintentos por errores transitorios y su resultado.", samples -> {
+            samples.add("result=\"retry\"", TransientErrorRetry.getRetries());
+            samples.add("result=\"recovered\"", TransientErrorRetry.getRecovered());
+            samples.add("result=\"exhausted\"", TransientErrorRetry.getExhausted());
+        });
+    }
+}
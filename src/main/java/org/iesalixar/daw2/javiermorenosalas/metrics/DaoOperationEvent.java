@@ -0,0 +1,48 @@
+package org.iesalixar.daw2.javiermorenosalas.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JFR para cada llamada a un método de DAO. Está desactivado salvo que la grabación use
+ * el perfil {@code jfr/ticket-logger.jfc}.
+ *
+ * Los DAO lo crean, lo empiezan y lo guardan en el propio método. Con el evento desactivado
+ * {@code begin} y {@code commit} no hacen nada y el JIT elimina la reserva del objeto, así que no
+ * hace falta comprobar antes si está activo.
+ */
+@Name("org.iesalixar.daw2.javiermorenosalas.DaoOperation")
+@Label("DAO Operation")
+@Description("Llamada a un método de DAO")
+@Category({"Ticket Logger", "DAO"})
+@Enabled(false)
+@StackTrace(false)
+public class DaoOperationEvent extends Event {
+
+    @Label("Entity")
+    public String entity;
+
+    @Label("Operation")
+    public String operation;
+
+    @Label("Rows")
+    @Description("Filas devueltas o modificadas, si el método las indica")
+    public long rows;
+
+    @Label("Failed")
+    public boolean failed;
+
+    /**
+     * @param entity    Entidad del DAO (por ejemplo {@code Location}).
+     * @param operation Método del DAO.
+     */
+    public DaoOperationEvent(String entity, String operation) {
+        this.entity = entity;
+        this.operation = operation;
+    }
+}
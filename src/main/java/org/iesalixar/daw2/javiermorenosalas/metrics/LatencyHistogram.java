@@ -0,0 +1,157 @@
+package org.iesalixar.daw2.javiermorenosalas.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latencias al estilo HDR: los cubos crecen en potencias de 2 y cada potencia se
+ * divide en 16 subcubos, así que el error relativo de cualquier valor es como mucho del 6,25 %
+ * desde 1 microsegundo hasta unas 38 horas.
+ *
+ * Además se pueden fijar límites exactos (los {@code le} de Prometheus): para cada uno se cuenta
+ * aparte cuántos valores caen por debajo, sin la aproximación de los cubos.
+ *
+ * Anotar un valor solo calcula un índice e incrementa contadores atómicos: no reserva memoria ni
+ * bloquea, y se puede llamar desde cualquier hilo.
+ */
+public final class LatencyHistogram {
+
+    // Bits de precisión dentro de cada potencia de 2 (16 subcubos)
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // Mayor exponente representable; los valores mayores se anotan en el último cubo
+    private static final int MAX_EXPONENT = 36;
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKET_COUNT;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder totalMicros = new LongAdder();
+
+    // Límites exactos, de menor a mayor, y valores anotados entre cada límite y el anterior
+    private final double[] bounds;
+    private final long[] boundsNanos;
+    private final AtomicLongArray boundCounts;
+
+    /**
+     * @param boundsSeconds Límites, en segundos, para los que {@link #countAtOrBelow} debe ser exacto.
+     */
+    public LatencyHistogram(double... boundsSeconds) {
+        bounds = boundsSeconds.clone();
+        Arrays.sort(bounds);
+        boundsNanos = new long[bounds.length];
+        for (int i = 0; i < bounds.length; i++) {
+            boundsNanos[i] = Math.round(bounds[i] * 1_000_000_000);
+        }
+        boundCounts = new AtomicLongArray(bounds.length);
+    }
+
+    /**
+     * Anota una duración.
+     *
+     * @param durationNanos Duración en nanosegundos.
+     */
+    public void record(long durationNanos) {
+        long nanos = Math.max(0, durationNanos);
+        long micros = nanos / 1000;
+        counts.incrementAndGet(indexOf(micros));
+        totalMicros.add(micros);
+        for (int i = 0; i < boundsNanos.length; i++) {
+            if (nanos <= boundsNanos[i]) {
+                boundCounts.incrementAndGet(i);
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return Número de valores anotados.
+     */
+    public long getCount() {
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * @return Suma de los valores anotados, en segundos.
+     */
+    public double getSumSeconds() {
+        return totalMicros.sum() / 1_000_000.0;
+    }
+
+    /**
+     * Número de valores menores o iguales que el límite. Es exacto si el límite es uno de los
+     * indicados al crear el histograma; si no, los cubos que contienen el límite no se cuentan y el
+     * resultado puede quedarse corto como mucho en la precisión del histograma.
+     *
+     * @param upperBoundSeconds Límite en segundos.
+     * @return Valores anotados por debajo del límite.
+     */
+    public long countAtOrBelow(double upperBoundSeconds) {
+        int boundIndex = Arrays.binarySearch(bounds, upperBoundSeconds);
+        if (boundIndex >= 0) {
+            long count = 0;
+            for (int i = 0; i <= boundIndex; i++) {
+                count += boundCounts.get(i);
+            }
+            return count;
+        }
+        long limitMicros = (long) (upperBoundSeconds * 1_000_000);
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT && upperBoundOf(i) - 1 <= limitMicros; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Valor por debajo del cual queda la fracción indicada de los valores anotados.
+     *
+     * @param quantile Fracción entre 0 y 1 (por ejemplo 0.99).
+     * @return El valor en segundos, o 0 si no hay valores anotados.
+     */
+    public double quantileSeconds(double quantile) {
+        long total = getCount();
+        if (total == 0) {
+            return 0.0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return (upperBoundOf(i) - 1) / 1_000_000.0;
+            }
+        }
+        return (upperBoundOf(BUCKET_COUNT - 1) - 1) / 1_000_000.0;
+    }
+
+    /**
+     * @return El índice del cubo que contiene el valor.
+     */
+    static int indexOf(long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent > MAX_EXPONENT) {
+            return BUCKET_COUNT - 1;
+        }
+        int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /**
+     * @return El primer valor (en microsegundos) que ya no cabe en el cubo.
+     */
+    static long upperBoundOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index + 1;
+        }
+        int exponent = index / SUB_BUCKET_COUNT + SUB_BUCKET_BITS - 1;
+        int subBucket = index % SUB_BUCKET_COUNT;
+        return (long) (SUB_BUCKET_COUNT + subBucket + 1) << (exponent - SUB_BUCKET_BITS);
+    }
+}
@@ -0,0 +1,316 @@
+package org.iesalixar.daw2.javiermorenosalas.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Registro de métricas de la aplicación, expuesto en formato de texto de Prometheus.
+ *
+ * - Peticiones: por cada servlet y acción (por ejemplo {@code locations:list}) se guarda un
+ *   histograma de latencias y un contador por código de estado, además de las peticiones en curso.
+ *   Tras la primera petición de cada acción, buscar sus métricas y anotar una petición no reserva
+ *   memoria: solo consulta mapas e incrementa contadores atómicos.
+ * - Componentes: el resto de módulos registran colectores que se leen al pedir las métricas
+ *   (pool de conexiones, cachés, compartimentos...).
+ *
+ * Para que un cliente no pueda crear series sin límite, las acciones que no son identificadores
+ * cortos y las que superan {@link #MAX_ACTIONS_PER_SERVLET} se agrupan en {@code other}.
+ */
+public final class MetricsRegistry {
+
+    public static final String GAUGE = "gauge";
+    public static final String COUNTER = "counter";
+
+    // Máximo de acciones distintas por servlet
+    static final int MAX_ACTIONS_PER_SERVLET = 32;
+    private static final int MAX_ACTION_LENGTH = 32;
+    private static final String DEFAULT_ACTION = "default";
+    private static final String OTHER_ACTION = "other";
+
+    // Límites de los cubos del histograma que se exponen, en segundos
+    private static final double[] BUCKET_BOUNDS = {
+            0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private static final ConcurrentHashMap<String, ServletMetrics> servlets = new ConcurrentHashMap<>();
+    // Nombre de servlet de cada patrón, para no recortar el patrón en cada petición
+    private static final ConcurrentHashMap<String, String> servletNames = new ConcurrentHashMap<>();
+    private static final AtomicInteger inFlight = new AtomicInteger();
+
+    // Colectores de los componentes, ordenados por nombre de métrica
+    private static final Map<String, Family> families = new ConcurrentSkipListMap<>();
+
+    /**
+     * Lee los valores de una métrica al pedir las métricas.
+     */
+    @FunctionalInterface
+    public interface Collector {
+        void collect(Samples samples);
+    }
+
+    /**
+     * Destino de los valores de una métrica.
+     */
+    public interface Samples {
+
+        /**
+         * @param labels Etiquetas en formato Prometheus sin llaves (por ejemplo {@code cache="regions"}),
+         *               o cadena vacía.
+         * @param value  Valor de la serie.
+         */
+        void add(String labels, double value);
+    }
+
+    private MetricsRegistry() {}
+
+    /**
+     * Devuelve las métricas de una acción de un servlet, creándolas la primera vez.
+     *
+     * @param servlet Nombre del servlet (por ejemplo {@code locations}).
+     * @param action  Valor del parámetro {@code action}, o null.
+     * @return Las métricas de la acción.
+     */
+    public static ActionMetrics forAction(String servlet, String action) {
+        ServletMetrics servletMetrics = servlets.get(servlet);
+        if (servletMetrics == null) {
+            servletMetrics = servlets.computeIfAbsent(servlet, ServletMetrics::new);
+        }
+        return servletMetrics.forAction(action);
+    }
+
+    /**
+     * @param pattern Patrón con el que el contenedor ha resuelto la petición.
+     * @return El nombre del servlet para las métricas: su patrón sin la barra inicial.
+     */
+    public static String servletName(String pattern) {
+        if (pattern == null || pattern.isEmpty() || "/".equals(pattern)) {
+            return "default";
+        }
+        if (pattern.charAt(0) != '/') {
+            return pattern;
+        }
+        String name = servletNames.get(pattern);
+        if (name == null) {
+            // Los patrones son los de web.xml y las anotaciones: el mapa no crece sin límite
+            name = pattern.substring(1);
+            servletNames.putIfAbsent(pattern, name);
+        }
+        return name;
+    }
+
+    /**
+     * Anota el comienzo de una petición.
+     */
+    public static void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Anota el final de una petición.
+     */
+    public static void requestFinished() {
+        inFlight.decrementAndGet();
+    }
+
+    /**
+     * Registra una métrica de un componente. Si ya había una con el mismo nombre, se sustituye.
+     *
+     * @param name      Nombre de la métrica.
+     * @param type      {@link #GAUGE} o {@link #COUNTER}.
+     * @param help      Descripción.
+     * @param collector Lee los valores al pedir las métricas.
+     */
+    public static void register(String name, String type, String help, Collector collector) {
+        families.put(name, new Family(name, type, help, collector));
+    }
+
+    /**
+     * Escribe todas las métricas en formato de texto de Prometheus.
+     *
+     * @param writer Destino.
+     * @throws IOException Si falla la escritura.
+     */
+    public static void write(Writer writer) throws IOException {
+        StringBuilder out = new StringBuilder(8192);
+        writeRequestMetrics(out);
+        for (Family family : families.values()) {
+            family.write(out);
+        }
+        writer.write(out.toString());
+    }
+
+    private static void writeRequestMetrics(StringBuilder out) {
+        header(out, "app_http_requests_in_flight", GAUGE, "Peticiones HTTP en curso.");
+        out.append("app_http_requests_in_flight ").append(inFlight.get()).append('\n');
+
+        header(out, "app_http_requests_total", COUNTER, "Peticiones HTTP atendidas por servlet, acción y código de estado.");
+        for (ServletMetrics servlet : servlets.values()) {
+            for (ActionMetrics action : servlet.actions.values()) {
+                for (int status = 0; status < ActionMetrics.STATUS_CODES; status++) {
+                    long count = action.statuses.get(status);
+                    if (count > 0) {
+                        out.append("app_http_requests_total{").append(action.labels)
+                                .append(",status=\"").append(status).append("\"} ").append(count).append('\n');
+                    }
+                }
+            }
+        }
+
+        header(out, "app_http_request_duration_seconds", "histogram", "Latencia de las peticiones HTTP por servlet y acción.");
+        for (ServletMetrics servlet : servlets.values()) {
+            for (ActionMetrics action : servlet.actions.values()) {
+                LatencyHistogram histogram = action.latency;
+                for (double bound : BUCKET_BOUNDS) {
+                    out.append("app_http_request_duration_seconds_bucket{").append(action.labels)
+                            .append(",le=\"").append(format(bound)).append("\"} ")
+                            .append(histogram.countAtOrBelow(bound)).append('\n');
+                }
+                long count = histogram.getCount();
+                out.append("app_http_request_duration_seconds_bucket{").append(action.labels)
+                        .append(",le=\"+Inf\"} ").append(count).append('\n');
+                out.append("app_http_request_duration_seconds_sum{").append(action.labels).append("} ")
+                        .append(format(histogram.getSumSeconds())).append('\n');
+                out.append("app_http_request_duration_seconds_count{").append(action.labels).append("} ")
+                        .append(count).append('\n');
+            }
+        }
+
+        header(out, "app_http_request_duration_quantile_seconds", GAUGE,
+                "Percentiles de latencia calculados con el histograma (precisión del 6,25 %).");
+        for (ServletMetrics servlet : servlets.values()) {
+            for (ActionMetrics action : servlet.actions.values()) {
+                for (double quantile : QUANTILES) {
+                    out.append("app_http_request_duration_quantile_seconds{").append(action.labels)
+                            .append(",quantile=\"").append(format(quantile)).append("\"} ")
+                            .append(format(action.latency.quantileSeconds(quantile))).append('\n');
+                }
+            }
+        }
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String format(double value) {
+        if (value == Math.rint(value) && !Double.isInfinite(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return Double.toString(value);
+    }
+
+    /**
+     * @return true si la acción es un identificador corto y se puede usar como etiqueta tal cual.
+     */
+    private static boolean isValidAction(String action) {
+        int length = action.length();
+        if (length == 0 || length > MAX_ACTION_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            char c = action.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '_' || c == '-';
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+
+    /**
+     * Acciones de un servlet.
+     */
+    private static final class ServletMetrics {
+
+        private final String name;
+        private final ConcurrentHashMap<String, ActionMetrics> actions = new ConcurrentHashMap<>();
+
+        private ServletMetrics(String name) {
+            this.name = name;
+        }
+
+        private ActionMetrics forAction(String action) {
+            String key = action == null ? DEFAULT_ACTION : action;
+            ActionMetrics metrics = actions.get(key);
+            if (metrics != null) {
+                return metrics;
+            }
+            if (!isValidAction(key) || actions.size() >= MAX_ACTIONS_PER_SERVLET) {
+                key = OTHER_ACTION;
+                metrics = actions.get(key);
+                if (metrics != null) {
+                    return metrics;
+                }
+            }
+            ActionMetrics created = new ActionMetrics(name, key);
+            ActionMetrics existing = actions.putIfAbsent(key, created);
+            return existing != null ? existing : created;
+        }
+    }
+
+
+    /**
+     * Latencias y códigos de estado de una acción de un servlet.
+     */
+    public static final class ActionMetrics {
+
+        private static final int STATUS_CODES = 600;
+
+        private final String labels;
+        private final LatencyHistogram latency = new LatencyHistogram(BUCKET_BOUNDS);
+        private final AtomicLongArray statuses = new AtomicLongArray(STATUS_CODES);
+
+        private ActionMetrics(String servlet, String action) {
+            this.labels = "servlet=\"" + servlet + "\",action=\"" + action + "\"";
+        }
+
+        /**
+         * Anota una petición terminada.
+         *
+         * @param durationNanos Duración de la petición.
+         * @param status        Código de estado HTTP de la respuesta.
+         */
+        public void record(long durationNanos, int status) {
+            latency.record(durationNanos);
+            statuses.incrementAndGet(status >= 0 && status < STATUS_CODES ? status : 0);
+        }
+    }
+
+
+    /**
+     * Métrica de un componente con su colector.
+     */
+    private static final class Family {
+
+        private final String name;
+        private final String type;
+        private final String help;
+        private final Collector collector;
+
+        private Family(String name, String type, String help, Collector collector) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.collector = collector;
+        }
+
+        private void write(StringBuilder out) {
+            header(out, name, type, help);
+            collector.collect((labels, value) -> {
+                out.append(name);
+                if (!labels.isEmpty()) {
+                    out.append('{').append(labels).append('}');
+                }
+                out.append(' ').append(format(value)).append('\n');
+            });
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package org.iesalixar.daw2.javiermorenosalas.metrics;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Desglose de tiempos de una petición: sentencias SQL, renderizado de la vista y total.
+ *
+ * La petición se asocia al hilo que la procesa con {@link #bind}. Las sentencias ejecutadas en ese
+ * hilo se anotan solas; quien pase trabajo a otro hilo (el ejecutor de los servlets asíncronos o
+ * las llamadas a DAO en paralelo) debe asociarle la misma petición. Por eso el tiempo de base de
+ * datos es la suma de todas las sentencias y puede superar al total si se lanzaron en paralelo.
+ *
+ * En las peticiones asíncronas la vista se renderiza después de que el servlet termine, al
+ * reenviar la petición. Entonces se marca el comienzo con {@link #deferRender()} y el renderizado
+ * se cierra con {@link #finishDeferredRender()} cuando la petición termina.
+ */
+public final class RequestTiming {
+
+    private static final ThreadLocal<RequestTiming> current = new ThreadLocal<>();
+
+    private final long startNanos = System.nanoTime();
+    private final LongAdder databaseNanos = new LongAdder();
+    private final LongAdder queries = new LongAdder();
+    private final LongAdder renderNanos = new LongAdder();
+    // Comienzo del renderizado diferido, o 0 si no hay ninguno pendiente
+    private volatile long deferredRenderStartNanos = 0;
+
+    /**
+     * @return La petición asociada al hilo actual, o null si no hay ninguna.
+     */
+    public static RequestTiming current() {
+        return current.get();
+    }
+
+    /**
+     * Asocia la petición al hilo actual.
+     *
+     * @param timing Petición a asociar (puede ser null).
+     * @return La petición que estaba asociada antes, para restaurarla con {@link #restore}.
+     */
+    public static RequestTiming bind(RequestTiming timing) {
+        RequestTiming previous = current.get();
+        if (timing == null) {
+            current.remove();
+        } else {
+            current.set(timing);
+        }
+        return previous;
+    }
+
+    /**
+     * Restaura la petición que estaba asociada al hilo antes de {@link #bind}.
+     */
+    public static void restore(RequestTiming previous) {
+        bind(previous);
+    }
+
+    /**
+     * Anota una sentencia SQL en la petición asociada al hilo actual, si la hay.
+     *
+     * @param durationNanos Duración de la sentencia (ejecución y lectura).
+     */
+    public static void recordQuery(long durationNanos) {
+        RequestTiming timing = current.get();
+        if (timing != null) {
+            timing.queries.increment();
+            timing.databaseNanos.add(durationNanos);
+        }
+    }
+
+    /**
+     * Anota el tiempo de renderizado de una vista.
+     */
+    public void recordRender(long durationNanos) {
+        renderNanos.add(durationNanos);
+    }
+
+    /**
+     * Marca que la vista se renderizará más tarde, fuera del hilo actual.
+     */
+    public void deferRender() {
+        deferredRenderStartNanos = System.nanoTime();
+    }
+
+    /**
+     * Anota como renderizado el tiempo transcurrido desde {@link #deferRender()}, si lo hubo.
+     */
+    public void finishDeferredRender() {
+        long start = deferredRenderStartNanos;
+        if (start != 0) {
+            deferredRenderStartNanos = 0;
+            recordRender(System.nanoTime() - start);
+        }
+    }
+
+    public boolean isRenderDeferred() {
+        return deferredRenderStartNanos != 0;
+    }
+
+    public long getQueries() {
+        return queries.sum();
+    }
+
+    public double getDatabaseMillis() {
+        return toMillis(databaseNanos.sum());
+    }
+
+    public double getRenderMillis() {
+        return toMillis(renderNanos.sum());
+    }
+
+    /**
+     * @return Tiempo transcurrido desde el inicio de la petición, en milisegundos.
+     */
+    public double getTotalMillis() {
+        return toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * @return El valor de la cabecera {@code Server-Timing} con los tiempos hasta este momento. Si el
+     *         renderizado está diferido, solo incluye la base de datos: el renderizado y el total aún
+     *         no se conocen cuando hay que enviar la cabecera.
+     */
+    public String toServerTiming() {
+        if (isRenderDeferred()) {
+            return String.format(Locale.ROOT, "db;desc=\"%d queries\";dur=%.2f", getQueries(), getDatabaseMillis());
+        }
+        return String.format(Locale.ROOT, "db;desc=\"%d queries\";dur=%.2f, render;dur=%.2f, total;dur=%.2f",
+                getQueries(), getDatabaseMillis(), getRenderMillis(), getTotalMillis());
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
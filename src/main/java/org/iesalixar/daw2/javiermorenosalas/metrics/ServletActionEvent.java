@@ -0,0 +1,88 @@
+package org.iesalixar.daw2.javiermorenosalas.metrics;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de JFR para cada acción atendida por un servlet, en el hilo que la procesa. Está
+ * desactivado salvo que la grabación use el perfil {@code jfr/ticket-logger.jfc}.
+ */
+@Name("org.iesalixar.daw2.javiermorenosalas.ServletAction")
+@Label("Servlet Action")
+@Description("Acción atendida por un servlet")
+@Category({"Ticket Logger", "Servlets"})
+@Enabled(false)
+@StackTrace(false)
+public class ServletActionEvent extends Event {
+
+    @Label("Servlet")
+    public String servlet;
+
+    @Label("Action")
+    public String action;
+
+    @Label("Method")
+    public String method;
+
+    @Label("Status")
+    public int status;
+
+    /**
+     * Crea y empieza un evento solo si la grabación lo pide, para no reservar memoria en cada
+     * petición cuando está desactivado.
+     *
+     * @return El evento empezado, o null si está desactivado.
+     */
+    public static ServletActionEvent beginIfEnabled(HttpServletRequest request) {
+        if (!Type.INSTANCE.isEnabled()) {
+            return null;
+        }
+        ServletActionEvent event = new ServletActionEvent();
+        event.begin(request);
+        return event;
+    }
+
+    /**
+     * Empieza el evento. Si la grabación lo pide, toma de la petición el servlet, la acción y el
+     * método; en los formularios multipart no se lee la acción para no procesar el cuerpo.
+     */
+    public void begin(HttpServletRequest request) {
+        if (isEnabled()) {
+            servlet = MetricsRegistry.servletName(request.getHttpServletMapping().getPattern());
+            String contentType = request.getContentType();
+            action = contentType != null && contentType.startsWith("multipart/") ? null : request.getParameter("action");
+            method = request.getMethod();
+        }
+        begin();
+    }
+
+    /**
+     * Termina el evento y lo confirma si la grabación lo pide. Debe llamarse en el mismo hilo que
+     * {@link #begin(HttpServletRequest)}.
+     *
+     * @param status Código de estado de la respuesta.
+     */
+    public void end(int status) {
+        end();
+        if (shouldCommit()) {
+            this.status = status;
+            commit();
+        }
+    }
+
+
+    /**
+     * Tipo del evento, para consultar si está activado sin crear una instancia. Se obtiene aparte
+     * para no registrarlo mientras se inicializa la propia clase del evento.
+     */
+    private static final class Type {
+        private static final EventType INSTANCE = EventType.getEventType(ServletActionEvent.class);
+    }
+}
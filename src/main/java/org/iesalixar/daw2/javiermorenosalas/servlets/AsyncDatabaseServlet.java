@@ -0,0 +1,522 @@
+package org.iesalixar.daw2.javiermorenosalas.servlets;
+
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.RequestDispatcher;
+import jakarta.servlet.ServletContext;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.ServletRequestWrapper;
+import jakarta.servlet.ServletResponse;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.iesalixar.daw2.javiermorenosalas.dao.DatabaseConnectionManager;
+import org.iesalixar.daw2.javiermorenosalas.dao.TransientErrorRetry;
+import org.iesalixar.daw2.javiermorenosalas.dao.UnitOfWork;
+import org.iesalixar.daw2.javiermorenosalas.metrics.RequestTiming;
+import org.iesalixar.daw2.javiermorenosalas.metrics.ServletActionEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Servlet base para los servlets que acceden a la base de datos.
+ *
+ * Cada petición se procesa en modo asíncrono: el hilo de Jetty solo la encola y queda libre, y
+ * el trabajo (DAO y vista) se hace en un ejecutor propio con un número fijo de hilos y una cola
+ * acotada. Así una base de datos lenta no agota los hilos del servidor y las peticiones sencillas,
+ * como {@code /changeLanguage}, siguen atendiéndose.
+ *
+ * - Si la cola está llena, se responde 503 al momento.
+ * - Si la petición no termina en {@code DB_ASYNC_SERVLET_TIMEOUT_MS}, se responde 503 y su
+ *   transacción se deshace.
+ *
+ * El hilo del ejecutor y el aviso de tiempo agotado compiten por la respuesta con un único estado
+ * ({@link RequestState}): el ejecutor tiene que ganarlo antes de confirmar la transacción o de
+ * responder, y el aviso antes de enviar el 503. Si gana el aviso, el ejecutor deshace la
+ * transacción y ya no toca la petición ni la respuesta, que Jetty recicla al completarla; si gana
+ * el ejecutor, la escritura se confirma y el cliente recibe su respuesta normal aunque haya
+ * pasado el plazo.
+ *
+ * El trabajo de cada petición se hace dentro de una {@link UnitOfWork}: todas las llamadas a DAO
+ * comparten una conexión y, en las peticiones POST, una única transacción que se confirma al
+ * terminar el servlet y se deshace si lanza una excepción. Las redirecciones se envían después de
+ * confirmar, para que el navegador no pida el listado antes de que la escritura sea visible.
+ *
+ * Los reenvíos a las JSP también se hacen al terminar el servlet, con {@link AsyncContext#dispatch},
+ * porque Jetty no admite reenviar desde los hilos del ejecutor; por eso el reenvío debe ser lo
+ * último que hace el servlet y no se admite {@code include}.
+ *
+ * Si una petición POST falla por un interbloqueo o una espera de bloqueo agotada, su transacción
+ * ya se ha deshecho entera, así que se repite la petición completa en una unidad de trabajo nueva
+ * (ver {@link TransientErrorRetry}), siempre que no se haya enviado nada al cliente. Antes de
+ * repetirla se vacía la respuesta entera (estado, cabeceras y búfer) y se devuelven los atributos de
+ * la petición a como estaban al empezar, para que el nuevo intento no vea nada del fallido.
+ *
+ * Las subclases implementan {@code doGet} y {@code doPost} como en cualquier servlet.
+ */
+public abstract class AsyncDatabaseServlet extends HttpServlet {
+
+    private static final Logger logger = LoggerFactory.getLogger(AsyncDatabaseServlet.class);
+
+    private static final int threads = DatabaseConnectionManager.getIntProperty("DB_ASYNC_SERVLET_THREADS", 20);
+    private static final int queueCapacity = DatabaseConnectionManager.getIntProperty("DB_ASYNC_SERVLET_QUEUE", 100);
+    private static final long timeoutMillis = DatabaseConnectionManager.getIntProperty("DB_ASYNC_SERVLET_TIMEOUT_MS", 30000);
+
+    // Segundos que se indican al cliente para reintentar cuando se rechaza una petición
+    private static final String RETRY_AFTER_SECONDS = "5";
+
+    // Ejecutor compartido por todos los servlets de base de datos
+    private static final ThreadPoolExecutor executor = createExecutor();
+
+    @Override
+    protected void service(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        // Se calcula en el hilo del contenedor: tras agotarse el tiempo la petición ya no es válida
+        String operation = request.getMethod() + " " + request.getRequestURI();
+        if (!request.isAsyncSupported()) {
+            // Algún filtro de la cadena no admite modo asíncrono: se procesa en este hilo
+            serviceInUnitOfWork(request, response, operation, new RequestState());
+            return;
+        }
+
+        AsyncContext asyncContext = request.startAsync();
+        asyncContext.setTimeout(timeoutMillis);
+        RequestState state = new RequestState();
+        asyncContext.addListener(new TimeoutListener(state, operation));
+
+        RequestTiming timing = RequestTiming.current();
+        ServletActionEvent event = ServletActionEvent.beginIfEnabled(request);
+        ViewRequest viewRequest = ViewRequest.install(request);
+        HttpServletRequest workerRequest = request instanceof ServletRequestWrapper ? request : viewRequest;
+        try {
+            executor.execute(() -> {
+                RequestTiming previous = RequestTiming.bind(timing);
+                int status = HttpServletResponse.SC_SERVICE_UNAVAILABLE;
+                try {
+                    boolean failed = false;
+                    try {
+                        serviceInUnitOfWork(workerRequest, response, operation, state);
+                    } catch (Exception e) {
+                        failed = true;
+                        if (state.own()) {
+                            logger.error("Error al procesar {}: {}", operation, e.getMessage(), e);
+                            sendErrorIfPossible(response, HttpServletResponse.SC_INTERNAL_SERVER_ERROR);
+                        }
+                    }
+                    if (state.own()) {
+                        status = response.getStatus();
+                        boolean view = !failed && viewRequest.hasPendingView();
+                        state.finish(view ? () -> viewRequest.dispatchView(asyncContext, getServletContext())
+                                : () -> complete(asyncContext));
+                    }
+                } finally {
+                    // Si ha ganado el aviso de tiempo agotado, aquí ya no se toca la petición
+                    state.finish(null);
+                    RequestTiming.restore(previous);
+                    if (event != null) {
+                        event.end(status);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.warn("Cola de peticiones llena ({}), se rechaza {}", queueCapacity, operation);
+            response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+            sendErrorIfPossible(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            complete(asyncContext);
+        }
+    }
+
+    /**
+     * Procesa la petición con {@code doGet}/{@code doPost} dentro de una unidad de trabajo.
+     *
+     * @param operation Método y URI de la petición, para las trazas.
+     * @param state     Estado compartido con el aviso de tiempo agotado.
+     */
+    private void serviceInUnitOfWork(HttpServletRequest request, HttpServletResponse response, String operation,
+                                     RequestState state) throws ServletException, IOException {
+        boolean transactional = !"GET".equals(request.getMethod()) && !"HEAD".equals(request.getMethod());
+        if (!transactional) {
+            serviceOnce(request, response, false, operation, state);
+            return;
+        }
+
+        Map<String, Object> initialAttributes = attributesOf(request);
+        for (int attempt = 1; ; attempt++) {
+            try {
+                serviceOnce(request, response, true, operation, state);
+                if (attempt > 1) {
+                    TransientErrorRetry.recordRecovered(operation, attempt);
+                }
+                return;
+            } catch (IOException | ServletException | RuntimeException e) {
+                if (!TransientErrorRetry.shouldRetry(e, attempt) || !state.own() || response.isCommitted()) {
+                    throw e;
+                }
+                // Se descarta todo lo que hubiera dejado el intento fallido
+                response.reset();
+                restoreAttributes(request, initialAttributes);
+                state.release();
+                if (!TransientErrorRetry.backoff(operation, attempt, e) || state.isTimedOut()) {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Hace un intento de procesar la petición dentro de una unidad de trabajo nueva. En las
+     * peticiones transaccionales solo se confirma si el ejecutor se queda con la respuesta antes de
+     * que se agote el tiempo de espera.
+     */
+    private void serviceOnce(HttpServletRequest request, HttpServletResponse response, boolean transactional,
+                             String operation, RequestState state) throws ServletException, IOException {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(transactional)) {
+            try {
+                if (transactional) {
+                    DeferredRedirectResponse deferred = new DeferredRedirectResponse(response);
+                    super.service(request, deferred);
+                    if (!state.own()) {
+                        logger.warn("Se deshace la unidad de trabajo de {}: tiempo de espera agotado", operation);
+                        unitOfWork.rollback();
+                        return;
+                    }
+                    unitOfWork.commit();
+                    deferred.sendPendingRedirect();
+                } else {
+                    super.service(request, response);
+                }
+            } catch (IOException | ServletException | RuntimeException e) {
+                logger.warn("Se deshace la unidad de trabajo de {}: {}", operation, e.getMessage());
+                unitOfWork.rollback();
+                throw e;
+            } catch (SQLException e) {
+                logger.error("Error al confirmar la unidad de trabajo: {}", e.getMessage(), e);
+                unitOfWork.rollback();
+                throw new ServletException(e);
+            }
+        }
+    }
+
+    private static Map<String, Object> attributesOf(HttpServletRequest request) {
+        Map<String, Object> attributes = new HashMap<>();
+        for (String name : Collections.list(request.getAttributeNames())) {
+            attributes.put(name, request.getAttribute(name));
+        }
+        return attributes;
+    }
+
+    /**
+     * Devuelve los atributos de la petición a los valores indicados: quita los que se han añadido
+     * y repone los que se han cambiado o quitado.
+     */
+    private static void restoreAttributes(HttpServletRequest request, Map<String, Object> attributes) {
+        for (String name : Collections.list(request.getAttributeNames())) {
+            if (!attributes.containsKey(name)) {
+                request.removeAttribute(name);
+            }
+        }
+        attributes.forEach((name, value) -> {
+            if (request.getAttribute(name) != value) {
+                request.setAttribute(name, value);
+            }
+        });
+    }
+
+    /**
+     * @return Número de peticiones esperando en la cola.
+     */
+    public static int getQueuedRequests() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return Número de peticiones que se están procesando.
+     */
+    public static int getActiveRequests() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * Detiene el ejecutor. Se llama al cerrar la aplicación.
+     */
+    public static void shutdownExecutor() {
+        executor.shutdownNow();
+        logger.info("Ejecutor de peticiones asíncronas detenido.");
+    }
+
+    private static ThreadPoolExecutor createExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "db-request-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    private static void sendErrorIfPossible(HttpServletResponse response, int status) {
+        if (response.isCommitted()) {
+            return;
+        }
+        try {
+            response.sendError(status);
+        } catch (IOException | IllegalStateException e) {
+            logger.debug("No se pudo enviar el error {}: {}", status, e.getMessage());
+        }
+    }
+
+    private static void complete(AsyncContext asyncContext) {
+        try {
+            asyncContext.complete();
+        } catch (IllegalStateException e) {
+            // Se está agotando el tiempo de espera: completa el aviso (ver RequestState#finish)
+            logger.debug("La petición asíncrona ya estaba completada.");
+        }
+    }
+
+    /**
+     * Estado de una petición asíncrona que comparten el hilo del ejecutor y el aviso de tiempo
+     * agotado. Empieza en {@code RUNNING} y solo uno de los dos puede sacarla de ahí:
+     *
+     * - El ejecutor pasa a {@code OWNED} antes de confirmar la transacción o de responder; desde
+     *   entonces la respuesta es suya aunque se agote el tiempo.
+     * - El aviso pasa a {@code TIMED_OUT}, responde 503 y completa; desde entonces el ejecutor ya
+     *   no toca la petición ni la respuesta.
+     *
+     * Mientras se ejecuta el aviso, Jetty solo admite {@code complete} o {@code dispatch} desde su
+     * propio hilo. Por eso, si el aviso llega cuando la respuesta ya es del ejecutor, espera a que
+     * este termine y hace él la acción final que el ejecutor ha dejado anotada.
+     */
+    private static final class RequestState {
+
+        private static final int RUNNING = 0;
+        private static final int OWNED = 1;
+        private static final int TIMED_OUT = 2;
+
+        private final AtomicInteger state = new AtomicInteger(RUNNING);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile Runnable finalAction;
+
+        /**
+         * Se queda con la respuesta para el ejecutor, si no lo había hecho ya.
+         *
+         * @return {@code false} si se ha agotado antes el tiempo de espera.
+         */
+        private boolean own() {
+            return state.compareAndSet(RUNNING, OWNED) || state.get() == OWNED;
+        }
+
+        /**
+         * Devuelve la respuesta al aviso de tiempo agotado, por ejemplo mientras se espera para
+         * repetir la petición.
+         */
+        private void release() {
+            state.compareAndSet(OWNED, RUNNING);
+        }
+
+        private boolean timeOut() {
+            return state.compareAndSet(RUNNING, TIMED_OUT);
+        }
+
+        private boolean isTimedOut() {
+            return state.get() == TIMED_OUT;
+        }
+
+        /**
+         * Anota y ejecuta la acción que termina la petición ({@code complete} o {@code dispatch}).
+         * Si el aviso de tiempo agotado está en curso, Jetty la rechaza y la repite el aviso.
+         *
+         * @param action Acción final, o null si el ejecutor no tiene la respuesta.
+         */
+        private void finish(Runnable action) {
+            if (finished.getCount() == 0) {
+                return;
+            }
+            finalAction = action;
+            finished.countDown();
+            if (action != null) {
+                action.run();
+            }
+        }
+
+        /**
+         * @return La acción final del ejecutor, o null si no termina en el plazo indicado.
+         */
+        private Runnable awaitFinalAction(long millis) throws InterruptedException {
+            return finished.await(millis, TimeUnit.MILLISECONDS) ? finalAction : null;
+        }
+    }
+
+    /**
+     * Responde 503 si la petición no ha terminado a tiempo y el ejecutor no está ya respondiendo.
+     */
+    private static final class TimeoutListener implements AsyncListener {
+
+        private final RequestState state;
+        private final String operation;
+
+        private TimeoutListener(RequestState state, String operation) {
+            this.state = state;
+            this.operation = operation;
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) throws IOException {
+            if (!state.timeOut()) {
+                finishForExecutor();
+                return;
+            }
+            logger.warn("Tiempo de espera agotado ({} ms) en {}", timeoutMillis, operation);
+            HttpServletResponse response = (HttpServletResponse) event.getSuppliedResponse();
+            if (!response.isCommitted()) {
+                response.setHeader("Retry-After", RETRY_AFTER_SECONDS);
+            }
+            sendErrorIfPossible(response, HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            complete(event.getAsyncContext());
+        }
+
+        /**
+         * El ejecutor ya está confirmando o respondiendo: se espera a que termine y se hace aquí su
+         * acción final, que Jetty no le deja hacer mientras dura el aviso.
+         */
+        private void finishForExecutor() {
+            try {
+                Runnable finalAction = state.awaitFinalAction(timeoutMillis);
+                if (finalAction != null) {
+                    finalAction.run();
+                } else {
+                    logger.warn("{} sigue en curso tras agotarse el tiempo de espera ({} ms)", operation, timeoutMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+
+    /**
+     * Respuesta que guarda la redirección pedida por el servlet hasta que se confirma la transacción.
+     */
+    private static final class DeferredRedirectResponse extends HttpServletResponseWrapper {
+
+        private String pendingLocation;
+
+        private DeferredRedirectResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        @Override
+        public void sendRedirect(String location) {
+            pendingLocation = location;
+        }
+
+        private void sendPendingRedirect() throws IOException {
+            if (pendingLocation != null) {
+                super.sendRedirect(pendingLocation);
+            }
+        }
+    }
+
+    /**
+     * Petición que ve el servlet desde el ejecutor: el reenvío a la vista no se hace en el momento,
+     * sino que se anota y se hace con {@link AsyncContext#dispatch} cuando el servlet ha terminado.
+     *
+     * Jetty no admite {@code RequestDispatcher.forward} desde un hilo que no es del contenedor: si
+     * la petición ya ha salido del hilo de Jetty, {@code getRequestDispatcher} devuelve
+     * {@code null}, y si todavía no ha salido, el reenvío deja la petición en un estado incorrecto.
+     * Con {@code dispatch} la JSP se genera en un hilo del contenedor, después de confirmar la
+     * transacción y cuando el ejecutor ya no toca la respuesta.
+     */
+    private static final class ViewRequest extends HttpServletRequestWrapper {
+
+        // La vista pendiente se guarda como atributo para que un reintento de la petición la descarte
+        private static final String PENDING_VIEW_ATTRIBUTE = ViewRequest.class.getName() + ".pendingView";
+
+        private final String servletDirectory;
+
+        private ViewRequest(HttpServletRequest request) {
+            super(request);
+            // Se calcula en el hilo del contenedor, mientras la ruta del servlet aún es válida
+            String servletPath = request.getServletPath();
+            this.servletDirectory = servletPath.substring(0, servletPath.lastIndexOf('/') + 1);
+        }
+
+        /**
+         * Coloca la petición al fondo de la cadena de envoltorios, para que los que añadan los
+         * filtros sigan envolviendo sus dispatcher.
+         */
+        private static ViewRequest install(HttpServletRequest request) {
+            if (!(request instanceof ServletRequestWrapper wrapper)) {
+                return new ViewRequest(request);
+            }
+            while (wrapper.getRequest() instanceof ServletRequestWrapper inner) {
+                wrapper = inner;
+            }
+            ViewRequest viewRequest = new ViewRequest((HttpServletRequest) wrapper.getRequest());
+            wrapper.setRequest(viewRequest);
+            return viewRequest;
+        }
+
+        @Override
+        public RequestDispatcher getRequestDispatcher(String path) {
+            String absolutePath = path.startsWith("/") ? path : servletDirectory + path;
+            return new RequestDispatcher() {
+                @Override
+                public void forward(ServletRequest request, ServletResponse response) {
+                    setAttribute(PENDING_VIEW_ATTRIBUTE, absolutePath);
+                }
+
+                @Override
+                public void include(ServletRequest request, ServletResponse response) throws ServletException {
+                    throw new ServletException("Los servlets asíncronos no admiten include: " + absolutePath);
+                }
+            };
+        }
+
+        private boolean hasPendingView() {
+            return getAttribute(PENDING_VIEW_ATTRIBUTE) != null;
+        }
+
+        /**
+         * Reenvía a la vista pendiente.
+         */
+        private void dispatchView(AsyncContext asyncContext, ServletContext servletContext) {
+            String pendingView = (String) getAttribute(PENDING_VIEW_ATTRIBUTE);
+            try {
+                asyncContext.dispatch(servletContext, pendingView);
+            } catch (IllegalStateException e) {
+                // Se está agotando el tiempo de espera: reenvía el aviso (ver RequestState#finish)
+                logger.debug("La petición asíncrona ya estaba completada.");
+            }
+        }
+    }
+}
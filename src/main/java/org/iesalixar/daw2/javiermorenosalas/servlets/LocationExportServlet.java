@@ -0,0 +1,178 @@
+package org.iesalixar.daw2.javiermorenosalas.servlets;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.apache.commons.lang3.StringUtils;
+import org.iesalixar.daw2.javiermorenosalas.dao.LocationDAO;
+import org.iesalixar.daw2.javiermorenosalas.dao.LocationDAOImpl;
+import org.iesalixar.daw2.javiermorenosalas.entity.Location;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.sql.SQLException;
+
+/**
+ * Servlet que exporta todas las ubicaciones en CSV o JSON.
+ *
+ * Las filas se escriben en la respuesta a medida que se leen de la base de datos, sin construir
+ * la lista completa en memoria, y la salida se vacía cada {@link #FLUSH_EVERY_ROWS} filas.
+ * El formato se elige con el parámetro `format` (`csv` por defecto o `json`).
+ */
+@WebServlet("/locations/export")
+public class LocationExportServlet extends HttpServlet {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationExportServlet.class);
+
+    // Cada cuántas filas se envía al cliente lo escrito hasta el momento
+    private static final int FLUSH_EVERY_ROWS = 1000;
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private LocationDAO locationDAO;
+
+    @Override
+    public void init() throws ServletException {
+        try {
+            locationDAO = new LocationDAOImpl();
+            logger.info("LocationDAO inicializado correctamente.");
+        } catch (Exception e) {
+            logger.error("Error al inicializar el LocationDAO: {}", e.getMessage(), e);
+            throw new ServletException("Error al inicializar el LocationDAO", e);
+        }
+    }
+
+    /**
+     * Maneja las solicitudes HTTP GET escribiendo la exportación en el formato solicitado.
+     *
+     * @param request La solicitud HTTP recibida.
+     * @param response La respuesta HTTP a enviar.
+     * @throws ServletException Si ocurre un error al consultar la base de datos.
+     * @throws IOException Si ocurre un error al escribir la respuesta.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        String format = request.getParameter("format");
+        response.setCharacterEncoding("UTF-8");
+
+        try {
+            if ("json".equalsIgnoreCase(format)) {
+                logger.info("Accion: exportar ubicaciones en JSON.");
+                exportJson(response);
+            } else {
+                logger.info("Accion: exportar ubicaciones en CSV.");
+                exportCsv(response);
+            }
+        } catch (SQLException ex) {
+            logger.error("Error en la exportacion de ubicaciones: {}", ex.getMessage(), ex);
+            throw new ServletException(ex);
+        }
+    }
+
+    /**
+     * Escribe las ubicaciones en formato CSV con una fila de cabecera.
+     *
+     * @param response La respuesta HTTP a enviar.
+     * @throws SQLException Si ocurre un error en la consulta de la base de datos.
+     * @throws IOException Si ocurre un error al escribir la respuesta.
+     */
+    private void exportCsv(HttpServletResponse response) throws SQLException, IOException {
+        response.setContentType("text/csv;charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"locations.csv\"");
+
+        PrintWriter writer = response.getWriter();
+        writer.write("id,address,city,supermarket_id,supermarket_name,province_id,province_code,province_name\n");
+
+        long[] rows = {0};
+        locationDAO.streamAllLocations(location -> {
+            writer.write(Integer.toString(location.getId()));
+            writer.write(',');
+            writer.write(escapeCsv(location.getAddress()));
+            writer.write(',');
+            writer.write(escapeCsv(location.getCity()));
+            writer.write(',');
+            writer.write(Integer.toString(location.getSupermarket().getId()));
+            writer.write(',');
+            writer.write(escapeCsv(location.getSupermarket().getName()));
+            writer.write(',');
+            writer.write(Integer.toString(location.getProvince().getId()));
+            writer.write(',');
+            writer.write(escapeCsv(location.getProvince().getCode()));
+            writer.write(',');
+            writer.write(escapeCsv(location.getProvince().getName()));
+            writer.write('\n');
+            // PrintWriter no lanza excepciones: si el cliente se desconecta se detiene la consulta
+            if (++rows[0] % FLUSH_EVERY_ROWS == 0 && writer.checkError()) {
+                throw new IOException("El cliente ha cerrado la conexion durante la exportacion");
+            }
+        });
+        writer.flush();
+        logger.info("Exportacion CSV completada: {} ubicaciones.", rows[0]);
+    }
+
+    /**
+     * Escribe las ubicaciones como un array JSON usando el generador en streaming de Jackson.
+     *
+     * @param response La respuesta HTTP a enviar.
+     * @throws SQLException Si ocurre un error en la consulta de la base de datos.
+     * @throws IOException Si ocurre un error al escribir la respuesta.
+     */
+    private void exportJson(HttpServletResponse response) throws SQLException, IOException {
+        response.setContentType("application/json;charset=UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"locations.json\"");
+
+        long[] rows = {0};
+        try (JsonGenerator generator = jsonFactory.createGenerator(response.getWriter())) {
+            generator.writeStartArray();
+            locationDAO.streamAllLocations(location -> {
+                writeLocation(generator, location);
+                if (++rows[0] % FLUSH_EVERY_ROWS == 0) {
+                    generator.flush();
+                }
+            });
+            generator.writeEndArray();
+        }
+        logger.info("Exportacion JSON completada: {} ubicaciones.", rows[0]);
+    }
+
+    /**
+     * Escapa un valor CSV: si contiene comas, comillas o saltos de línea se rodea de comillas
+     * y se duplican las comillas internas.
+     */
+    private static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (StringUtils.containsNone(value, ',', '"', '\n', '\r')) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Escribe una ubicación como objeto JSON.
+     */
+    private void writeLocation(JsonGenerator generator, Location location) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("id", location.getId());
+        generator.writeStringField("address", location.getAddress());
+        generator.writeStringField("city", location.getCity());
+        generator.writeObjectFieldStart("supermarket");
+        generator.writeNumberField("id", location.getSupermarket().getId());
+        generator.writeStringField("name", location.getSupermarket().getName());
+        generator.writeEndObject();
+        generator.writeObjectFieldStart("province");
+        generator.writeNumberField("id", location.getProvince().getId());
+        generator.writeStringField("code", location.getProvince().getCode());
+        generator.writeStringField("name", location.getProvince().getName());
+        generator.writeEndObject();
+        generator.writeEndObject();
+    }
+}
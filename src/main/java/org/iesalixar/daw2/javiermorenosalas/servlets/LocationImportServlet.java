@@ -0,0 +1,283 @@
+package org.iesalixar.daw2.javiermorenosalas.servlets;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.MultipartConfig;
+import jakarta.servlet.annotation.WebInitParam;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.Part;
+import org.iesalixar.daw2.javiermorenosalas.dao.*;
+import org.iesalixar.daw2.javiermorenosalas.entity.Location;
+import org.iesalixar.daw2.javiermorenosalas.entity.Province;
+import org.iesalixar.daw2.javiermorenosalas.entity.Supermarket;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Servlet para la importación masiva de ubicaciones desde un archivo CSV.
+ *
+ * El archivo se lee línea a línea, sin cargarlo entero en memoria. Cada línea debe tener las
+ * columnas `address,city,supermarket,province`, donde el supermercado se indica por su nombre y
+ * la provincia por su nombre o su código; la primera línea es la cabecera. Los nombres se
+ * resuelven a IDs en memoria y las filas válidas se insertan en lotes JDBC de `batchSize` filas,
+ * cada lote en su propia transacción. Al terminar se muestra un informe con los errores por línea.
+ */
+@WebServlet(value = "/locations-import", initParams = @WebInitParam(name = "batchSize", value = "1000"))
+@MultipartConfig(maxFileSize = 200 * 1024 * 1024)
+public class LocationImportServlet extends HttpServlet {
+
+    private static final Logger logger = LoggerFactory.getLogger(LocationImportServlet.class);
+
+    // Número máximo de errores que se guardan para el informe
+    private static final int MAX_REPORTED_ERRORS = 10000;
+
+    private LocationDAO locationDAO;
+    private SupermarketDAO supermarketDAO;
+    private ProvinceDAO provinceDAO;
+    private int batchSize;
+
+    @Override
+    public void init() throws ServletException {
+        try {
+            locationDAO = new LocationDAOImpl();
+            supermarketDAO = new CachingSupermarketDAO(new SupermarketDAOImpl());
+            provinceDAO = new CachingProvinceDAO(new ProvinceDAOImpl());
+            batchSize = Integer.parseInt(getInitParameter("batchSize"));
+            logger.info("DAOs inicializados correctamente. Tamaño de lote: {}", batchSize);
+        } catch (Exception e) {
+            logger.error("Error al inicializar los DAOs: {}", e.getMessage(), e);
+            throw new ServletException("Error al inicializar los DAOs", e);
+        }
+    }
+
+    /**
+     * Muestra el formulario de subida del archivo CSV.
+     *
+     * @param request La solicitud HTTP recibida.
+     * @param response La respuesta HTTP a enviar.
+     * @throws ServletException Si ocurre un error en la solicitud.
+     * @throws IOException Si ocurre un error en la lectura o escritura de la solicitud.
+     */
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("text/html;charset=UTF-8");
+        response.setCharacterEncoding("UTF-8");
+        request.getRequestDispatcher("location-import.jsp").forward(request, response);
+    }
+
+    /**
+     * Procesa el archivo CSV subido y muestra el informe de la importación.
+     *
+     * @param request La solicitud HTTP con el archivo en la parte `file`.
+     * @param response La respuesta HTTP a enviar.
+     * @throws ServletException Si ocurre un error en la solicitud o en la base de datos.
+     * @throws IOException Si ocurre un error al leer el archivo.
+     */
+    @Override
+    protected void doPost(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("text/html;charset=UTF-8");
+        response.setCharacterEncoding("UTF-8");
+
+        Part filePart = request.getPart("file");
+        if (filePart == null || filePart.getSize() == 0) {
+            logger.warn("Intento de importar ubicaciones fallido: archivo vacío.");
+            request.setAttribute("errorMessage", "Debe seleccionar un archivo CSV.");
+            request.getRequestDispatcher("location-import.jsp").forward(request, response);
+            return;
+        }
+
+        try {
+            importLocations(request, filePart);
+        } catch (SQLException ex) {
+            logger.error("Error en la importacion de ubicaciones: {}", ex.getMessage(), ex);
+            throw new ServletException(ex);
+        }
+        request.getRequestDispatcher("location-import.jsp").forward(request, response);
+    }
+
+    /**
+     * Lee el CSV, valida cada línea e inserta las ubicaciones válidas por lotes. Deja en la
+     * solicitud los atributos `importedCount`, `failedCount` e `importErrors`.
+     *
+     * @param request La solicitud HTTP en la que se deja el informe.
+     * @param filePart El archivo subido.
+     * @throws SQLException Si no se pueden cargar los supermercados o las provincias.
+     * @throws IOException Si ocurre un error al leer el archivo.
+     */
+    private void importLocations(HttpServletRequest request, Part filePart) throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+
+        // Índices en memoria para resolver nombres y códigos sin consultar la base de datos
+        Map<String, Supermarket> supermarketsByName = new HashMap<>();
+        for (Supermarket supermarket : supermarketDAO.listAllSupermarkets()) {
+            supermarketsByName.put(normalize(supermarket.getName()), supermarket);
+        }
+        Map<String, Province> provincesByNameOrCode = new HashMap<>();
+        for (Province province : provinceDAO.listAllProvinces()) {
+            provincesByNameOrCode.put(normalize(province.getName()), province);
+            provincesByNameOrCode.put(normalize(province.getCode()), province);
+        }
+
+        ImportReport report = new ImportReport();
+        List<Location> batch = new ArrayList<>(batchSize);
+        List<Integer> batchLines = new ArrayList<>(batchSize);
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(filePart.getInputStream(), StandardCharsets.UTF_8))) {
+            String line = reader.readLine(); // Cabecera
+            int lineNumber = 1;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+
+                Location location = parseLine(line, lineNumber, supermarketsByName, provincesByNameOrCode, report);
+                if (location == null) {
+                    continue;
+                }
+                batch.add(location);
+                batchLines.add(lineNumber);
+                if (batch.size() >= batchSize) {
+                    insertBatch(batch, batchLines, report);
+                }
+            }
+        }
+        insertBatch(batch, batchLines, report);
+
+        logger.info("Importacion finalizada en {} ms: {} insertadas, {} con error.",
+                System.currentTimeMillis() - start, report.imported, report.failed);
+        request.setAttribute("importedCount", report.imported);
+        request.setAttribute("failedCount", report.failed);
+        request.setAttribute("importErrors", report.errors);
+    }
+
+    /**
+     * Convierte una línea del CSV en una ubicación. Si la línea no es válida se anota el error
+     * en el informe y se devuelve null.
+     */
+    private Location parseLine(String line, int lineNumber, Map<String, Supermarket> supermarketsByName,
+                               Map<String, Province> provincesByNameOrCode, ImportReport report) {
+        List<String> fields = splitCsvLine(line);
+        if (fields == null || fields.size() != 4) {
+            report.addError(lineNumber, "Se esperaban 4 columnas (address,city,supermarket,province).");
+            return null;
+        }
+
+        String address = fields.get(0).trim();
+        String city = fields.get(1).trim();
+        if (address.isEmpty() || city.isEmpty()) {
+            report.addError(lineNumber, "La dirección y la ciudad no pueden estar vacías.");
+            return null;
+        }
+
+        Supermarket supermarket = supermarketsByName.get(normalize(fields.get(2)));
+        if (supermarket == null) {
+            report.addError(lineNumber, "El supermercado '" + fields.get(2).trim() + "' no existe.");
+            return null;
+        }
+        Province province = provincesByNameOrCode.get(normalize(fields.get(3)));
+        if (province == null) {
+            report.addError(lineNumber, "La provincia '" + fields.get(3).trim() + "' no existe.");
+            return null;
+        }
+        return new Location(address, city, supermarket, province);
+    }
+
+    /**
+     * Inserta el lote en una transacción. Si el lote falla se reintenta fila a fila para
+     * identificar qué líneas provocan el error. Al terminar se vacían las listas.
+     */
+    private void insertBatch(List<Location> batch, List<Integer> batchLines, ImportReport report) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        try {
+            locationDAO.insertLocations(batch);
+            report.imported += batch.size();
+        } catch (SQLException e) {
+            logger.warn("Lote de {} filas rechazado, se reintenta fila a fila: {}", batch.size(), e.getMessage());
+            for (int i = 0; i < batch.size(); i++) {
+                try {
+                    locationDAO.insertLocation(batch.get(i));
+                    report.imported++;
+                } catch (SQLException rowError) {
+                    report.addError(batchLines.get(i), rowError.getMessage());
+                }
+            }
+        }
+        batch.clear();
+        batchLines.clear();
+    }
+
+    /**
+     * Divide una línea CSV en campos. Admite campos entre comillas con comas y comillas
+     * duplicadas en su interior. Devuelve null si hay comillas sin cerrar.
+     */
+    private static List<String> splitCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    current.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    current.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(current.toString());
+        return fields;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toUpperCase(Locale.ROOT);
+    }
+
+    /**
+     * Resultado acumulado de la importación.
+     */
+    private static final class ImportReport {
+
+        private int imported = 0;
+        private int failed = 0;
+        private final List<String> errors = new ArrayList<>();
+
+        private void addError(int lineNumber, String message) {
+            failed++;
+            if (errors.size() < MAX_REPORTED_ERRORS) {
+                errors.add("Línea " + lineNumber + ": " + message);
+            }
+        }
+    }
+}
@@ -2,7 +2,6 @@ package org.iesalixar.daw2.javiermorenosalas.servlets;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
-import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.iesalixar.daw2.javiermorenosalas.dao.*;
@@ -13,23 +12,40 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
-@WebServlet("/locations")
-public class LocationServlet extends HttpServlet {
+@WebServlet(value = "/locations", asyncSupported = true)
+public class LocationServlet extends AsyncDatabaseServlet {
 
     private static final Logger logger = LoggerFactory.getLogger(LocationServlet.class);
 
+    // Tamaño de página por defecto y máximo del listado de ubicaciones
+    private static final int DEFAULT_PAGE_SIZE = 20;
+    private static final int MAX_PAGE_SIZE = 100;
+
+    // Tiempo máximo para cargar en paralelo los datos de los formularios
+    private static final long FORM_LOAD_TIMEOUT_MILLIS = 5000;
+
     // DAOs para gestionar las operaciones de ubicaciones, supermercados y provincias
     private LocationDAO locationDAO;
     private SupermarketDAO supermarketDAO;
     private ProvinceDAO provinceDAO;
 
+    // Fachadas asíncronas para cargar a la vez los datos independientes de los formularios
+    private AsyncDAO<LocationDAO> asyncLocationDAO;
+    private AsyncDAO<SupermarketDAO> asyncSupermarketDAO;
+    private AsyncDAO<ProvinceDAO> asyncProvinceDAO;
+
     @Override
     public void init() throws ServletException {
         try {
             locationDAO = new LocationDAOImpl();
-            supermarketDAO = new SupermarketDAOImpl();
-            provinceDAO = new ProvinceDAOImpl();
+            supermarketDAO = new CachingSupermarketDAO(new SupermarketDAOImpl());
+            provinceDAO = new CachingProvinceDAO(new ProvinceDAOImpl());
+            asyncLocationDAO = new AsyncDAO<>(locationDAO);
+            asyncSupermarketDAO = new AsyncDAO<>(supermarketDAO);
+            asyncProvinceDAO = new AsyncDAO<>(provinceDAO);
             logger.info("DAOs inicializados correctamente.");
         } catch (Exception e) {
             logger.error("Error al inicializar los DAOs: {}", e.getMessage(), e);
@@ -118,7 +134,9 @@ public class LocationServlet extends HttpServlet {
     }
 
     /**
-     * Lista todas las ubicaciones y las pasa como atributo a la vista `location.jsp`.
+     * Lista una página de ubicaciones y la pasa como atributo a la vista `location.jsp`.
+     * La página se indica con los parámetros `size` (tamaño), `after` (ID tras el que empieza la
+     * página siguiente) o `before` (ID antes del que termina la página anterior).
      *
      * @param request La solicitud HTTP recibida.
      * @param response La respuesta HTTP a enviar.
@@ -128,12 +146,62 @@ public class LocationServlet extends HttpServlet {
      */
     private void listLocations(HttpServletRequest request, HttpServletResponse response)
             throws SQLException, IOException, ServletException {
-        List<Location> listLocations = locationDAO.listAllLocations();
+        int pageSize = parseIntParameter(request, "size", DEFAULT_PAGE_SIZE);
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            pageSize = DEFAULT_PAGE_SIZE;
+        }
+        int afterId = parseIntParameter(request, "after", 0);
+        int beforeId = parseIntParameter(request, "before", 0);
+
+        // Se pide una fila de más para saber si hay otra página en esa dirección
+        List<Location> listLocations;
+        boolean hasPrevious;
+        boolean hasNext;
+        if (beforeId > 0) {
+            listLocations = locationDAO.listLocationsBefore(beforeId, pageSize + 1);
+            hasPrevious = listLocations.size() > pageSize;
+            if (hasPrevious) {
+                listLocations = listLocations.subList(1, listLocations.size());
+            }
+            hasNext = true;
+        } else {
+            listLocations = locationDAO.listLocationsAfter(afterId, pageSize + 1);
+            hasNext = listLocations.size() > pageSize;
+            if (hasNext) {
+                listLocations = listLocations.subList(0, pageSize);
+            }
+            hasPrevious = afterId > 0;
+        }
+
         request.setAttribute("listLocations", listLocations);
-        logger.info("Listando ubicaciones: {} ubicaciones encontradas.", listLocations.size());
+        request.setAttribute("pageSize", pageSize);
+        if (!listLocations.isEmpty()) {
+            request.setAttribute("previousCursor", hasPrevious ? listLocations.get(0).getId() : null);
+            request.setAttribute("nextCursor", hasNext ? listLocations.get(listLocations.size() - 1).getId() : null);
+        } else if (afterId > 0) {
+            // Página vacía al final de la tabla: se permite volver a la última página con datos
+            request.setAttribute("previousCursor", afterId + 1);
+        }
+        logger.info("Listando ubicaciones: {} ubicaciones en la pagina.", listLocations.size());
         request.getRequestDispatcher("location.jsp").forward(request, response);
     }
 
+    /**
+     * Lee un parámetro entero de la solicitud, devolviendo el valor por defecto si falta o no es válido.
+     */
+    private int parseIntParameter(HttpServletRequest request, String name, int defaultValue) {
+        String value = request.getParameter(name);
+        if (value == null || value.isBlank()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            logger.warn("Parametro {} no valido: {}", name, value);
+            return defaultValue;
+        }
+    }
+
     /**
      * Muestra el formulario para crear una nueva ubicación.
      *
@@ -145,11 +213,18 @@ public class LocationServlet extends HttpServlet {
      */
     private void showNewForm(HttpServletRequest request, HttpServletResponse response)
             throws ServletException, IOException, SQLException {
-        List<Supermarket> listSupermarkets = supermarketDAO.listAllSupermarkets();
-        List<Province> listProvinces = provinceDAO.listAllProvinces();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FORM_LOAD_TIMEOUT_MILLIS);
+        CompletableFuture<List<Supermarket>> supermarkets = asyncSupermarketDAO.supply(SupermarketDAO::listAllSupermarkets);
+        CompletableFuture<List<Province>> provinces = asyncProvinceDAO.supply(ProvinceDAO::listAllProvinces);
 
-        request.setAttribute("listSupermarkets", listSupermarkets);
-        request.setAttribute("listProvinces", listProvinces);
+        try {
+            request.setAttribute("listSupermarkets", AsyncDAO.await(supermarkets, deadline));
+            request.setAttribute("listProvinces", AsyncDAO.await(provinces, deadline));
+        } finally {
+            // Si una carga falla, las demás ya no se necesitan
+            supermarkets.cancel(true);
+            provinces.cancel(true);
+        }
 
         logger.info("Mostrando formulario de nueva ubicacion.");
         request.getRequestDispatcher("location-form.jsp").forward(request, response);
@@ -168,13 +243,23 @@ public class LocationServlet extends HttpServlet {
             throws SQLException, ServletException, IOException {
         int id = Integer.parseInt(request.getParameter("id"));
 
-        Location existingLocation = locationDAO.getLocationById(id);
-        List<Supermarket> listSupermarkets = supermarketDAO.listAllSupermarkets();
-        List<Province> listProvinces = provinceDAO.listAllProvinces();
+        // Las tres consultas son independientes: se lanzan a la vez y se espera a todas (si el formulario
+        // se vuelve a mostrar tras un POST fallido, se ejecutan una tras otra con la conexión de la petición)
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FORM_LOAD_TIMEOUT_MILLIS);
+        CompletableFuture<Location> location = asyncLocationDAO.supply(dao -> dao.getLocationById(id));
+        CompletableFuture<List<Supermarket>> supermarkets = asyncSupermarketDAO.supply(SupermarketDAO::listAllSupermarkets);
+        CompletableFuture<List<Province>> provinces = asyncProvinceDAO.supply(ProvinceDAO::listAllProvinces);
 
-        request.setAttribute("location", existingLocation);
-        request.setAttribute("listSupermarkets", listSupermarkets);
-        request.setAttribute("listProvinces", listProvinces);
+        try {
+            request.setAttribute("location", AsyncDAO.await(location, deadline));
+            request.setAttribute("listSupermarkets", AsyncDAO.await(supermarkets, deadline));
+            request.setAttribute("listProvinces", AsyncDAO.await(provinces, deadline));
+        } finally {
+            // Si una carga falla, las demás ya no se necesitan
+            location.cancel(true);
+            supermarkets.cancel(true);
+            provinces.cancel(true);
+        }
 
         logger.info("Mostrando formulario de edicion para la ubicacion con ID: {}", id);
         request.getRequestDispatcher("location-form.jsp").forward(request, response);
@@ -207,18 +292,20 @@ public class LocationServlet extends HttpServlet {
         int supermarketId = Integer.parseInt(supermarketIdStr);
         int provinceId = Integer.parseInt(provinceIdStr);
 
-        Supermarket supermarket = supermarketDAO.getSupermarketById(supermarketId);
-        Province province = provinceDAO.getProvinceById(provinceId);
-
-        if (supermarket == null || province == null) {
+        // La existencia del supermercado y la provincia la comprueban las claves foráneas
+        Location newLocation = new Location(address, city, new Supermarket(supermarketId, null),
+                new Province(provinceId, null, null, null));
+        try {
+            locationDAO.insertLocation(newLocation);
+        } catch (SQLException e) {
+            if (!SQLErrors.isMissingReference(e)) {
+                throw e;
+            }
             logger.warn("Supermercado o provincia no válidos.");
             request.setAttribute("errorMessage", "El supermercado o la provincia seleccionada no existen.");
             showNewForm(request, response);
             return;
         }
-
-        Location newLocation = new Location(address, city, supermarket, province);
-        locationDAO.insertLocation(newLocation);
         logger.info("Ubicación insertada: {} - {}", address, city);
 
         response.sendRedirect("locations");
@@ -252,18 +339,20 @@ public class LocationServlet extends HttpServlet {
         int supermarketId = Integer.parseInt(supermarketIdStr);
         int provinceId = Integer.parseInt(provinceIdStr);
 
-        Supermarket supermarket = supermarketDAO.getSupermarketById(supermarketId);
-        Province province = provinceDAO.getProvinceById(provinceId);
-
-        if (supermarket == null || province == null) {
+        // La existencia del supermercado y la provincia la comprueban las claves foráneas
+        Location location = new Location(id, address, city, new Supermarket(supermarketId, null),
+                new Province(provinceId, null, null, null));
+        try {
+            locationDAO.updateLocation(location);
+        } catch (SQLException e) {
+            if (!SQLErrors.isMissingReference(e)) {
+                throw e;
+            }
             logger.warn("Supermercado o provincia no válidos.");
             request.setAttribute("errorMessage", "El supermercado o la provincia seleccionada no existen.");
             showEditForm(request, response);
             return;
         }
-
-        Location location = new Location(id, address, city, supermarket, province);
-        locationDAO.updateLocation(location);
         logger.info("Ubicación actualizada: {} - {}", address, city);
 
         response.sendRedirect("locations");
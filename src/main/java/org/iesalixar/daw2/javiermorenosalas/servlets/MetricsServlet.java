@@ -0,0 +1,27 @@
+package org.iesalixar.daw2.javiermorenosalas.servlets;
+
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.iesalixar.daw2.javiermorenosalas.metrics.MetricsRegistry;
+
+import java.io.IOException;
+
+
+/**
+ * Servlet que expone las métricas de la aplicación en formato de texto de Prometheus.
+ */
+@WebServlet("/metrics")
+public class MetricsServlet extends HttpServlet {
+
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        response.setContentType("text/plain; version=0.0.4; charset=utf-8");
+        response.setHeader("Cache-Control", "no-store");
+        MetricsRegistry.write(response.getWriter());
+    }
+}
@@ -2,14 +2,17 @@ package org.iesalixar.daw2.javiermorenosalas.servlets;
 
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
-import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.iesalixar.daw2.javiermorenosalas.dao.AsyncDAO;
 import org.iesalixar.daw2.javiermorenosalas.dao.ProvinceDAO;
+import org.iesalixar.daw2.javiermorenosalas.dao.CachingProvinceDAO;
 import org.iesalixar.daw2.javiermorenosalas.dao.ProvinceDAOImpl;
 import org.iesalixar.daw2.javiermorenosalas.entity.Province;
+import org.iesalixar.daw2.javiermorenosalas.dao.CachingRegionDAO;
 import org.iesalixar.daw2.javiermorenosalas.dao.RegionDAOImpl;
 import org.iesalixar.daw2.javiermorenosalas.dao.RegionDAO;
+import org.iesalixar.daw2.javiermorenosalas.dao.SQLErrors;
 import org.iesalixar.daw2.javiermorenosalas.entity.Region;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -17,6 +20,8 @@ import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Servlet que maneja las operaciones CRUD para la entidad `Province`.
@@ -31,15 +36,22 @@ import java.util.List;
  *
  * Este servlet está mapeado en la URL `/provinces`.
  */
-@WebServlet("/provinces")
-public class ProvinceServlet extends HttpServlet {
+@WebServlet(value = "/provinces", asyncSupported = true)
+public class ProvinceServlet extends AsyncDatabaseServlet {
 
     private static final Logger logger = LoggerFactory.getLogger(ProvinceServlet.class);
 
+    // Tiempo máximo para cargar en paralelo los datos del formulario de edición
+    private static final long FORM_LOAD_TIMEOUT_MILLIS = 5000;
+
     // DAOs para gestionar las operaciones de las provincias y regiones en la base de datos
     private RegionDAO regionDAO;
     private ProvinceDAO provinceDAO;
 
+    // Fachadas asíncronas para cargar a la vez la provincia y las regiones
+    private AsyncDAO<RegionDAO> asyncRegionDAO;
+    private AsyncDAO<ProvinceDAO> asyncProvinceDAO;
+
     /**
      * Inicializa los DAOs al arrancar el servlet. Si ocurre algún error durante la
      * inicialización, se lanza una excepción `ServletException`.
@@ -49,8 +61,10 @@ public class ProvinceServlet extends HttpServlet {
     @Override
     public void init() throws ServletException {
         try {
-            regionDAO = new RegionDAOImpl();
-            provinceDAO = new ProvinceDAOImpl();
+            regionDAO = new CachingRegionDAO(new RegionDAOImpl());
+            provinceDAO = new CachingProvinceDAO(new ProvinceDAOImpl());
+            asyncRegionDAO = new AsyncDAO<>(regionDAO);
+            asyncProvinceDAO = new AsyncDAO<>(provinceDAO);
             logger.info("DAOs inicializados correctamente.");
         } catch (Exception e) {
             logger.error("Error al inicializar los DAOs: {}", e.getMessage(), e);
@@ -189,15 +203,21 @@ public class ProvinceServlet extends HttpServlet {
             throws SQLException, ServletException, IOException {
         int id = Integer.parseInt(request.getParameter("id"));
 
-        // Obtener la provincia existente por su ID
-        Province existingProvince = provinceDAO.getProvinceById(id);
-
-        // Obtener todas las regiones
-        List<Region> listRegions = regionDAO.listAllRegions();
+        // Obtener a la vez la provincia existente y todas las regiones (tras un POST fallido, una tras
+        // otra con la conexión de la petición)
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FORM_LOAD_TIMEOUT_MILLIS);
+        CompletableFuture<Province> province = asyncProvinceDAO.supply(dao -> dao.getProvinceById(id));
+        CompletableFuture<List<Region>> regions = asyncRegionDAO.supply(RegionDAO::listAllRegions);
 
         // Pasar la provincia y la lista de regiones a la vista
-        request.setAttribute("province", existingProvince);
-        request.setAttribute("listRegions", listRegions);
+        try {
+            request.setAttribute("province", AsyncDAO.await(province, deadline));
+            request.setAttribute("listRegions", AsyncDAO.await(regions, deadline));
+        } finally {
+            // Si una carga falla, la otra ya no se necesita
+            province.cancel(true);
+            regions.cancel(true);
+        }
 
         // Mostrar el formulario para editar la provincia
         request.getRequestDispatcher("province-form.jsp").forward(request, response);
@@ -232,18 +252,17 @@ public class ProvinceServlet extends HttpServlet {
         // Convertir los valores necesarios a enteros
         int regionId = Integer.parseInt(regionIdStr);
 
-        // Verificar si la región existe
-        Region region = regionDAO.getRegionById(regionId);
-        if (region == null) {
-            logger.warn("La región seleccionada no existe para la nueva provincia con código: {}", code);
-            request.setAttribute("errorMessage", "La región seleccionada no existe.");
-            request.getRequestDispatcher("province-form.jsp").forward(request, response);
+        // Crear nueva provincia y asociarla a la región; la clave foránea comprueba que la región exista
+        Province newProvince = new Province(code, name, new Region(regionId, null, null));  // No se necesita 'id' aquí
+        try {
+            provinceDAO.insertProvince(newProvince);
+        } catch (SQLException e) {
+            if (!handleConstraintViolation(e, request, response)) {
+                throw e;
+            }
+            logger.warn("No se pudo insertar la provincia con código {}: {}", code, e.getMessage());
             return;
         }
-
-        // Crear nueva provincia y asociarla a la región
-        Province newProvince = new Province(code, name, region);  // No se necesita 'id' aquí
-        provinceDAO.insertProvince(newProvince);
         logger.info("Provincia insertada: {} - {}", code, name);
 
         response.sendRedirect("provinces");
@@ -284,23 +303,46 @@ public class ProvinceServlet extends HttpServlet {
 
         int regionId = Integer.parseInt(regionIdStr);
 
-        // Verificar si la región existe
-        Region region = regionDAO.getRegionById(regionId);
-        if (region == null) {
-            logger.warn("La región seleccionada no existe para la provincia con ID: {}", id);
-            request.setAttribute("errorMessage", "La región seleccionada no existe.");
-            request.getRequestDispatcher("province-form.jsp").forward(request, response);
+        // Actualizar la provincia; la clave foránea comprueba que la región exista
+        Province updatedProvince = new Province(id, code, name, new Region(regionId, null, null));
+        try {
+            provinceDAO.updateProvince(updatedProvince);
+        } catch (SQLException e) {
+            if (!handleConstraintViolation(e, request, response)) {
+                throw e;
+            }
+            logger.warn("No se pudo actualizar la provincia con ID {}: {}", id, e.getMessage());
             return;
         }
-
-        // Actualizar la provincia
-        Province updatedProvince = new Province(id, code, name, region);
-        provinceDAO.updateProvince(updatedProvince);
         logger.info("Provincia actualizada: ID = {}, Código = {}, Nombre = {}", id, code, name);
 
         response.sendRedirect("provinces");
     }
 
+    /**
+     * Si el error se debe a una restricción de la base de datos (región inexistente o código
+     * repetido), vuelve a mostrar el formulario con el mensaje correspondiente.
+     *
+     * @param e        El error devuelto por la base de datos.
+     * @param request  La solicitud HTTP.
+     * @param response La respuesta HTTP.
+     * @return true si el error se ha tratado, false si debe propagarse.
+     * @throws IOException en caso de error de entrada/salida.
+     * @throws ServletException en caso de error en el servlet.
+     */
+    private boolean handleConstraintViolation(SQLException e, HttpServletRequest request, HttpServletResponse response)
+            throws IOException, ServletException {
+        if (SQLErrors.isMissingReference(e)) {
+            request.setAttribute("errorMessage", "La región seleccionada no existe.");
+        } else if (SQLErrors.isDuplicateKey(e)) {
+            request.setAttribute("errorMessage", "El código de la provincia ya existe.");
+        } else {
+            return false;
+        }
+        request.getRequestDispatcher("province-form.jsp").forward(request, response);
+        return true;
+    }
+
     /**
      * Elimina una provincia de la base de datos.
      *
@@ -0,0 +1,82 @@
+package org.iesalixar.daw2.javiermorenosalas.servlets;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.annotation.WebServlet;
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.iesalixar.daw2.javiermorenosalas.dao.QueryInstrumentation;
+import org.iesalixar.daw2.javiermorenosalas.dao.QueryStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+
+/**
+ * Servlet de diagnóstico que muestra en JSON las estadísticas acumuladas por sentencia SQL,
+ * ordenadas de mayor a menor tiempo total (ver {@link QueryInstrumentation}).
+ *
+ * Las sentencias muestran la estructura de las tablas, así que solo se sirven a clientes de la
+ * propia máquina; al resto se les responde 404 como si el servlet no existiera.
+ */
+@WebServlet("/diagnostics/queries")
+public class QueryDiagnosticsServlet extends HttpServlet {
+
+
+    private static final Logger logger = LoggerFactory.getLogger(QueryDiagnosticsServlet.class);
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws ServletException, IOException {
+        if (!isLocal(request)) {
+            logger.warn("Acceso denegado a las estadísticas de sentencias SQL desde {}", request.getRemoteAddr());
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        response.setContentType("application/json;charset=UTF-8");
+        response.setHeader("Cache-Control", "no-store");
+
+        try (JsonGenerator generator = jsonFactory.createGenerator(response.getWriter())) {
+            generator.writeStartObject();
+            generator.writeBooleanField("enabled", QueryInstrumentation.isEnabled());
+            generator.writeNumberField("slowQueryMillis", QueryInstrumentation.getSlowQueryMillis());
+            generator.writeArrayFieldStart("queries");
+            for (QueryStats stats : QueryInstrumentation.getStats()) {
+                generator.writeStartObject();
+                generator.writeStringField("sql", stats.getSql());
+                generator.writeNumberField("calls", stats.getCalls());
+                generator.writeNumberField("errors", stats.getErrors());
+                generator.writeNumberField("rows", stats.getRows());
+                generator.writeNumberField("totalMillis", stats.getTotalMillis());
+                generator.writeNumberField("executeMillis", stats.getExecuteMillis());
+                generator.writeNumberField("fetchMillis", stats.getFetchMillis());
+                generator.writeNumberField("averageMillis", stats.getAverageMillis());
+                generator.writeNumberField("maxMillis", stats.getMaxMillis());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        }
+    }
+
+    /**
+     * @return Si la petición llega desde la propia máquina. La dirección remota ya es una IP, así
+     *         que no se resuelve ningún nombre.
+     */
+    private static boolean isLocal(HttpServletRequest request) {
+        try {
+            return InetAddress.getByName(request.getRemoteAddr()).isLoopbackAddress();
+        } catch (UnknownHostException e) {
+            return false;
+        }
+    }
+}
@@ -3,11 +3,12 @@ package org.iesalixar.daw2.javiermorenosalas.servlets;
 import jakarta.servlet.RequestDispatcher;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
-import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.iesalixar.daw2.javiermorenosalas.dao.RegionDAO;
+import org.iesalixar.daw2.javiermorenosalas.dao.CachingRegionDAO;
 import org.iesalixar.daw2.javiermorenosalas.dao.RegionDAOImpl;
+import org.iesalixar.daw2.javiermorenosalas.dao.SQLErrors;
 import org.iesalixar.daw2.javiermorenosalas.entity.Region;
 import org.slf4j.Logger;      // Importa el logger
 import org.slf4j.LoggerFactory; // Importa el factory para crear instancias del logger
@@ -20,8 +21,8 @@ import java.util.List;
  * Servlet que maneja las operaciones CRUD para la entidad `Region`.
  * Utiliza `RegionDAO` para interactuar con la base de datos.
  */
-@WebServlet("/regions")
-public class RegionServlet extends HttpServlet {
+@WebServlet(value = "/regions", asyncSupported = true)
+public class RegionServlet extends AsyncDatabaseServlet {
 
     // Logger para registrar eventos
     private static final Logger logger = LoggerFactory.getLogger(RegionServlet.class);
@@ -32,7 +33,7 @@ public class RegionServlet extends HttpServlet {
     @Override
     public void init() throws ServletException {
         try {
-            regionDAO = new RegionDAOImpl();
+            regionDAO = new CachingRegionDAO(new RegionDAOImpl());
             logger.info("RegionDAO inicializado correctamente.");  // Logueo al inicializar
         } catch (Exception e) {
             logger.error("Error al inicializar el RegionDAO", e);
@@ -194,10 +195,11 @@ public class RegionServlet extends HttpServlet {
             regionDAO.insertRegion(newRegion);
             logger.info("Región insertada: {} - {}", code, name); // Logueo de éxito
         } catch (SQLException e) {
-            if (e.getSQLState().equals("23505")) { // Código SQL para unique constraint violation
+            if (SQLErrors.isDuplicateKey(e)) { // Otra petición ha insertado el mismo código a la vez
                 request.setAttribute("errorMessage", "El código de la región debe ser único.");
                 logger.warn("Error al insertar región: código no único."); // Logueo de advertencia
                 request.getRequestDispatcher("region-form.jsp").forward(request, response);
+                return;
             } else {
                 logger.error("Error al insertar región", e); // Logueo de error
                 throw e;
@@ -229,8 +231,8 @@ public class RegionServlet extends HttpServlet {
             return;
         }
 
-        Region existingRegion = regionDAO.getRegionById(id);
-        if (existingRegion != null && !existingRegion.getCode().equals(code) && regionDAO.existsRegionByCode(code)) {
+        // Validar si otra región tiene ya el código, ignorando mayúsculas
+        if (regionDAO.existsRegionByCodeAndNotId(code, id)) {
             request.setAttribute("errorMessage", "El código de la región ya existe.");
             logger.warn("Intento de actualizar región fallido: código ya existe."); // Logueo de advertencia
             request.getRequestDispatcher("region-form.jsp").forward(request, response);
@@ -242,6 +244,12 @@ public class RegionServlet extends HttpServlet {
             regionDAO.updateRegion(updatedRegion);
             logger.info("Región actualizada: {} - {}", code, name); // Logueo de éxito
         } catch (SQLException e) {
+            if (SQLErrors.isDuplicateKey(e)) { // Otra petición ha guardado el mismo código a la vez
+                request.setAttribute("errorMessage", "El código de la región debe ser único.");
+                logger.warn("Error al actualizar región: código no único."); // Logueo de advertencia
+                request.getRequestDispatcher("region-form.jsp").forward(request, response);
+                return;
+            }
             logger.error("Error al actualizar región", e); // Logueo de error
             throw e;
         }
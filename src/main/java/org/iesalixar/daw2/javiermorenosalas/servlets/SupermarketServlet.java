@@ -3,10 +3,10 @@ package org.iesalixar.daw2.javiermorenosalas.servlets;
 import jakarta.servlet.RequestDispatcher;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.annotation.WebServlet;
-import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.iesalixar.daw2.javiermorenosalas.dao.SupermarketDAO;
+import org.iesalixar.daw2.javiermorenosalas.dao.CachingSupermarketDAO;
 import org.iesalixar.daw2.javiermorenosalas.dao.SupermarketDAOImpl;
 import org.iesalixar.daw2.javiermorenosalas.entity.Supermarket;
 import org.slf4j.Logger;
@@ -16,8 +16,8 @@ import java.io.IOException;
 import java.sql.SQLException;
 import java.util.List;
 
-@WebServlet("/supermarkets")
-public class SupermarketServlet extends HttpServlet {
+@WebServlet(value = "/supermarkets", asyncSupported = true)
+public class SupermarketServlet extends AsyncDatabaseServlet {
 
     // Logger para registrar eventos
     private static final Logger logger = LoggerFactory.getLogger(SupermarketServlet.class);
@@ -28,7 +28,7 @@ public class SupermarketServlet extends HttpServlet {
     @Override
     public void init() throws ServletException {
         try {
-            supermarketDAO = new SupermarketDAOImpl();
+            supermarketDAO = new CachingSupermarketDAO(new SupermarketDAOImpl());
             logger.info("SupermarketDAO inicializado correctamente.");
         } catch (Exception e) {
             logger.error("Error al inicializar el SupermarketDAO", e);
@@ -6,6 +6,11 @@ CREATE TABLE IF NOT EXISTS regions (
 );
 
 
+-- Código normalizado en mayúsculas e indexado: las comprobaciones de código repetido buscan por
+-- esta columna en lugar de usar UPPER(code), que no puede aprovechar ningún índice
+ALTER TABLE regions ADD COLUMN IF NOT EXISTS code_normalized VARCHAR(10) AS (UPPER(code)) PERSISTENT;
+CREATE INDEX IF NOT EXISTS idx_regions_code_normalized ON regions (code_normalized);
+
 -- Inserts de las Comunidades Autónomas, ignora si se produce un error en la insercción
 INSERT IGNORE INTO regions (code, name) VALUES
 ('01', 'ANDALUCÍA'),
@@ -36,6 +41,11 @@ CREATE TABLE IF NOT EXISTS provinces (
     FOREIGN KEY (id_region) REFERENCES regions(id)
 );
 
+-- Código normalizado en mayúsculas e indexado: las comprobaciones de código repetido buscan por
+-- esta columna en lugar de usar UPPER(code), que no puede aprovechar ningún índice
+ALTER TABLE provinces ADD COLUMN IF NOT EXISTS code_normalized VARCHAR(10) AS (UPPER(code)) PERSISTENT;
+CREATE INDEX IF NOT EXISTS idx_provinces_code_normalized ON provinces (code_normalized);
+
 -- Insertar datos de las provincias españolas con los códigos correctos
 INSERT IGNORE INTO provinces (code, name, id_region) VALUES
 ('01', 'Araba/Álava', 16),
@@ -0,0 +1,34 @@
+<%@ include file="header.jsp" %>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/core" prefix="c" %>
+<%@ taglib uri="http://java.sun.com/jsp/jstl/fmt" prefix="fmt" %>
+
+<h1><fmt:message key="msg.locations-import.title" /></h1>
+
+<c:if test="${not empty errorMessage}">
+    <div class="error-message">${errorMessage}</div>
+</c:if>
+
+<!-- Formulario de subida del archivo CSV (address,city,supermarket,province) -->
+<p><fmt:message key="msg.locations-import.help" /></p>
+<form action="locations-import" method="post" enctype="multipart/form-data">
+    <input type="file" name="file" accept=".csv,text/csv" required>
+    <input type="submit" value="<fmt:message key='msg.locations-import.submit' />">
+</form>
+
+<!-- Informe de la importación -->
+<c:if test="${not empty importedCount}">
+    <h2><fmt:message key="msg.locations-import.result" /></h2>
+    <p><fmt:message key="msg.locations-import.imported" />: ${importedCount}</p>
+    <p><fmt:message key="msg.locations-import.failed" />: ${failedCount}</p>
+    <c:if test="${not empty importErrors}">
+        <ul>
+            <c:forEach var="importError" items="${importErrors}">
+                <li><c:out value="${importError}" /></li>
+            </c:forEach>
+        </ul>
+    </c:if>
+</c:if>
+
+<a href="locations"><fmt:message key="msg.locations-form.returnback" /></a>
+
+<%@ include file="footer.jsp" %>
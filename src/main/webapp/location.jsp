@@ -14,6 +14,9 @@
 <!-- Muestra la lista de ubicaciones solo si no hay error -->
 <c:if test="${empty errorMessage}">
     <a href="locations?action=new"><fmt:message key="msg.locations.add" /></a>
+    <a href="locations/export?format=csv"><fmt:message key="msg.locations.export.csv" /></a>
+    <a href="locations/export?format=json"><fmt:message key="msg.locations.export.json" /></a>
+    <a href="locations-import"><fmt:message key="msg.locations.import" /></a>
     <table border="1">
         <thead>
             <tr>
@@ -51,6 +54,14 @@
             </c:forEach>
         </tbody>
     </table>
+
+    <!-- Enlaces de paginación: la página se identifica por el ID de la primera o última ubicación -->
+    <c:if test="${not empty previousCursor}">
+        <a href="locations?before=${previousCursor}&size=${pageSize}"><fmt:message key="msg.locations.previous" /></a>
+    </c:if>
+    <c:if test="${not empty nextCursor}">
+        <a href="locations?after=${nextCursor}&size=${pageSize}"><fmt:message key="msg.locations.next" /></a>
+    </c:if>
 </c:if>
 
 <%@ include file="footer.jsp" %>
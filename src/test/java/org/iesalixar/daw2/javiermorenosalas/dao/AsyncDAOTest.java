@@ -0,0 +1,81 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AsyncDAOTest {
+
+    private final AsyncDAO<Object> asyncDAO = new AsyncDAO<>(new Object());
+
+    @AfterEach
+    void tearDown() {
+        UnitOfWork leftOver = UnitOfWork.current();
+        if (leftOver != null) {
+            leftOver.close();
+        }
+    }
+
+    @Test
+    void runsOnVirtualThreadOutsideUnitOfWork() throws SQLException {
+        Thread caller = Thread.currentThread();
+
+        Thread worker = AsyncDAO.await(asyncDAO.supply(dao -> Thread.currentThread()), deadline());
+
+        assertNotSame(caller, worker);
+        assertTrue(worker.isVirtual());
+    }
+
+    @Test
+    void runsOnVirtualThreadInsideReadOnlyUnitOfWork() throws SQLException {
+        try (UnitOfWork ignored = UnitOfWork.begin(false, connection())) {
+            Thread worker = AsyncDAO.await(asyncDAO.supply(dao -> Thread.currentThread()), deadline());
+
+            assertNotSame(Thread.currentThread(), worker);
+        }
+    }
+
+    @Test
+    void runsInlineInsideTransactionalUnitOfWork() throws SQLException {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(true, connection())) {
+            CompletableFuture<UnitOfWork> seen = asyncDAO.supply(dao -> UnitOfWork.current());
+
+            // Ya está resuelto: la llamada usa la unidad (y la conexión) de la petición
+            assertTrue(seen.isDone());
+            assertSame(unitOfWork, AsyncDAO.await(seen, deadline()));
+        }
+    }
+
+    @Test
+    void inlineCallReportsSqlExceptionThroughAwait() throws SQLException {
+        SQLException failure = new SQLException("fallo");
+        try (UnitOfWork ignored = UnitOfWork.begin(true, connection())) {
+            CompletableFuture<Object> future = asyncDAO.supply(dao -> {
+                throw failure;
+            });
+
+            assertSame(failure, assertThrows(SQLException.class, () -> AsyncDAO.await(future, deadline())));
+        }
+    }
+
+    private static long deadline() {
+        return System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    }
+
+    private static Connection connection() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        return connection;
+    }
+}
@@ -0,0 +1,245 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CircuitBreakerTest {
+
+    private static final long SLOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long OPEN_MILLIS = 50;
+
+    private final AtomicBoolean healthy = new AtomicBoolean(true);
+    // Ventana de 10, mínimo 4 llamadas, 50 % de fallos o lentas, 2 llamadas de prueba
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 10, 4, 50, 100, 50, OPEN_MILLIS, 2, healthy::get);
+
+    @AfterEach
+    void tearDown() {
+        breaker.shutdown();
+    }
+
+    @Test
+    void staysClosedUntilMinimumCalls() {
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(1, breaker.getTimesOpened());
+    }
+
+    @Test
+    void staysClosedBelowFailureRate() {
+        breaker.onFailure(0);
+        for (int i = 0; i < 9; i++) {
+            breaker.onSuccess(0);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void opensOnSlowCallRate() {
+        breaker.onSuccess(0);
+        breaker.onSuccess(0);
+        breaker.onSuccess(SLOW_NANOS);
+        breaker.onSuccess(SLOW_NANOS);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void oldResultsLeaveTheWindow() {
+        breaker.onFailure(0);
+        for (int i = 0; i < 9; i++) {
+            breaker.onSuccess(0);
+        }
+        // El primer fallo sale de la ventana de 10: quedan 4 fallos de 10, por debajo del 50 %
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(0);
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        breaker.onFailure(0);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void rejectsCallsWhileOpen() {
+        open();
+
+        assertThrows(SQLTransientConnectionException.class, breaker::acquirePermission);
+        assertEquals(1, breaker.getRejectedCalls());
+    }
+
+    @Test
+    void keepsProbingWhileDatabaseIsDown() throws InterruptedException {
+        healthy.set(false);
+        open();
+
+        Thread.sleep(OPEN_MILLIS * 4);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+
+        healthy.set(true);
+        awaitState(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    @Test
+    void closesAfterSuccessfulTrialCalls() throws SQLTransientConnectionException {
+        openAndAwaitHalfOpen();
+
+        assertTrue(breaker.acquirePermission());
+        assertTrue(breaker.acquirePermission());
+        breaker.onTrialResult(0, false);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        breaker.onTrialResult(0, false);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertFalse(assertDoesNotThrow(breaker::acquirePermission));
+    }
+
+    @Test
+    void ignoresCallResultsWhileHalfOpen() throws SQLTransientConnectionException {
+        openAndAwaitHalfOpen();
+
+        // Sentencias de conexiones sin permiso de prueba (prestadas antes de abrirse el circuito)
+        for (int i = 0; i < 10; i++) {
+            breaker.onSuccess(0);
+            breaker.onFailure(0);
+        }
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertEquals(2, breaker.getHalfOpenPermits());
+
+        // Cuenta el resultado de cada permiso, no el de cada sentencia
+        breaker.acquirePermission();
+        breaker.onTrialResult(0, false);
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+    }
+
+    @Test
+    void countsConcurrentResultsExactly() throws InterruptedException {
+        // Ventana de 1000 sin umbral alcanzable: solo se comprueban los contadores
+        CircuitBreaker large = new CircuitBreaker("concurrent", 1000, 1000, 101, 100, 101, OPEN_MILLIS, 2, healthy::get);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    large.onFailure(0);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Tras llenarse la ventana cada fallo que entra saca otro: siguen siendo 1000 y no se abre
+        assertEquals(CircuitBreaker.State.CLOSED, large.getState());
+        assertEquals(1000, large.getWindowFailures());
+        large.shutdown();
+    }
+
+    @Test
+    void rejectsOnceTrialPermitsRunOut() throws SQLTransientConnectionException {
+        openAndAwaitHalfOpen();
+
+        breaker.acquirePermission();
+        breaker.acquirePermission();
+        assertThrows(SQLTransientConnectionException.class, breaker::acquirePermission);
+        assertThrows(SQLTransientConnectionException.class, breaker::acquirePermission);
+
+        // Los rechazos no dejan los permisos en negativo: uno devuelto vuelve a servir
+        breaker.releasePermission();
+        assertEquals(1, breaker.getHalfOpenPermits());
+        assertDoesNotThrow(breaker::acquirePermission);
+    }
+
+    @Test
+    void releaseDoesNotExceedPendingTrials() throws SQLTransientConnectionException {
+        openAndAwaitHalfOpen();
+
+        breaker.acquirePermission();
+        breaker.onTrialResult(0, false);
+        breaker.releasePermission();
+
+        assertEquals(1, breaker.getHalfOpenPermits());
+    }
+
+    @Test
+    void reopensOnFailedTrialCall() throws SQLTransientConnectionException {
+        openAndAwaitHalfOpen();
+
+        breaker.acquirePermission();
+        breaker.onTrialResult(0, true);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertEquals(2, breaker.getTimesOpened());
+    }
+
+    @Test
+    void reopensOnSlowTrialCall() throws SQLTransientConnectionException {
+        openAndAwaitHalfOpen();
+
+        breaker.acquirePermission();
+        breaker.onTrialResult(SLOW_NANOS, false);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    void restoresPermitsOfTrialCallsThatNeverReport() throws SQLTransientConnectionException {
+        openAndAwaitHalfOpen();
+
+        // Las dos llamadas de prueba se pierden sin informar del resultado
+        breaker.acquirePermission();
+        breaker.acquirePermission();
+        assertEquals(0, breaker.getHalfOpenPermits());
+
+        await(() -> breaker.getHalfOpenPermits() == 2, "no se repusieron los permisos de prueba");
+        breaker.acquirePermission();
+        breaker.acquirePermission();
+        breaker.onTrialResult(0, false);
+        breaker.onTrialResult(0, false);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    private void open() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure(0);
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    private void openAndAwaitHalfOpen() {
+        open();
+        awaitState(CircuitBreaker.State.HALF_OPEN);
+    }
+
+    private void awaitState(CircuitBreaker.State expected) {
+        await(() -> breaker.getState() == expected, "el circuito no pasó a " + expected);
+    }
+
+    private static void await(BooleanSupplier condition, String message) {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, message);
+            try {
+                Thread.sleep(5);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AssertionError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.iesalixar.daw2.javiermorenosalas.entity.Region;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class CodeIndexTest {
+
+    private CodeIndex<Region> index;
+
+    @BeforeEach
+    void setUp() {
+        index = CodeIndex.create("test", 60_000, Region::getId, Region::getCode);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UnitOfWork leftOver = UnitOfWork.current();
+        if (leftOver != null) {
+            leftOver.close();
+        }
+    }
+
+    @Test
+    void fallsBackUntilLoaded() {
+        assertNull(index.containsCode("AN", 0));
+        assertEquals(1, index.getFallbacks());
+        assertEquals(0, index.getHits());
+    }
+
+    @Test
+    void fallsBackOnceExpired() throws SQLException {
+        CodeIndex<Region> expired = CodeIndex.create("expired", -1, Region::getId, Region::getCode);
+        expired.reload(() -> List.of(region(1, "AN")));
+
+        assertNull(expired.containsCode("AN", 0));
+    }
+
+    @Test
+    void matchesCodesIgnoringCaseAndExcludedId() throws SQLException {
+        List<Region> rows = List.of(region(1, "AN"), region(2, "Ct"));
+        assertEquals(rows, index.reload(() -> rows));
+
+        assertTrue(index.containsCode("an", 0));
+        assertTrue(index.containsCode(" CT ", 0));
+        assertFalse(index.containsCode("MD", 0));
+        // Al editar una fila, su propio código no cuenta como repetido
+        assertFalse(index.containsCode("AN", 1));
+        assertTrue(index.containsCode("AN", 2));
+        assertEquals(5, index.getHits());
+    }
+
+    @Test
+    void tracksWritesOutsideUnitOfWork() throws SQLException {
+        index.reload(() -> List.of(region(1, "AN")));
+
+        index.put(2, "md");
+        assertTrue(index.containsCode("MD", 0));
+
+        // Cambiar el código libera el anterior
+        index.put(1, "AR");
+        assertFalse(index.containsCode("AN", 0));
+        assertTrue(index.containsCode("AR", 0));
+
+        index.remove(2);
+        assertFalse(index.containsCode("MD", 0));
+    }
+
+    @Test
+    void appliesTransactionalWritesOnlyAfterCommit() throws SQLException {
+        index.reload(() -> List.of(region(1, "AN")));
+
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(true, connection())) {
+            index.put(2, "MD");
+            // El índice aún no tiene la escritura: la comprobación debe ir a la base de datos
+            assertNull(index.containsCode("MD", 0));
+            unitOfWork.commit();
+        }
+        assertTrue(index.containsCode("MD", 0));
+
+        try (UnitOfWork ignored = UnitOfWork.begin(true, connection())) {
+            index.remove(2);
+        }
+        assertTrue(index.containsCode("MD", 0));
+    }
+
+    @Test
+    void otherThreadsKeepUsingIndexDuringTransaction() throws Exception {
+        index.reload(() -> List.of(region(1, "AN")));
+
+        try (UnitOfWork ignored = UnitOfWork.begin(true, connection())) {
+            index.put(2, "MD");
+            Boolean[] seen = new Boolean[1];
+            Thread other = new Thread(() -> seen[0] = index.containsCode("MD", 0));
+            other.start();
+            other.join();
+            assertFalse(seen[0]);
+        }
+        // Al cerrar la unidad de trabajo el índice vuelve a responder en este hilo
+        assertFalse(index.containsCode("MD", 0));
+    }
+
+    @Test
+    void discardsLoadThatRacedWithWrite() throws SQLException {
+        index.reload(() -> List.of(region(1, "AN")));
+
+        index.reload(() -> {
+            // Escritura mientras la carga está en curso: la carga no debe pisarla
+            index.put(2, "MD");
+            return List.of(region(1, "AN"));
+        });
+
+        assertTrue(index.containsCode("MD", 0));
+    }
+
+    @Test
+    void transactionalLoadDoesNotRebuildIndex() throws SQLException {
+        try (UnitOfWork ignored = UnitOfWork.begin(true, connection())) {
+            index.reload(() -> List.of(region(1, "AN")));
+        }
+
+        assertNull(index.containsCode("AN", 0));
+    }
+
+    private static Region region(int id, String code) {
+        Region region = new Region(code, "Región " + code);
+        region.setId(id);
+        return region;
+    }
+
+    private static Connection connection() throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.getAutoCommit()).thenReturn(true);
+        return connection;
+    }
+}
@@ -0,0 +1,172 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConnectionPoolTest {
+
+    private static final long TIMEOUT_MILLIS = 100;
+
+    private StubDriver driver;
+    private ConnectionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        driver = StubDriver.reset();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    private ConnectionPool createPool(int minSize, int maxSize) {
+        pool = new ConnectionPool(StubDriver.URL, "user", "password", minSize, maxSize,
+                600000, TIMEOUT_MILLIS, 1, 0);
+        return pool;
+    }
+
+    @Test
+    void opensMinimumConnectionsOnStart() {
+        createPool(2, 5);
+
+        assertEquals(2, pool.getTotalConnections());
+        assertEquals(2, pool.getIdleConnections());
+        assertEquals(0, pool.getActiveConnections());
+    }
+
+    @Test
+    void closeReturnsPhysicalConnectionToPool() throws SQLException {
+        createPool(1, 2);
+
+        Connection connection = pool.getConnection();
+        assertEquals(1, pool.getActiveConnections());
+        assertEquals(0, pool.getIdleConnections());
+
+        connection.close();
+
+        assertTrue(connection.isClosed());
+        assertEquals(0, pool.getActiveConnections());
+        assertEquals(1, pool.getIdleConnections());
+        verify(driver.opened().get(0), never()).close();
+    }
+
+    @Test
+    void returnedConnectionIsReused() throws SQLException {
+        createPool(0, 2);
+
+        pool.getConnection().close();
+        pool.getConnection().close();
+
+        assertEquals(1, driver.opened().size());
+        assertEquals(1, pool.getTotalConnections());
+    }
+
+    @Test
+    void opensNewConnectionWhenNoneIsIdle() throws SQLException {
+        createPool(1, 3);
+
+        Connection first = pool.getConnection();
+        Connection second = pool.getConnection();
+
+        assertEquals(2, pool.getTotalConnections());
+        assertEquals(2, pool.getActiveConnections());
+        first.close();
+        second.close();
+    }
+
+    @Test
+    void timesOutWhenAllConnectionsAreLent() throws SQLException {
+        createPool(0, 1);
+        Connection lent = pool.getConnection();
+
+        long start = System.nanoTime();
+        // Tipo propio para que el cortocircuito no lo cuente como un fallo de la base de datos
+        assertThrows(ConnectionPool.NoConnectionAvailableException.class, pool::getConnection);
+        long waitedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertTrue(waitedMillis >= TIMEOUT_MILLIS - 10, "Esperó solo " + waitedMillis + " ms");
+        lent.close();
+        pool.getConnection().close();
+    }
+
+    @Test
+    void doubleCloseReleasesOnlyOnce() throws SQLException {
+        createPool(0, 1);
+
+        Connection connection = pool.getConnection();
+        connection.close();
+        connection.close();
+        assertEquals(0, pool.getActiveConnections());
+
+        // Si el segundo close hubiera devuelto otro permiso, cabrían dos préstamos a la vez
+        Connection other = pool.getConnection();
+        assertThrows(SQLTransientConnectionException.class, pool::getConnection);
+        other.close();
+    }
+
+    @Test
+    void returnedConnectionCannotBeUsed() throws SQLException {
+        createPool(0, 1);
+
+        Connection connection = pool.getConnection();
+        connection.close();
+
+        assertThrows(SQLException.class, connection::createStatement);
+    }
+
+    @Test
+    void rollsBackOpenTransactionOnReturn() throws SQLException {
+        createPool(0, 1);
+        Connection connection = pool.getConnection();
+        Connection physical = driver.opened().get(0);
+        when(physical.getAutoCommit()).thenReturn(false);
+
+        connection.close();
+
+        verify(physical).rollback();
+        verify(physical).setAutoCommit(true);
+    }
+
+    @Test
+    void discardsConnectionClosedWhileLent() throws SQLException {
+        createPool(0, 1);
+        Connection connection = pool.getConnection();
+        when(driver.opened().get(0).isClosed()).thenReturn(true);
+
+        connection.close();
+
+        assertEquals(0, pool.getTotalConnections());
+        assertEquals(0, pool.getIdleConnections());
+        assertEquals(0, pool.getActiveConnections());
+    }
+
+    @Test
+    void closedPoolRejectsBorrowAndDiscardsReturns() throws SQLException {
+        createPool(1, 2);
+        Connection connection = pool.getConnection();
+
+        pool.close();
+
+        assertThrows(SQLException.class, pool::getConnection);
+        connection.close();
+        assertEquals(0, pool.getTotalConnections());
+        verify(driver.opened().get(0)).close();
+        assertFalse(pool.getIdleConnections() > 0);
+    }
+}
@@ -0,0 +1,146 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class PreparedStatementCacheTest {
+
+    private static final String SQL = "SELECT * FROM regions WHERE id = ?";
+
+    private Connection physical;
+    private PreparedStatementCache cache;
+
+    // Sentencias físicas preparadas por la conexión, en orden
+    private final List<PreparedStatement> created = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        physical = mock(Connection.class);
+        when(physical.prepareStatement(anyString())).thenAnswer(invocation -> {
+            PreparedStatement statement = mock(PreparedStatement.class);
+            when(statement.getFetchSize()).thenReturn(0);
+            when(statement.getMaxRows()).thenReturn(0);
+            when(statement.getQueryTimeout()).thenReturn(0);
+            created.add(statement);
+            return statement;
+        });
+        cache = new PreparedStatementCache(2);
+    }
+
+    @Test
+    void closedStatementIsReused() throws SQLException {
+        cache.prepare(physical, SQL).close();
+        cache.prepare(physical, SQL).close();
+
+        verify(physical, times(1)).prepareStatement(SQL);
+    }
+
+    @Test
+    void closeClearsParametersWithoutClosingStatement() throws SQLException {
+        PreparedStatement statement = cache.prepare(physical, SQL);
+        PreparedStatement physicalStatement = created.get(0);
+
+        statement.setInt(1, 7);
+        statement.close();
+
+        verify(physicalStatement).clearParameters();
+        verify(physicalStatement).clearBatch();
+        verify(physicalStatement, never()).close();
+        assertTrue(statement.isClosed());
+        assertThrows(SQLException.class, statement::executeQuery);
+    }
+
+    @Test
+    void statementInUseIsNotShared() throws SQLException {
+        PreparedStatement first = cache.prepare(physical, SQL);
+        PreparedStatement second = cache.prepare(physical, SQL);
+
+        assertNotSame(created.get(0), created.get(1));
+        PreparedStatement uncached = created.get(1);
+        second.close();
+        verify(uncached).close();
+        first.close();
+    }
+
+    @Test
+    void closeRestoresChangedSettings() throws SQLException {
+        PreparedStatement statement = cache.prepare(physical, SQL);
+        PreparedStatement physicalStatement = created.get(0);
+
+        statement.setFetchSize(500);
+        statement.setMaxRows(10);
+        statement.setQueryTimeout(3);
+        statement.close();
+
+        verify(physicalStatement).setFetchSize(0);
+        verify(physicalStatement).setMaxRows(0);
+        verify(physicalStatement).setQueryTimeout(0);
+        verify(physicalStatement, never()).close();
+    }
+
+    @Test
+    void settingsAreRestoredToValueBeforeFirstChange() throws SQLException {
+        PreparedStatement statement = cache.prepare(physical, SQL);
+        PreparedStatement physicalStatement = created.get(0);
+
+        statement.setFetchSize(100);
+        when(physicalStatement.getFetchSize()).thenReturn(100);
+        statement.setFetchSize(200);
+        statement.close();
+
+        verify(physicalStatement).setFetchSize(0);
+        verify(physicalStatement, times(1)).getFetchSize();
+    }
+
+    @Test
+    void permanentSettingDiscardsStatement() throws SQLException {
+        PreparedStatement statement = cache.prepare(physical, SQL);
+        PreparedStatement physicalStatement = created.get(0);
+
+        statement.setCursorName("cursor");
+        statement.close();
+
+        verify(physicalStatement).close();
+        cache.prepare(physical, SQL).close();
+        verify(physical, times(2)).prepareStatement(SQL);
+    }
+
+    @Test
+    void leastRecentlyUsedStatementIsEvicted() throws SQLException {
+        cache.prepare(physical, "SELECT 1").close();
+        PreparedStatement evicted = created.get(0);
+        cache.prepare(physical, "SELECT 2").close();
+        cache.prepare(physical, "SELECT 3").close();
+
+        verify(evicted).close();
+        cache.prepare(physical, "SELECT 1").close();
+        verify(physical, times(2)).prepareStatement("SELECT 1");
+    }
+
+    @Test
+    void releaseAllFreesStatementsLeftOpen() throws SQLException {
+        PreparedStatement forgotten = cache.prepare(physical, SQL);
+
+        cache.releaseAll();
+
+        assertTrue(forgotten.isClosed());
+        cache.prepare(physical, SQL).close();
+        verify(physical, times(1)).prepareStatement(SQL);
+    }
+}
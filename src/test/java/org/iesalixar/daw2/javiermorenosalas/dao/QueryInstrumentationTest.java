@@ -0,0 +1,40 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QueryInstrumentationTest {
+
+    @Test
+    void replacesStringAndNumberLiterals() {
+        assertEquals("SELECT * FROM regions WHERE code = ? AND id = ?",
+                QueryInstrumentation.normalize("SELECT * FROM regions WHERE code = 'AN' AND id = 12"));
+        // Comillas escapadas dentro del literal y números con decimales
+        assertEquals("UPDATE locations SET address = ?, lat = ? WHERE id = ?",
+                QueryInstrumentation.normalize("UPDATE locations SET address = 'O''Donnell, 3', lat = 36.72 WHERE id = 7"));
+    }
+
+    @Test
+    void keepsDigitsInsideIdentifiers() {
+        assertEquals("SELECT t2.col1 FROM table3 t2 WHERE t2.id = ?",
+                QueryInstrumentation.normalize("SELECT t2.col1 FROM table3 t2 WHERE t2.id = 5"));
+    }
+
+    @Test
+    void collapsesParameterAndLiteralLists() {
+        assertEquals("SELECT * FROM provinces WHERE id IN (?, ...)",
+                QueryInstrumentation.normalize("SELECT * FROM provinces WHERE id IN (?, ?,?)"));
+        // Una lista de literales acaba igual que una de parámetros del mismo lote
+        assertEquals("DELETE FROM regions WHERE id IN (?, ...)",
+                QueryInstrumentation.normalize("DELETE FROM regions WHERE id IN (1, 2, 3)"));
+        assertEquals("SELECT * FROM regions WHERE id = ?",
+                QueryInstrumentation.normalize("SELECT * FROM regions WHERE id = ?"));
+    }
+
+    @Test
+    void collapsesWhitespace() {
+        assertEquals("SELECT id, name FROM supermarkets WHERE name = ?",
+                QueryInstrumentation.normalize("  SELECT id,\n\tname   FROM supermarkets\r\n WHERE name = 'Día  Market' "));
+    }
+}
@@ -0,0 +1,71 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.iesalixar.daw2.javiermorenosalas.entity.Province;
+import org.iesalixar.daw2.javiermorenosalas.entity.Region;
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ReferenceDataCacheTest {
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    private List<Province> load() {
+        loads.incrementAndGet();
+        Region region = new Region(1, "01", "Andalucía");
+        return List.of(new Province(1, "04", "Almería", region), new Province(2, "18", "Granada", region));
+    }
+
+    private ReferenceDataCache<Province> newCache() {
+        return ReferenceDataCache.create("test", 60000, Province::getId, CachingProvinceDAO::copy);
+    }
+
+    @Test
+    void loadsOnceUntilInvalidated() throws SQLException {
+        ReferenceDataCache<Province> cache = newCache();
+
+        cache.getAll(this::load);
+        cache.getById(1, this::load);
+        assertEquals(1, loads.get());
+
+        cache.invalidate();
+        cache.getAll(this::load);
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void changesToReturnedEntitiesDoNotReachCache() throws SQLException {
+        ReferenceDataCache<Province> cache = newCache();
+
+        List<Province> first = cache.getAll(this::load);
+        first.get(0).setName("Cambiada");
+        first.get(0).getRegion().setName("Cambiada");
+        cache.getById(2, this::load).setId(99);
+        first.clear();
+
+        List<Province> second = cache.getAll(this::load);
+        assertEquals(2, second.size());
+        assertEquals("Almería", second.get(0).getName());
+        assertEquals("Andalucía", second.get(0).getRegion().getName());
+        assertEquals(2, cache.getById(2, this::load).getId());
+    }
+
+    @Test
+    void everyReadReturnsNewCopies() throws SQLException {
+        ReferenceDataCache<Province> cache = newCache();
+
+        Province first = cache.getById(1, this::load);
+        Province second = cache.getByIds(List.of(1), this::load).get(1);
+
+        assertEquals(first, second);
+        assertNotSame(first, second);
+        assertNotSame(first.getRegion(), second.getRegion());
+        assertNull(cache.getById(3, this::load));
+    }
+}
@@ -0,0 +1,35 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.junit.jupiter.api.Test;
+
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SQLErrorsTest {
+
+    @Test
+    void deadlocksAndLockWaitTimeoutsAreTransient() {
+        assertTrue(SQLErrors.isTransient(new SQLException("Deadlock found", "40001", 1213)));
+        assertTrue(SQLErrors.isTransient(new SQLException("Lock wait timeout exceeded", "HY000", 1205)));
+        // Fallo de serialización con otro código de error
+        assertTrue(SQLErrors.isTransient(new SQLException("Serialization failure", "40001", 0)));
+    }
+
+    @Test
+    void findsTransientErrorChainedInBatch() {
+        SQLException batch = new SQLException("Batch failed", "HY000", 0);
+        batch.setNextException(new SQLException("Deadlock found", "40001", 1213));
+
+        assertTrue(SQLErrors.isTransient(batch));
+    }
+
+    @Test
+    void otherErrorsAreNotTransient() {
+        assertFalse(SQLErrors.isTransient(new SQLException("Duplicate entry", "23000", 1062)));
+        // Un error de conexión no se reintenta: no se sabe si la escritura llegó a confirmarse
+        assertFalse(SQLErrors.isTransient(new SQLNonTransientConnectionException("Connection reset", "08S01", 0)));
+    }
+}
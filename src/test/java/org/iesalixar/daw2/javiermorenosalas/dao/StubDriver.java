@@ -0,0 +1,96 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Driver JDBC para las pruebas: cada conexión física es un mock de Mockito, válida y en
+ * autocommit, y se guardan todas las abiertas para poder comprobar qué hizo el pool con ellas.
+ */
+final class StubDriver implements Driver {
+
+    static final String URL = "jdbc:stub:pool";
+
+    private static final StubDriver INSTANCE = new StubDriver();
+
+    private final List<Connection> opened = new CopyOnWriteArrayList<>();
+
+    static {
+        try {
+            DriverManager.registerDriver(INSTANCE);
+        } catch (SQLException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private StubDriver() {}
+
+    /**
+     * @return El driver registrado, sin conexiones abiertas.
+     */
+    static StubDriver reset() {
+        INSTANCE.opened.clear();
+        return INSTANCE;
+    }
+
+    /**
+     * @return Las conexiones físicas abiertas desde el último {@link #reset()}, en orden.
+     */
+    List<Connection> opened() {
+        return opened;
+    }
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+        if (!acceptsURL(url)) {
+            return null;
+        }
+        Connection connection = mock(Connection.class);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        when(connection.getAutoCommit()).thenReturn(true);
+        opened.add(connection);
+        return connection;
+    }
+
+    @Override
+    public boolean acceptsURL(String url) {
+        return url != null && url.startsWith(URL);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+        return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+        return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+        return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+        return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+        throw new SQLFeatureNotSupportedException();
+    }
+}
@@ -0,0 +1,111 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class TransientErrorRetryTest {
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        UnitOfWork leftOver = UnitOfWork.current();
+        if (leftOver != null) {
+            leftOver.close();
+        }
+        Thread.interrupted();
+    }
+
+    @Test
+    void retriesUntilTransientErrorClears() throws SQLException {
+        long recovered = TransientErrorRetry.getRecovered();
+
+        String result = TransientErrorRetry.execute("test", () -> {
+            if (calls.incrementAndGet() < 2) {
+                throw deadlock();
+            }
+            return "ok";
+        });
+
+        assertEquals("ok", result);
+        assertEquals(2, calls.get());
+        assertEquals(recovered + 1, TransientErrorRetry.getRecovered());
+    }
+
+    @Test
+    void doesNotRetryOtherErrors() {
+        SQLException duplicate = new SQLException("Duplicate entry", "23000", 1062);
+
+        assertSame(duplicate, assertThrows(SQLException.class, () -> TransientErrorRetry.execute("test", () -> {
+            calls.incrementAndGet();
+            throw duplicate;
+        })));
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void givesUpAfterMaxAttempts() {
+        long exhausted = TransientErrorRetry.getExhausted();
+
+        assertThrows(SQLException.class, () -> TransientErrorRetry.execute("test", () -> {
+            calls.incrementAndGet();
+            throw deadlock();
+        }));
+
+        assertEquals(TransientErrorRetry.getMaxAttempts(), calls.get());
+        assertEquals(exhausted + 1, TransientErrorRetry.getExhausted());
+    }
+
+    @Test
+    void runsOnceInsideTransactionalUnitOfWork() {
+        // El interbloqueo deshace la transacción entera: se repite la unidad de trabajo desde fuera
+        try (UnitOfWork ignored = UnitOfWork.begin(true, mock(Connection.class))) {
+            assertThrows(SQLException.class, () -> TransientErrorRetry.execute("test", () -> {
+                calls.incrementAndGet();
+                throw deadlock();
+            }));
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    void recognisesTransientCauses() {
+        assertTrue(TransientErrorRetry.isTransient(new RuntimeException(new IllegalStateException(deadlock()))));
+        assertFalse(TransientErrorRetry.isTransient(new RuntimeException("sin causa SQL")));
+    }
+
+    @Test
+    void shouldRetryOnlyWhileAttemptsRemain() {
+        assertTrue(TransientErrorRetry.shouldRetry(deadlock(), 1));
+        assertFalse(TransientErrorRetry.shouldRetry(deadlock(), TransientErrorRetry.getMaxAttempts()));
+        assertFalse(TransientErrorRetry.shouldRetry(new SQLException("Syntax error", "42000", 1064), 1));
+    }
+
+    @Test
+    void backoffStopsWhenInterrupted() {
+        long retries = TransientErrorRetry.getRetries();
+
+        assertTrue(TransientErrorRetry.backoff("test", 1, deadlock()));
+
+        Thread.currentThread().interrupt();
+        assertFalse(TransientErrorRetry.backoff("test", 2, deadlock()));
+        // Se conserva la interrupción para quien llama
+        assertTrue(Thread.currentThread().isInterrupted());
+        assertEquals(retries + 2, TransientErrorRetry.getRetries());
+    }
+
+    private static SQLException deadlock() {
+        return new SQLException("Deadlock found", "40001", 1213);
+    }
+}
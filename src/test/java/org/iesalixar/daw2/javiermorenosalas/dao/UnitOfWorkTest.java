@@ -0,0 +1,135 @@
+package org.iesalixar.daw2.javiermorenosalas.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UnitOfWorkTest {
+
+    private Connection physical;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        physical = mock(Connection.class);
+        when(physical.getAutoCommit()).thenReturn(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        UnitOfWork leftOver = UnitOfWork.current();
+        if (leftOver != null) {
+            leftOver.close();
+        }
+    }
+
+    @Test
+    void sharesOneConnectionUntilClosed() throws SQLException {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(false, physical)) {
+            assertSame(unitOfWork, UnitOfWork.current());
+            Connection first = unitOfWork.getConnection();
+            first.close();
+            assertSame(first, unitOfWork.getConnection());
+            verify(physical, never()).close();
+        }
+        verify(physical).close();
+        assertNull(UnitOfWork.current());
+    }
+
+    @Test
+    void cannotBeNested() {
+        try (UnitOfWork ignored = UnitOfWork.begin(false, physical)) {
+            assertThrows(IllegalStateException.class, () -> UnitOfWork.begin(false, physical));
+        }
+    }
+
+    @Test
+    void transactionalUnitIgnoresDaoTransactionControl() throws SQLException {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(true, physical)) {
+            Connection shared = unitOfWork.getConnection();
+            verify(physical).setAutoCommit(false);
+            when(physical.getAutoCommit()).thenReturn(false);
+
+            shared.setAutoCommit(true);
+            shared.commit();
+            shared.rollback();
+
+            assertFalse(shared.getAutoCommit());
+            verify(physical, never()).setAutoCommit(true);
+            verify(physical, never()).commit();
+            verify(physical, never()).rollback();
+
+            unitOfWork.commit();
+            verify(physical).commit();
+        }
+    }
+
+    @Test
+    void nonTransactionalUnitPassesTransactionControlThrough() throws SQLException {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(false, physical)) {
+            Connection shared = unitOfWork.getConnection();
+
+            shared.setAutoCommit(false);
+            shared.commit();
+
+            verify(physical).setAutoCommit(false);
+            verify(physical).commit();
+            assertTrue(shared.getAutoCommit());
+        }
+    }
+
+    @Test
+    void commitAndRollbackWithoutConnectionDoNothing() throws SQLException {
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(true, physical)) {
+            unitOfWork.rollback();
+            unitOfWork.commit();
+        }
+        verify(physical, never()).commit();
+        verify(physical, never()).rollback();
+    }
+
+    @Test
+    void afterCommitRunsOnlyWhenCommitted() throws SQLException {
+        List<String> actions = new ArrayList<>();
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(true, physical)) {
+            unitOfWork.getConnection();
+            unitOfWork.afterCommit(() -> actions.add("commit"));
+            unitOfWork.afterCompletion(() -> actions.add("completion"));
+            unitOfWork.rollback();
+        }
+        assertEquals(List.of("completion"), actions);
+
+        actions.clear();
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(true, physical)) {
+            unitOfWork.getConnection();
+            unitOfWork.afterCommit(() -> actions.add("commit"));
+            unitOfWork.afterCompletion(() -> actions.add("completion"));
+            unitOfWork.commit();
+        }
+        assertEquals(List.of("commit", "completion"), actions);
+    }
+
+    @Test
+    void afterCommitRunsImmediatelyOutsideTransaction() {
+        List<String> actions = new ArrayList<>();
+        try (UnitOfWork unitOfWork = UnitOfWork.begin(false, physical)) {
+            unitOfWork.afterCommit(() -> actions.add("commit"));
+            assertEquals(List.of("commit"), actions);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package org.iesalixar.daw2.javiermorenosalas.filters;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BulkheadTest {
+
+    private final Bulkhead bulkhead = new Bulkhead("test", 2, 1, 100);
+
+    @Test
+    void admitsUpToLimitWithoutWaiting() {
+        assertTrue(bulkhead.tryAcquire());
+        assertTrue(bulkhead.tryAcquire());
+        assertFalse(bulkhead.tryAcquire());
+        assertEquals(2, bulkhead.getActive());
+
+        bulkhead.release();
+        assertTrue(bulkhead.tryAcquire());
+        assertEquals(3, bulkhead.getAdmitted());
+    }
+
+    @Test
+    void handsFreedSlotToFirstQueuedRequest() {
+        List<String> admitted = new ArrayList<>();
+        bulkhead.tryAcquire();
+        bulkhead.tryAcquire();
+
+        assertTrue(bulkhead.enqueue(() -> admitted.add("first")));
+        assertEquals(1, bulkhead.getQueued());
+        assertTrue(admitted.isEmpty());
+
+        bulkhead.release();
+        assertEquals(List.of("first"), admitted);
+        assertEquals(0, bulkhead.getQueued());
+        // El hueco pasa a la petición de la cola sin quedar libre entre medias
+        assertEquals(2, bulkhead.getActive());
+        assertFalse(bulkhead.tryAcquire());
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        bulkhead.tryAcquire();
+        bulkhead.tryAcquire();
+
+        assertTrue(bulkhead.enqueue(() -> { }));
+        assertFalse(bulkhead.enqueue(() -> { }));
+        assertEquals(1, bulkhead.getRejected());
+    }
+
+    @Test
+    void admitsRightAwayIfSlotFreedBeforeQueueing() {
+        List<String> admitted = new ArrayList<>();
+
+        assertTrue(bulkhead.enqueue(() -> admitted.add("now")));
+        assertEquals(List.of("now"), admitted);
+        assertEquals(1, bulkhead.getActive());
+    }
+
+    @Test
+    void cancelledRequestDoesNotReceiveSlot() {
+        List<String> admitted = new ArrayList<>();
+        Runnable timedOut = () -> admitted.add("timed out");
+        bulkhead.tryAcquire();
+        bulkhead.tryAcquire();
+        bulkhead.enqueue(timedOut);
+
+        assertTrue(bulkhead.cancel(timedOut));
+        assertFalse(bulkhead.cancel(timedOut));
+        bulkhead.release();
+
+        assertTrue(admitted.isEmpty());
+        assertEquals(1, bulkhead.getActive());
+        assertEquals(1, bulkhead.getRejected());
+    }
+}
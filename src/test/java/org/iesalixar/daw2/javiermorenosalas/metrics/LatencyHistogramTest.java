@@ -0,0 +1,99 @@
+package org.iesalixar.daw2.javiermorenosalas.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void everyValueFallsInsideItsBucket() {
+        long[] values = {0, 1, 15, 16, 17, 31, 32, 33, 999, 1000, 1023, 1024, 1025, 65_535, 65_536,
+                1_000_000, 123_456_789, 1L << 36, (1L << 37) - 1};
+        for (long value : values) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.upperBoundOf(index) > value, "cubo demasiado bajo para " + value);
+            if (index > 0) {
+                assertTrue(LatencyHistogram.upperBoundOf(index - 1) <= value, "cubo demasiado alto para " + value);
+            }
+        }
+    }
+
+    @Test
+    void bucketsAreContiguousAndWithinPrecision() {
+        long lower = 0;
+        for (int index = 0; index < LatencyHistogram.BUCKET_COUNT; index++) {
+            long upper = LatencyHistogram.upperBoundOf(index);
+            assertEquals(index, LatencyHistogram.indexOf(lower), "hueco antes del cubo " + index);
+            assertEquals(index, LatencyHistogram.indexOf(upper - 1), "solape en el cubo " + index);
+            if (lower >= 16) {
+                assertTrue((upper - lower) * 16 <= lower, "cubo " + index + " más ancho que el 6,25 %");
+            }
+            lower = upper;
+        }
+    }
+
+    @Test
+    void valuesAboveRangeGoToLastBucket() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        histogram.record(-5);
+
+        assertEquals(2, histogram.getCount());
+        assertEquals(0.0, histogram.quantileSeconds(0.5));
+    }
+
+    @Test
+    void countsExactlyAtConfiguredBounds() {
+        LatencyHistogram histogram = new LatencyHistogram(0.005, 0.001);
+        // 1 ms cae en el cubo de 992 a 1023 µs, que contiene el límite
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(990));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(1));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(1) + 1);
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(5000));
+        histogram.record(TimeUnit.MILLISECONDS.toNanos(7));
+
+        assertEquals(2, histogram.countAtOrBelow(0.001));
+        assertEquals(4, histogram.countAtOrBelow(0.005));
+        assertEquals(5, histogram.getCount());
+    }
+
+    @Test
+    void otherBoundsOnlyCountWholeBuckets() {
+        LatencyHistogram histogram = new LatencyHistogram(0.001);
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(1500));
+        histogram.record(TimeUnit.MICROSECONDS.toNanos(1990));
+
+        // El cubo de 1984 a 2047 µs contiene el límite de 2 ms y no se cuenta
+        assertEquals(1, histogram.countAtOrBelow(0.002));
+        assertEquals(2, histogram.countAtOrBelow(0.003));
+    }
+
+    @Test
+    void quantilesStayWithinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.record(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+
+        assertQuantile(histogram, 0.5, 0.5);
+        assertQuantile(histogram, 0.9, 0.9);
+        assertQuantile(histogram, 0.99, 0.99);
+        assertQuantile(histogram, 1.0, 1.0);
+        assertEquals(500.5, histogram.getSumSeconds(), 1e-9);
+    }
+
+    @Test
+    void emptyHistogramHasZeroQuantiles() {
+        assertEquals(0.0, new LatencyHistogram().quantileSeconds(0.99));
+    }
+
+    private static void assertQuantile(LatencyHistogram histogram, double quantile, double expectedSeconds) {
+        double actual = histogram.quantileSeconds(quantile);
+        assertTrue(actual >= expectedSeconds && actual <= expectedSeconds * 1.0625,
+                "p" + quantile + " = " + actual + ", se esperaba " + expectedSeconds);
+    }
+}
@@ -0,0 +1,64 @@
+package org.iesalixar.daw2.javiermorenosalas.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MetricsRegistryTest {
+
+    @Test
+    void writesCumulativePrometheusBuckets() throws IOException {
+        MetricsRegistry.ActionMetrics metrics = MetricsRegistry.forAction("test-buckets", "list");
+        metrics.record(TimeUnit.MILLISECONDS.toNanos(1), 200);
+        metrics.record(TimeUnit.MILLISECONDS.toNanos(4), 200);
+        metrics.record(TimeUnit.MILLISECONDS.toNanos(300), 500);
+        metrics.record(TimeUnit.SECONDS.toNanos(20), 200);
+
+        String output = write();
+        String labels = "servlet=\"test-buckets\",action=\"list\"";
+        assertLine(output, "app_http_request_duration_seconds_bucket{" + labels + ",le=\"0.001\"} 1");
+        assertLine(output, "app_http_request_duration_seconds_bucket{" + labels + ",le=\"0.0025\"} 1");
+        assertLine(output, "app_http_request_duration_seconds_bucket{" + labels + ",le=\"0.005\"} 2");
+        assertLine(output, "app_http_request_duration_seconds_bucket{" + labels + ",le=\"0.25\"} 2");
+        assertLine(output, "app_http_request_duration_seconds_bucket{" + labels + ",le=\"0.5\"} 3");
+        assertLine(output, "app_http_request_duration_seconds_bucket{" + labels + ",le=\"10\"} 3");
+        assertLine(output, "app_http_request_duration_seconds_bucket{" + labels + ",le=\"+Inf\"} 4");
+        assertLine(output, "app_http_request_duration_seconds_count{" + labels + "} 4");
+        assertLine(output, "app_http_requests_total{" + labels + ",status=\"200\"} 3");
+        assertLine(output, "app_http_requests_total{" + labels + ",status=\"500\"} 1");
+    }
+
+    @Test
+    void groupsUnknownActionsUnderOther() throws IOException {
+        MetricsRegistry.ActionMetrics first = MetricsRegistry.forAction("test-other", "no válida");
+        MetricsRegistry.ActionMetrics second = MetricsRegistry.forAction("test-other", "<script>");
+
+        assertSame(first, second);
+        first.record(TimeUnit.MILLISECONDS.toNanos(1), 200);
+        assertLine(write(), "app_http_request_duration_seconds_count{servlet=\"test-other\",action=\"other\"} 1");
+    }
+
+    @Test
+    void namesServletsAfterTheirPattern() {
+        assertEquals("locations", MetricsRegistry.servletName("/locations"));
+        assertSame(MetricsRegistry.servletName("/locations"), MetricsRegistry.servletName("/locations"));
+        assertEquals("default", MetricsRegistry.servletName("/"));
+        assertEquals("*.jsp", MetricsRegistry.servletName("*.jsp"));
+    }
+
+    private static String write() throws IOException {
+        StringWriter writer = new StringWriter();
+        MetricsRegistry.write(writer);
+        return writer.toString();
+    }
+
+    private static void assertLine(String output, String line) {
+        assertTrue(output.lines().anyMatch(line::equals), "Falta la línea: " + line);
+    }
+}
@@ -0,0 +1,45 @@
+package org.iesalixar.daw2.javiermorenosalas.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RequestTimingTest {
+
+    @Test
+    void headerIncludesRenderAndTotal() {
+        RequestTiming timing = new RequestTiming();
+        timing.recordRender(TimeUnit.MILLISECONDS.toNanos(2));
+
+        String header = timing.toServerTiming();
+        assertTrue(header.startsWith("db;desc=\"0 queries\";dur=0.00, render;dur=2.00, total;dur="), header);
+    }
+
+    @Test
+    void deferredRenderLeavesOnlyDatabaseInHeader() throws InterruptedException {
+        RequestTiming timing = new RequestTiming();
+        RequestTiming previous = RequestTiming.bind(timing);
+        try {
+            RequestTiming.recordQuery(TimeUnit.MILLISECONDS.toNanos(3));
+        } finally {
+            RequestTiming.restore(previous);
+        }
+
+        timing.deferRender();
+        assertEquals("db;desc=\"1 queries\";dur=3.00", timing.toServerTiming());
+
+        Thread.sleep(5);
+        timing.finishDeferredRender();
+        assertFalse(timing.isRenderDeferred());
+        assertTrue(timing.getRenderMillis() >= 5, "render=" + timing.getRenderMillis());
+
+        // Cerrarlo otra vez no vuelve a sumar
+        double render = timing.getRenderMillis();
+        timing.finishDeferredRender();
+        assertEquals(render, timing.getRenderMillis());
+    }
+}
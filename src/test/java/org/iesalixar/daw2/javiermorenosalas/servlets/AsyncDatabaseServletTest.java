@@ -0,0 +1,127 @@
+package org.iesalixar.daw2.javiermorenosalas.servlets;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.iesalixar.daw2.javiermorenosalas.dao.TransientErrorRetry;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class AsyncDatabaseServletTest {
+
+    @Test
+    void retriesPostOnDeadlockWithCleanRequestAndResponse() throws Exception {
+        Map<String, Object> attributes = new HashMap<>();
+        attributes.put("existing", "valor");
+        HttpServletRequest request = request("POST", attributes);
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        FlakyServlet servlet = new FlakyServlet(1);
+        servlet.service(request, response);
+
+        assertEquals(2, servlet.attempts);
+        // El segundo intento no ve nada del primero
+        assertNull(servlet.errorSeenBySecondAttempt);
+        assertEquals("valor", attributes.get("existing"));
+        verify(response).reset();
+        verify(response).sendRedirect("/ok");
+    }
+
+    @Test
+    void doesNotRetryGet() throws Exception {
+        HttpServletRequest request = request("GET", new HashMap<>());
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        FlakyServlet servlet = new FlakyServlet(1);
+        try {
+            servlet.service(request, response);
+        } catch (RuntimeException expected) {
+            // El GET no se repite: el error llega tal cual
+        }
+
+        assertEquals(1, servlet.attempts);
+        verify(response, never()).reset();
+    }
+
+    @Test
+    void stopsRetryingAfterMaxAttempts() throws Exception {
+        HttpServletRequest request = request("POST", new HashMap<>());
+        HttpServletResponse response = mock(HttpServletResponse.class);
+
+        FlakyServlet servlet = new FlakyServlet(Integer.MAX_VALUE);
+        try {
+            servlet.service(request, response);
+        } catch (RuntimeException expected) {
+            // Se agotan los intentos
+        }
+
+        assertEquals(TransientErrorRetry.getMaxAttempts(), servlet.attempts);
+        verify(response, times(servlet.attempts - 1)).reset();
+        verify(response, never()).sendRedirect(anyString());
+    }
+
+    private static HttpServletRequest request(String method, Map<String, Object> attributes) {
+        HttpServletRequest request = mock(HttpServletRequest.class);
+        when(request.getMethod()).thenReturn(method);
+        when(request.getRequestURI()).thenReturn("/regions");
+        when(request.getProtocol()).thenReturn("HTTP/1.1");
+        when(request.isAsyncSupported()).thenReturn(false);
+        when(request.getAttributeNames()).thenAnswer(invocation -> Collections.enumeration(new HashMap<>(attributes).keySet()));
+        when(request.getAttribute(anyString())).thenAnswer(invocation -> attributes.get(invocation.<String>getArgument(0)));
+        doAnswer(invocation -> attributes.put(invocation.getArgument(0), invocation.getArgument(1)))
+                .when(request).setAttribute(anyString(), any());
+        doAnswer(invocation -> attributes.remove(invocation.<String>getArgument(0)))
+                .when(request).removeAttribute(anyString());
+        return request;
+    }
+
+    /**
+     * Servlet que falla con un interbloqueo en los primeros intentos.
+     */
+    private static final class FlakyServlet extends AsyncDatabaseServlet {
+
+        private final int failures;
+        private int attempts = 0;
+        private Object errorSeenBySecondAttempt;
+
+        private FlakyServlet(int failures) {
+            this.failures = failures;
+        }
+
+        @Override
+        protected void doGet(HttpServletRequest request, HttpServletResponse response) {
+            attempts++;
+            throw new RuntimeException(new SQLException("Deadlock found", "40001", 1213));
+        }
+
+        @Override
+        protected void doPost(HttpServletRequest request, HttpServletResponse response) throws IOException {
+            attempts++;
+            if (attempts == 2) {
+                errorSeenBySecondAttempt = request.getAttribute("error");
+            }
+            if (attempts <= failures) {
+                request.setAttribute("error", "intento fallido");
+                request.setAttribute("existing", "cambiado");
+                response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+                throw new RuntimeException(new SQLException("Deadlock found", "40001", 1213));
+            }
+            response.sendRedirect("/ok");
+        }
+    }
+}